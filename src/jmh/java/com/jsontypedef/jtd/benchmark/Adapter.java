@@ -0,0 +1,71 @@
+package com.jsontypedef.jtd.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.jsontypedef.jtd.CompiledSchema;
+import com.jsontypedef.jtd.GsonAdapter;
+import com.jsontypedef.jtd.GsonStreamAdapter;
+import com.jsontypedef.jtd.JacksonAdapter;
+import com.jsontypedef.jtd.JacksonStreamAdapter;
+import com.jsontypedef.jtd.Json;
+import com.jsontypedef.jtd.MaxDepthExceededException;
+import com.jsontypedef.jtd.ValidationError;
+import com.jsontypedef.jtd.Validator;
+
+/**
+ * The JSON libraries the benchmarks can read instances with.
+ */
+public enum Adapter {
+  GSON {
+    @Override
+    Json parse(String json) {
+      JsonElement element = JsonParser.parseString(json);
+      return new GsonAdapter(element);
+    }
+
+    @Override
+    List<ValidationError> validateStream(Validator validator, CompiledSchema schema, String json)
+        throws MaxDepthExceededException, IOException {
+      try (JsonReader reader = new JsonReader(new StringReader(json))) {
+        return validator.validate(schema, new GsonStreamAdapter(reader));
+      }
+    }
+  },
+
+  JACKSON {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JsonFactory jsonFactory = objectMapper.getFactory();
+
+    @Override
+    Json parse(String json) throws IOException {
+      return new JacksonAdapter(objectMapper.readTree(json));
+    }
+
+    @Override
+    List<ValidationError> validateStream(Validator validator, CompiledSchema schema, String json)
+        throws MaxDepthExceededException, IOException {
+      try (com.fasterxml.jackson.core.JsonParser parser = jsonFactory.createParser(json)) {
+        return validator.validate(schema, new JacksonStreamAdapter(parser));
+      }
+    }
+  };
+
+  /**
+   * Parses {@code json} into a tree.
+   */
+  abstract Json parse(String json) throws IOException;
+
+  /**
+   * Validates {@code json} as a stream of tokens, closing the stream
+   * afterwards.
+   */
+  abstract List<ValidationError> validateStream(Validator validator, CompiledSchema schema, String json)
+      throws MaxDepthExceededException, IOException;
+}
@@ -0,0 +1,453 @@
+package com.jsontypedef.jtd.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.jsontypedef.jtd.Schema;
+
+/**
+ * Generates random instances of a schema, for load testing.
+ *
+ * Valid instances respect the ranges of numeric types, pick from enums and
+ * discriminator mappings, and follow refs through definitions. Past
+ * {@code maxDepth} levels of nesting, optional parts of an instance are left
+ * out, so that recursive schemas still produce instances of bounded size.
+ *
+ * Invalid instances are valid instances with exactly one thing wrong with
+ * them, in a randomly chosen place. That is closer to what production traffic
+ * looks like than random JSON is, and it makes validation do as much work as
+ * it would for a valid instance before it finds the error.
+ *
+ * Instances are generated as Gson trees. Their {@code toString} is their JSON
+ * text, which can be read with any other library.
+ */
+public class InstanceGenerator {
+  private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+  // How much deeper than maxDepth required parts of a schema may go before
+  // the schema is assumed to have no finite instances at all.
+  private static final int DEPTH_LEEWAY = 100;
+
+  private final Schema root;
+  private final Random random;
+  private final int maxDepth;
+  private final int maxSize;
+
+  /**
+   * Constructs a generator of instances of {@code root}.
+   *
+   * @param root the root schema to generate instances of, which must be valid
+   * @param random the source of randomness, which can be seeded to generate the
+   * same instances again
+   * @param maxDepth the nesting depth past which optional parts of instances
+   * are left out
+   * @param maxSize the maximum number of elements or values in an array or
+   * object
+   */
+  public InstanceGenerator(Schema root, Random random, int maxDepth, int maxSize) {
+    this.root = root;
+    this.random = random;
+    this.maxDepth = maxDepth;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Generates a valid instance.
+   *
+   * @return an instance that validates against the schema without errors
+   */
+  public JsonElement valid() {
+    return valid(root, 0);
+  }
+
+  /**
+   * Generates an invalid instance.
+   *
+   * @return an instance with exactly one validation error
+   * @throws IllegalArgumentException if the schema accepts every instance
+   */
+  public JsonElement invalid() {
+    JsonElement instance = invalid(root, 0);
+    if (instance == null) {
+      throw new IllegalArgumentException("schema accepts every instance");
+    }
+
+    return instance;
+  }
+
+  private JsonElement valid(Schema schema, int depth) {
+    if (depth > maxDepth + DEPTH_LEEWAY) {
+      throw new IllegalArgumentException("schema has no instances within the maximum depth");
+    }
+
+    if (schema.isNullable() && (depth > maxDepth || random.nextInt(10) == 0)) {
+      return JsonNull.INSTANCE;
+    }
+
+    switch (schema.getForm()) {
+      case EMPTY:
+        return randomScalar();
+      case REF:
+        return valid(root.getDefinitions().get(schema.getRef()), depth + 1);
+      case TYPE:
+        return validType(schema);
+      case ENUM:
+        return new JsonPrimitive(pick(new ArrayList<>(schema.getEnum())));
+      case ELEMENTS: {
+        JsonArray array = new JsonArray();
+        for (int i = size(depth); i > 0; i--) {
+          array.add(valid(schema.getElements(), depth + 1));
+        }
+
+        return array;
+      }
+      case PROPERTIES:
+        return validProperties(schema, depth);
+      case VALUES: {
+        JsonObject object = new JsonObject();
+        for (int i = size(depth); i > 0; i--) {
+          object.add(randomString(), valid(schema.getValues(), depth + 1));
+        }
+
+        return object;
+      }
+      case DISCRIMINATOR:
+        return validDiscriminator(schema, depth);
+      default:
+        throw new IllegalStateException("unknown form");
+    }
+  }
+
+  private JsonElement validType(Schema schema) {
+    switch (schema.getType()) {
+      case BOOLEAN:
+        return new JsonPrimitive(random.nextBoolean());
+      case FLOAT32:
+      case FLOAT64:
+        return new JsonPrimitive((random.nextDouble() - 0.5) * 2e6);
+      case INT8:
+        return new JsonPrimitive(randomLong(-128, 127));
+      case UINT8:
+        return new JsonPrimitive(randomLong(0, 255));
+      case INT16:
+        return new JsonPrimitive(randomLong(-32768, 32767));
+      case UINT16:
+        return new JsonPrimitive(randomLong(0, 65535));
+      case INT32:
+        return new JsonPrimitive(randomLong(-2147483648L, 2147483647L));
+      case UINT32:
+        return new JsonPrimitive(randomLong(0, 4294967295L));
+      case STRING:
+        return new JsonPrimitive(randomString());
+      case TIMESTAMP:
+        return new JsonPrimitive(randomTimestamp());
+      default:
+        throw new IllegalStateException("unknown type");
+    }
+  }
+
+  private JsonObject validProperties(Schema schema, int depth) {
+    JsonObject object = new JsonObject();
+
+    if (schema.getProperties() != null) {
+      for (Map.Entry<String, Schema> entry : schema.getProperties().entrySet()) {
+        object.add(entry.getKey(), valid(entry.getValue(), depth + 1));
+      }
+    }
+
+    if (schema.getOptionalProperties() != null && depth < maxDepth) {
+      for (Map.Entry<String, Schema> entry : schema.getOptionalProperties().entrySet()) {
+        if (random.nextBoolean()) {
+          object.add(entry.getKey(), valid(entry.getValue(), depth + 1));
+        }
+      }
+    }
+
+    if (Boolean.TRUE.equals(schema.getAdditionalProperties()) && random.nextBoolean()) {
+      object.add(undeclaredProperty(schema), randomScalar());
+    }
+
+    return object;
+  }
+
+  private JsonObject validDiscriminator(Schema schema, int depth) {
+    String tag = pick(new ArrayList<>(schema.getMapping().keySet()));
+    JsonObject object = validProperties(schema.getMapping().get(tag), depth);
+    object.addProperty(schema.getDiscriminator(), tag);
+    return object;
+  }
+
+  // Returns an instance with exactly one error, or null if schema accepts
+  // every instance. Either the value itself is made wrong, or a valid
+  // container is generated with one of its members made wrong.
+  private JsonElement invalid(Schema schema, int depth) {
+    if (depth > maxDepth + DEPTH_LEEWAY) {
+      throw new IllegalArgumentException("schema has no instances within the maximum depth");
+    }
+
+    if (random.nextBoolean()) {
+      JsonElement instance = invalidHere(schema, depth);
+      if (instance != null) {
+        return instance;
+      }
+    }
+
+    JsonElement instance = invalidMember(schema, depth);
+    return instance != null ? instance : invalidHere(schema, depth);
+  }
+
+  private JsonElement invalidHere(Schema schema, int depth) {
+    switch (schema.getForm()) {
+      case EMPTY:
+        return null;
+      case REF:
+        return invalidHere(root.getDefinitions().get(schema.getRef()), depth + 1);
+      case TYPE:
+        return invalidType(schema);
+      case ENUM: {
+        String value = "notInEnum";
+        while (schema.getEnum().contains(value)) {
+          value += "_";
+        }
+
+        return new JsonPrimitive(value);
+      }
+      case ELEMENTS:
+      case VALUES:
+        return random.nextBoolean() ? new JsonPrimitive(randomString()) : new JsonPrimitive(random.nextBoolean());
+      case PROPERTIES: {
+        List<String> required = schema.getProperties() == null
+            ? new ArrayList<>()
+            : new ArrayList<>(schema.getProperties().keySet());
+
+        if (!required.isEmpty() && random.nextBoolean()) {
+          JsonObject object = validProperties(schema, depth);
+          object.remove(pick(required));
+          return object;
+        }
+
+        if (!Boolean.TRUE.equals(schema.getAdditionalProperties()) && random.nextBoolean()) {
+          JsonObject object = validProperties(schema, depth);
+          object.add(undeclaredProperty(schema), randomScalar());
+          return object;
+        }
+
+        return new JsonArray();
+      }
+      case DISCRIMINATOR: {
+        JsonObject object = validDiscriminator(schema, depth);
+
+        switch (random.nextInt(3)) {
+          case 0:
+            object.remove(schema.getDiscriminator());
+            return object;
+          case 1: {
+            String tag = "notInMapping";
+            while (schema.getMapping().containsKey(tag)) {
+              tag += "_";
+            }
+
+            object.addProperty(schema.getDiscriminator(), tag);
+            return object;
+          }
+          default:
+            return new JsonArray();
+        }
+      }
+      default:
+        throw new IllegalStateException("unknown form");
+    }
+  }
+
+  private JsonElement invalidType(Schema schema) {
+    switch (schema.getType()) {
+      case BOOLEAN:
+        return new JsonPrimitive(randomString());
+      case FLOAT32:
+      case FLOAT64:
+        return new JsonPrimitive(random.nextBoolean());
+      case INT8:
+        return invalidInteger(-128, 127);
+      case UINT8:
+        return invalidInteger(0, 255);
+      case INT16:
+        return invalidInteger(-32768, 32767);
+      case UINT16:
+        return invalidInteger(0, 65535);
+      case INT32:
+        return invalidInteger(-2147483648L, 2147483647L);
+      case UINT32:
+        return invalidInteger(0, 4294967295L);
+      case STRING:
+        return new JsonPrimitive(random.nextInt(1000));
+      case TIMESTAMP:
+        return random.nextBoolean() ? new JsonPrimitive(randomString() + "T") : new JsonPrimitive(random.nextInt());
+      default:
+        throw new IllegalStateException("unknown type");
+    }
+  }
+
+  private JsonElement invalidInteger(long min, long max) {
+    switch (random.nextInt(3)) {
+      case 0:
+        return new JsonPrimitive(random.nextBoolean() ? min - 1 : max + 1);
+      case 1:
+        return new JsonPrimitive(randomLong(min, max - 1) + 0.5);
+      default:
+        return new JsonPrimitive(randomString());
+    }
+  }
+
+  // Returns a valid container with one invalid member, or null if schema is
+  // not a container or none of its members can be made invalid.
+  private JsonElement invalidMember(Schema schema, int depth) {
+    switch (schema.getForm()) {
+      case REF:
+        return invalidMember(root.getDefinitions().get(schema.getRef()), depth + 1);
+      case ELEMENTS: {
+        JsonElement member = invalid(schema.getElements(), depth + 1);
+        if (member == null) {
+          return null;
+        }
+
+        JsonArray array = (JsonArray) valid(withoutNullable(schema), depth);
+        JsonArray result = new JsonArray();
+        int index = random.nextInt(array.size() + 1);
+        for (int i = 0; i < array.size(); i++) {
+          if (i == index) {
+            result.add(member);
+          }
+
+          result.add(array.get(i));
+        }
+
+        if (index == array.size()) {
+          result.add(member);
+        }
+
+        return result;
+      }
+      case VALUES: {
+        JsonElement member = invalid(schema.getValues(), depth + 1);
+        if (member == null) {
+          return null;
+        }
+
+        JsonObject object = (JsonObject) valid(withoutNullable(schema), depth);
+        object.add(randomString() + "_invalid", member);
+        return object;
+      }
+      case PROPERTIES:
+        return invalidProperty(schema, depth);
+      case DISCRIMINATOR: {
+        String tag = pick(new ArrayList<>(schema.getMapping().keySet()));
+        JsonElement object = invalidProperty(schema.getMapping().get(tag), depth);
+        if (object == null) {
+          return null;
+        }
+
+        ((JsonObject) object).addProperty(schema.getDiscriminator(), tag);
+        return object;
+      }
+      default:
+        return null;
+    }
+  }
+
+  // Returns a valid object with one invalid property value, or null if none
+  // of the properties of schema can be made invalid.
+  private JsonElement invalidProperty(Schema schema, int depth) {
+    List<Map.Entry<String, Schema>> properties = new ArrayList<>();
+    if (schema.getProperties() != null) {
+      properties.addAll(schema.getProperties().entrySet());
+    }
+
+    if (schema.getOptionalProperties() != null) {
+      properties.addAll(schema.getOptionalProperties().entrySet());
+    }
+
+    while (!properties.isEmpty()) {
+      Map.Entry<String, Schema> property = properties.remove(random.nextInt(properties.size()));
+      JsonElement member = invalid(property.getValue(), depth + 1);
+      if (member != null) {
+        JsonObject object = validProperties(schema, depth);
+        object.add(property.getKey(), member);
+        return object;
+      }
+    }
+
+    return null;
+  }
+
+  private static Schema withoutNullable(Schema schema) {
+    if (!schema.isNullable()) {
+      return schema;
+    }
+
+    Schema copy = new Schema();
+    copy.setElements(schema.getElements());
+    copy.setValues(schema.getValues());
+    return copy;
+  }
+
+  private String undeclaredProperty(Schema schema) {
+    String name = "undeclared";
+    while ((schema.getProperties() != null && schema.getProperties().containsKey(name))
+        || (schema.getOptionalProperties() != null && schema.getOptionalProperties().containsKey(name))) {
+      name += "_";
+    }
+
+    return name;
+  }
+
+  private int size(int depth) {
+    return depth < maxDepth ? random.nextInt(maxSize + 1) : 0;
+  }
+
+  private <T> T pick(List<T> list) {
+    return list.get(random.nextInt(list.size()));
+  }
+
+  private long randomLong(long min, long max) {
+    return min + (long) (random.nextDouble() * (max - min + 1));
+  }
+
+  private JsonElement randomScalar() {
+    switch (random.nextInt(3)) {
+      case 0:
+        return new JsonPrimitive(random.nextBoolean());
+      case 1:
+        return new JsonPrimitive(random.nextInt());
+      default:
+        return new JsonPrimitive(randomString());
+    }
+  }
+
+  private String randomString() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = random.nextInt(16) + 1; i > 0; i--) {
+      sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+    }
+
+    return sb.toString();
+  }
+
+  private String randomTimestamp() {
+    String offset = random.nextBoolean()
+        ? "Z"
+        : String.format(Locale.ROOT, "%s%02d:%02d", random.nextBoolean() ? "+" : "-", random.nextInt(24),
+            random.nextInt(60));
+
+    return String.format(Locale.ROOT, "%04d-%02d-%02dT%02d:%02d:%02d.%03d%s", 1970 + random.nextInt(130),
+        random.nextInt(12) + 1, random.nextInt(28) + 1, random.nextInt(24), random.nextInt(60), random.nextInt(60),
+        random.nextInt(1000), offset);
+  }
+}
@@ -0,0 +1,250 @@
+package com.jsontypedef.jtd.benchmark;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+
+import com.google.gson.Gson;
+import com.jsontypedef.jtd.CompiledSchema;
+import com.jsontypedef.jtd.InvalidSchemaException;
+import com.jsontypedef.jtd.Json;
+import com.jsontypedef.jtd.LatencyHistogram;
+import com.jsontypedef.jtd.MaxDepthExceededException;
+import com.jsontypedef.jtd.Schema;
+import com.jsontypedef.jtd.Validator;
+
+/**
+ * Drives {@code Validator} from increasing numbers of threads, and reports
+ * how throughput and latency change as threads are added.
+ *
+ * Where JMH measures validation of a single instance in isolation, this
+ * validates a pool of generated instances, some of them invalid, from every
+ * thread at once. That shows contention and memory bandwidth effects that a
+ * single-threaded benchmark cannot.
+ *
+ * Run it with:
+ *
+ * ./gradlew loadTest --args="SCHEMA [OPTIONS]"
+ *
+ * SCHEMA is either the path to a schema file, or the name of a {@code Shape}.
+ * Run it without arguments to see its options.
+ */
+public class LoadHarness {
+  private static final String USAGE = String.join("\n",
+      "usage: LoadHarness SCHEMA [OPTIONS]",
+      "",
+      "SCHEMA is a path to a JSON Typedef schema file, or one of the built-in shapes:",
+      "  " + Arrays.toString(Shape.values()),
+      "",
+      "options:",
+      "  --threads N         the maximum number of threads (default: number of processors)",
+      "  --seconds N         how long to run at each number of threads (default: 5)",
+      "  --adapter NAME      GSON or JACKSON (default: JACKSON)",
+      "  --instances N       how many instances to generate (default: 1000)",
+      "  --invalid PERCENT   how many of the instances are invalid (default: 10)",
+      "  --max-depth N       the nesting depth of generated instances (default: 4)",
+      "  --max-size N        the maximum size of generated arrays and objects (default: 8)",
+      "  --seed N            the seed for generating instances (default: 0)");
+
+  private int threads = Runtime.getRuntime().availableProcessors();
+  private int seconds = 5;
+  private Adapter adapter = Adapter.JACKSON;
+  private int instanceCount = 1000;
+  private int invalidPercent = 10;
+  private int maxDepth = 4;
+  private int maxSize = 8;
+  private long seed;
+
+  public static void main(String[] args) throws Exception {
+    if (args.length == 0) {
+      System.err.println(USAGE);
+      System.exit(1);
+    }
+
+    LoadHarness harness = new LoadHarness();
+    for (int i = 1; i < args.length; i += 2) {
+      if (i + 1 == args.length) {
+        System.err.println(USAGE);
+        System.exit(1);
+      }
+
+      harness.setOption(args[i], args[i + 1]);
+    }
+
+    harness.run(readSchema(args[0]));
+  }
+
+  private void setOption(String name, String value) {
+    switch (name) {
+      case "--threads":
+        threads = Integer.parseInt(value);
+        break;
+      case "--seconds":
+        seconds = Integer.parseInt(value);
+        break;
+      case "--adapter":
+        adapter = Adapter.valueOf(value.toUpperCase(Locale.ROOT));
+        break;
+      case "--instances":
+        instanceCount = Integer.parseInt(value);
+        break;
+      case "--invalid":
+        invalidPercent = Integer.parseInt(value);
+        break;
+      case "--max-depth":
+        maxDepth = Integer.parseInt(value);
+        break;
+      case "--max-size":
+        maxSize = Integer.parseInt(value);
+        break;
+      case "--seed":
+        seed = Long.parseLong(value);
+        break;
+      default:
+        throw new IllegalArgumentException("unknown option: " + name + "\n" + USAGE);
+    }
+  }
+
+  private static Schema readSchema(String arg) throws IOException {
+    for (Shape shape : Shape.values()) {
+      if (shape.name().equalsIgnoreCase(arg)) {
+        return new Gson().fromJson(shape.schema(), Schema.class);
+      }
+    }
+
+    try (InputStreamReader reader = new InputStreamReader(Files.newInputStream(Paths.get(arg)),
+        StandardCharsets.UTF_8)) {
+      return new Gson().fromJson(reader, Schema.class);
+    }
+  }
+
+  private void run(Schema schema) throws InvalidSchemaException, IOException, InterruptedException {
+    CompiledSchema compiledSchema = CompiledSchema.compile(schema);
+
+    // Instances are generated and parsed up front, so that only validation is
+    // measured.
+    Random random = new Random(seed);
+    InstanceGenerator generator = new InstanceGenerator(schema, random, maxDepth, maxSize);
+    List<Json> instances = new ArrayList<>();
+    for (int i = 0; i < instanceCount; i++) {
+      boolean valid = random.nextInt(100) >= invalidPercent;
+      instances.add(adapter.parse((valid ? generator.valid() : generator.invalid()).toString()));
+    }
+
+    System.out.printf(Locale.ROOT, "%d instances, %d%% invalid, %s adapter, %d s per step%n%n", instanceCount,
+        invalidPercent, adapter, seconds);
+
+    // Let the JIT compile validation before anything is measured.
+    runStep(compiledSchema, instances, 1);
+
+    System.out.printf(Locale.ROOT, "%8s %14s %10s %10s %10s %10s %10s %11s%n", "threads", "ops/s", "p50 us",
+        "p90 us", "p99 us", "p99.9 us", "max us", "efficiency");
+
+    double baseline = 0;
+    for (int n : threadCounts()) {
+      Step step = runStep(compiledSchema, instances, n);
+      double throughput = step.histogram.count() / step.seconds;
+      if (n == 1) {
+        baseline = throughput;
+      }
+
+      // How close n threads come to n times the throughput of one thread.
+      double efficiency = throughput / (baseline * n);
+
+      System.out.printf(Locale.ROOT, "%8d %14.0f %10.1f %10.1f %10.1f %10.1f %10.1f %10.0f%%%n", n, throughput,
+          step.histogram.percentile(50) / 1e3, step.histogram.percentile(90) / 1e3,
+          step.histogram.percentile(99) / 1e3, step.histogram.percentile(99.9) / 1e3,
+          step.histogram.percentile(100) / 1e3, efficiency * 100);
+    }
+  }
+
+  // Powers of two up to the maximum number of threads, and the maximum
+  // itself.
+  private TreeSet<Integer> threadCounts() {
+    TreeSet<Integer> counts = new TreeSet<>();
+    for (int n = 1; n < threads; n *= 2) {
+      counts.add(n);
+    }
+
+    counts.add(threads);
+    return counts;
+  }
+
+  private Step runStep(CompiledSchema schema, List<Json> instances, int threadCount) throws InterruptedException {
+    Validator validator = new Validator();
+
+    // Every thread records into the same histogram, which spreads them over
+    // separate counters. Five bits keep percentiles to within about 3%.
+    LatencyHistogram histogram = new LatencyHistogram(5);
+    Throwable[] failures = new Throwable[threadCount];
+    CountDownLatch start = new CountDownLatch(1);
+    long durationNanos = seconds * 1_000_000_000L;
+
+    List<Thread> workers = new ArrayList<>();
+    for (int t = 0; t < threadCount; t++) {
+      int index = t;
+
+      Thread worker = new Thread(() -> {
+        // Threads start at different places in the pool, so they are not all
+        // validating the same instance at the same time.
+        int position = index * instances.size() / threadCount;
+
+        try {
+          start.await();
+
+          long deadline = System.nanoTime() + durationNanos;
+          long now = System.nanoTime();
+          while (now < deadline) {
+            validator.validate(schema, instances.get(position));
+
+            long end = System.nanoTime();
+            histogram.record(end - now);
+            now = end;
+
+            position = position + 1 == instances.size() ? 0 : position + 1;
+          }
+        } catch (InterruptedException | MaxDepthExceededException | RuntimeException e) {
+          failures[index] = e;
+        }
+      }, "load-harness-" + t);
+
+      workers.add(worker);
+      worker.start();
+    }
+
+    long started = System.nanoTime();
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+
+    long elapsed = System.nanoTime() - started;
+
+    for (Throwable failure : failures) {
+      if (failure != null) {
+        throw new IllegalStateException("validation failed", failure);
+      }
+    }
+
+    return new Step(histogram, elapsed / 1e9);
+  }
+
+  private static final class Step {
+    final LatencyHistogram histogram;
+    final double seconds;
+
+    Step(LatencyHistogram histogram, double seconds) {
+      this.histogram = histogram;
+      this.seconds = seconds;
+    }
+  }
+}
@@ -0,0 +1,192 @@
+package com.jsontypedef.jtd.benchmark;
+
+import java.util.Locale;
+
+/**
+ * The kinds of schema the benchmarks validate against, each with a valid and
+ * an invalid instance.
+ *
+ * Each shape stresses one part of validation. Instances are generated rather
+ * than kept as files, so that their size is easy to change, and so that
+ * invalid instances differ from valid ones in predictable places.
+ */
+public enum Shape {
+  /**
+   * An object with many required and optional properties.
+   */
+  WIDE_PROPERTIES {
+    @Override
+    String schema() {
+      StringBuilder sb = new StringBuilder("{\"properties\": {");
+      for (int i = 0; i < 50; i++) {
+        sb.append(i == 0 ? "" : ", ").append("\"required").append(i).append("\": {\"type\": \"string\"}");
+      }
+
+      sb.append("}, \"optionalProperties\": {");
+      for (int i = 0; i < 50; i++) {
+        sb.append(i == 0 ? "" : ", ").append("\"optional").append(i).append("\": {\"type\": \"uint32\"}");
+      }
+
+      return sb.append("}}").toString();
+    }
+
+    @Override
+    String instance(boolean valid) {
+      // Invalid instances get the wrong type for every fifth property.
+      StringBuilder sb = new StringBuilder("{");
+      for (int i = 0; i < 50; i++) {
+        sb.append(i == 0 ? "" : ", ").append("\"required").append(i).append("\": ");
+        sb.append(!valid && i % 5 == 0 ? "123" : "\"value" + i + "\"");
+        sb.append(", \"optional").append(i).append("\": ");
+        sb.append(!valid && i % 5 == 0 ? "-1" : Integer.toString(i * 1000));
+      }
+
+      return sb.append("}").toString();
+    }
+  },
+
+  /**
+   * A linked list, where each node refers back to the same definition.
+   */
+  DEEP_REFS {
+    @Override
+    String schema() {
+      return "{\"definitions\": {\"node\": {\"properties\": {\"value\": {\"type\": \"int32\"}}, "
+          + "\"optionalProperties\": {\"next\": {\"ref\": \"node\"}}}}, \"ref\": \"node\"}";
+    }
+
+    @Override
+    String instance(boolean valid) {
+      // Invalid instances have a value out of range in every tenth node.
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < 100; i++) {
+        sb.append("{\"value\": ").append(!valid && i % 10 == 0 ? "3000000000" : Integer.toString(i));
+        sb.append(i == 99 ? "" : ", \"next\": ");
+      }
+
+      for (int i = 0; i < 100; i++) {
+        sb.append("}");
+      }
+
+      return sb.toString();
+    }
+  },
+
+  /**
+   * An array of tagged unions. Half of the elements put their tag last, which
+   * streaming validation has to buffer for.
+   */
+  DISCRIMINATOR {
+    @Override
+    String schema() {
+      StringBuilder sb = new StringBuilder("{\"elements\": {\"discriminator\": \"kind\", \"mapping\": {");
+      for (int i = 0; i < 10; i++) {
+        sb.append(i == 0 ? "" : ", ").append("\"kind").append(i).append("\": {\"properties\": {");
+        sb.append("\"id\": {\"type\": \"string\"}, \"count").append(i).append("\": {\"type\": \"uint16\"}}}");
+      }
+
+      return sb.append("}}}").toString();
+    }
+
+    @Override
+    String instance(boolean valid) {
+      // Invalid instances have every tenth element missing its count.
+      StringBuilder sb = new StringBuilder("[");
+      for (int i = 0; i < 1000; i++) {
+        int kind = i % 10;
+        String tag = "\"kind\": \"kind" + kind + "\"";
+        String members = "\"id\": \"item" + i + "\"" + (!valid && i % 10 == 0 ? "" : ", \"count" + kind + "\": " + i);
+
+        sb.append(i == 0 ? "{" : ", {");
+        sb.append(i % 2 == 0 ? tag + ", " + members : members + ", " + tag);
+        sb.append("}");
+      }
+
+      return sb.append("]").toString();
+    }
+  },
+
+  /**
+   * A large array of numbers.
+   */
+  BIG_ARRAY {
+    @Override
+    String schema() {
+      return "{\"elements\": {\"type\": \"int32\"}}";
+    }
+
+    @Override
+    String instance(boolean valid) {
+      // Invalid instances have a fractional number in every hundredth element.
+      StringBuilder sb = new StringBuilder("[");
+      for (int i = 0; i < 10000; i++) {
+        sb.append(i == 0 ? "" : ", ").append(!valid && i % 100 == 0 ? "0.5" : Integer.toString(i));
+      }
+
+      return sb.append("]").toString();
+    }
+  },
+
+  /**
+   * A values object whose values are all timestamps.
+   */
+  TIMESTAMPS {
+    @Override
+    String schema() {
+      return "{\"values\": {\"type\": \"timestamp\"}}";
+    }
+
+    @Override
+    String instance(boolean valid) {
+      // Invalid instances have an impossible date in every tenth value.
+      StringBuilder sb = new StringBuilder("{");
+      for (int i = 0; i < 1000; i++) {
+        sb.append(i == 0 ? "" : ", ").append("\"event").append(i).append("\": ");
+        if (!valid && i % 10 == 0) {
+          sb.append("\"2020-02-30T12:00:00Z\"");
+        } else {
+          sb.append(String.format(Locale.ROOT, "\"2020-%02d-%02dT%02d:%02d:%02d.%03d+01:00\"",
+              i % 12 + 1, i % 28 + 1, i % 24, i % 60, i % 60, i));
+        }
+      }
+
+      return sb.append("}").toString();
+    }
+  },
+
+  /**
+   * An array of values from a large enum.
+   */
+  ENUMS {
+    @Override
+    String schema() {
+      StringBuilder sb = new StringBuilder("{\"elements\": {\"enum\": [");
+      for (int i = 0; i < 50; i++) {
+        sb.append(i == 0 ? "" : ", ").append("\"VALUE_").append(i).append("\"");
+      }
+
+      return sb.append("]}}").toString();
+    }
+
+    @Override
+    String instance(boolean valid) {
+      // Invalid instances have a value not in the enum in every tenth element.
+      StringBuilder sb = new StringBuilder("[");
+      for (int i = 0; i < 1000; i++) {
+        sb.append(i == 0 ? "" : ", ").append("\"VALUE_").append(!valid && i % 10 == 0 ? 50 : i % 50).append("\"");
+      }
+
+      return sb.append("]").toString();
+    }
+  };
+
+  /**
+   * Gets the schema of this shape, as JSON.
+   */
+  abstract String schema();
+
+  /**
+   * Gets an instance of this shape, as JSON.
+   */
+  abstract String instance(boolean valid);
+}
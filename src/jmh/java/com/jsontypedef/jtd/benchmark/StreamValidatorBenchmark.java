@@ -0,0 +1,76 @@
+package com.jsontypedef.jtd.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.Gson;
+import com.jsontypedef.jtd.CompiledSchema;
+import com.jsontypedef.jtd.InvalidSchemaException;
+import com.jsontypedef.jtd.Json;
+import com.jsontypedef.jtd.MaxDepthExceededException;
+import com.jsontypedef.jtd.Schema;
+import com.jsontypedef.jtd.ValidationError;
+import com.jsontypedef.jtd.Validator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures validating instances straight from their JSON text.
+ *
+ * Both benchmarks include the cost of parsing, so that streaming validation
+ * can be compared fairly with parsing into a tree and then validating it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamValidatorBenchmark {
+  @Param
+  public Shape shape;
+
+  @Param
+  public Adapter adapter;
+
+  @Param({ "true", "false" })
+  public boolean valid;
+
+  @Param({ "0", "1" })
+  public int maxErrors;
+
+  private CompiledSchema schema;
+  private String instance;
+  private Validator validator;
+
+  @Setup
+  public void setup() throws InvalidSchemaException {
+    schema = CompiledSchema.compile(new Gson().fromJson(shape.schema(), Schema.class));
+    instance = shape.instance(valid);
+
+    validator = new Validator();
+    validator.setMaxErrors(maxErrors);
+  }
+
+  @Benchmark
+  public List<ValidationError> validateStream() throws MaxDepthExceededException, IOException {
+    return adapter.validateStream(validator, schema, instance);
+  }
+
+  @Benchmark
+  public List<ValidationError> parseAndValidate() throws MaxDepthExceededException, IOException {
+    Json json = adapter.parse(instance);
+    return validator.validate(schema, json);
+  }
+}
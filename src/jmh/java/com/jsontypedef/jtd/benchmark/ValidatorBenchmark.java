@@ -0,0 +1,97 @@
+package com.jsontypedef.jtd.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.Gson;
+import com.jsontypedef.jtd.CompiledSchema;
+import com.jsontypedef.jtd.InvalidSchemaException;
+import com.jsontypedef.jtd.Json;
+import com.jsontypedef.jtd.MaxDepthExceededException;
+import com.jsontypedef.jtd.Schema;
+import com.jsontypedef.jtd.ValidationError;
+import com.jsontypedef.jtd.Validator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures validating instances that have already been parsed into a tree.
+ *
+ * Parsing is done once, during setup, so these numbers are for validation
+ * alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidatorBenchmark {
+  @Param
+  public Shape shape;
+
+  @Param
+  public Adapter adapter;
+
+  @Param({ "true", "false" })
+  public boolean valid;
+
+  @Param({ "0", "1" })
+  public int maxErrors;
+
+  private Schema schema;
+  private CompiledSchema compiledSchema;
+  private Json instance;
+  private Validator validator;
+
+  // A separate schema and validator, which generates a class for the schema
+  // on its first validation.
+  private CompiledSchema generatedSchema;
+  private Validator generatingValidator;
+
+  @Setup
+  public void setup() throws InvalidSchemaException, IOException {
+    schema = new Gson().fromJson(shape.schema(), Schema.class);
+    compiledSchema = CompiledSchema.compile(schema);
+    instance = adapter.parse(shape.instance(valid));
+
+    validator = new Validator();
+    validator.setMaxErrors(maxErrors);
+
+    generatedSchema = CompiledSchema.compile(schema);
+    generatingValidator = new Validator();
+    generatingValidator.setMaxErrors(maxErrors);
+    generatingValidator.setCompileThreshold(1);
+  }
+
+  @Benchmark
+  public List<ValidationError> validate() throws MaxDepthExceededException {
+    return validator.validate(compiledSchema, instance);
+  }
+
+  @Benchmark
+  public List<ValidationError> validateGenerated() throws MaxDepthExceededException {
+    return generatingValidator.validate(generatedSchema, instance);
+  }
+
+  @Benchmark
+  public List<ValidationError> validateUncompiled() throws MaxDepthExceededException {
+    return validator.validate(schema, instance);
+  }
+
+  @Benchmark
+  public boolean isValid() throws MaxDepthExceededException {
+    return validator.isValid(compiledSchema, instance);
+  }
+}
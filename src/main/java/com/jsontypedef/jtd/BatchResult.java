@@ -0,0 +1,70 @@
+package com.jsontypedef.jtd;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The result of validating a batch of instances with {@code validateAll} in
+ * {@code Validator}.
+ *
+ * Results are indexed by the position of each instance in the batch. Which
+ * instances are invalid is also available as a {@code BitSet}, which is a
+ * compact way to keep or pass along the outcome of a large batch.
+ */
+public class BatchResult {
+  private final List<ValidationError>[] errors;
+  private final BitSet invalid;
+
+  BatchResult(List<ValidationError>[] errors, BitSet invalid) {
+    this.errors = errors;
+    this.invalid = invalid;
+  }
+
+  /**
+   * Gets the number of instances in the batch.
+   *
+   * @return the number of instances validated
+   */
+  public int size() {
+    return errors.length;
+  }
+
+  /**
+   * Gets whether an instance in the batch was valid.
+   *
+   * @param index the position of the instance in the batch
+   * @return whether the instance had no validation errors
+   */
+  public boolean isValid(int index) {
+    return !invalid.get(index);
+  }
+
+  /**
+   * Gets the validation errors for an instance in the batch.
+   *
+   * @param index the position of the instance in the batch
+   * @return the validation errors for the instance, which is empty if the
+   * instance was valid
+   */
+  public List<ValidationError> getErrors(int index) {
+    return errors[index];
+  }
+
+  /**
+   * Gets the positions of the invalid instances in the batch.
+   *
+   * @return a new {@code BitSet}, with a bit set for each invalid instance
+   */
+  public BitSet getInvalid() {
+    return (BitSet) invalid.clone();
+  }
+
+  /**
+   * Gets the number of invalid instances in the batch.
+   *
+   * @return the number of instances with validation errors
+   */
+  public int getInvalidCount() {
+    return invalid.cardinality();
+  }
+}
@@ -0,0 +1,491 @@
+package com.jsontypedef.jtd;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the few kinds of class file that {@code ClassGenerator} needs.
+ *
+ * Classes are written in version 49 (Java 5) of the class file format, which
+ * is the last to be verified without stack map frames. That keeps this writer
+ * to a constant pool, and branches that are patched once their labels are
+ * placed.
+ */
+final class ClassFileWriter {
+  static final int ACC_PUBLIC = 0x0001;
+  static final int ACC_PRIVATE = 0x0002;
+  static final int ACC_FINAL = 0x0010;
+  static final int ACC_SUPER = 0x0020;
+
+  static final int ACONST_NULL = 0x01;
+  static final int ICONST_0 = 0x03;
+  static final int ICONST_1 = 0x04;
+  static final int SIPUSH = 0x11;
+  static final int ILOAD = 0x15;
+  static final int LLOAD = 0x16;
+  static final int DLOAD = 0x18;
+  static final int ALOAD = 0x19;
+  static final int AALOAD = 0x32;
+  static final int ISTORE = 0x36;
+  static final int LSTORE = 0x37;
+  static final int DSTORE = 0x39;
+  static final int ASTORE = 0x3a;
+  static final int IADD = 0x60;
+  static final int IINC = 0x84;
+  static final int L2D = 0x8a;
+  static final int LCMP = 0x94;
+  static final int DCMPL = 0x97;
+  static final int DCMPG = 0x98;
+  static final int IFEQ = 0x99;
+  static final int IFNE = 0x9a;
+  static final int IFLT = 0x9b;
+  static final int IFGT = 0x9d;
+  static final int IF_ICMPEQ = 0x9f;
+  static final int GOTO = 0xa7;
+  static final int LOOKUPSWITCH = 0xab;
+  static final int RETURN = 0xb1;
+  static final int GETFIELD = 0xb4;
+  static final int PUTFIELD = 0xb5;
+  static final int INVOKEVIRTUAL = 0xb6;
+  static final int INVOKESPECIAL = 0xb7;
+  static final int INVOKESTATIC = 0xb8;
+  static final int INVOKEINTERFACE = 0xb9;
+  static final int CHECKCAST = 0xc0;
+  static final int IFNULL = 0xc6;
+
+  private static final int CONSTANT_UTF8 = 1;
+  private static final int CONSTANT_LONG = 5;
+  private static final int CONSTANT_DOUBLE = 6;
+  private static final int CONSTANT_CLASS = 7;
+  private static final int CONSTANT_STRING = 8;
+  private static final int CONSTANT_FIELDREF = 9;
+  private static final int CONSTANT_METHODREF = 10;
+  private static final int CONSTANT_INTERFACE_METHODREF = 11;
+  private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+  private final ByteArrayOutputStream constantBytes = new ByteArrayOutputStream();
+  private final DataOutputStream constants = new DataOutputStream(constantBytes);
+  private final Map<String, Integer> constantIndexes = new HashMap<>();
+  private int constantCount = 1;
+
+  private final ByteArrayOutputStream fieldBytes = new ByteArrayOutputStream();
+  private final DataOutputStream fields = new DataOutputStream(fieldBytes);
+  private int fieldCount;
+
+  private final ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+  private final DataOutputStream methods = new DataOutputStream(methodBytes);
+  private int methodCount;
+
+  /**
+   * Raised when a class would exceed one of the limits of the class file
+   * format, or when one of its methods would be too long to be worth having.
+   */
+  static class TooLargeException extends Exception {
+    private static final long serialVersionUID = 4718120462838237645L;
+  }
+
+  int utf8(String value) throws TooLargeException {
+    Integer index = constantIndexes.get("U" + value);
+    if (index != null) {
+      return index;
+    }
+
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      new DataOutputStream(bytes).writeUTF(value);
+
+      constants.writeByte(CONSTANT_UTF8);
+      bytes.writeTo(constants);
+    } catch (IOException e) {
+      // Strings whose encoding is longer than 65535 bytes can't be constants.
+      throw new TooLargeException();
+    }
+
+    return addConstant("U" + value, 1);
+  }
+
+  int classRef(String internalName) throws TooLargeException {
+    return reference(CONSTANT_CLASS, utf8(internalName));
+  }
+
+  int string(String value) throws TooLargeException {
+    return reference(CONSTANT_STRING, utf8(value));
+  }
+
+  int longConstant(long value) throws TooLargeException {
+    Integer index = constantIndexes.get("J" + value);
+    if (index != null) {
+      return index;
+    }
+
+    write(() -> {
+      constants.writeByte(CONSTANT_LONG);
+      constants.writeLong(value);
+    });
+
+    // Longs and doubles take two entries of the constant pool.
+    return addConstant("J" + value, 2);
+  }
+
+  int doubleConstant(double value) throws TooLargeException {
+    Integer index = constantIndexes.get("D" + value);
+    if (index != null) {
+      return index;
+    }
+
+    write(() -> {
+      constants.writeByte(CONSTANT_DOUBLE);
+      constants.writeDouble(value);
+    });
+
+    return addConstant("D" + value, 2);
+  }
+
+  int fieldRef(String owner, String name, String descriptor) throws TooLargeException {
+    return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+  }
+
+  int methodRef(String owner, String name, String descriptor) throws TooLargeException {
+    return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+  }
+
+  int interfaceMethodRef(String owner, String name, String descriptor) throws TooLargeException {
+    return memberRef(CONSTANT_INTERFACE_METHODREF, owner, name, descriptor);
+  }
+
+  private int memberRef(int tag, String owner, String name, String descriptor) throws TooLargeException {
+    int nameAndType = reference(CONSTANT_NAME_AND_TYPE, utf8(name), utf8(descriptor));
+    return reference(tag, classRef(owner), nameAndType);
+  }
+
+  private int reference(int tag, int... indexes) throws TooLargeException {
+    StringBuilder key = new StringBuilder().append(tag);
+    for (int index : indexes) {
+      key.append(':').append(index);
+    }
+
+    Integer index = constantIndexes.get(key.toString());
+    if (index != null) {
+      return index;
+    }
+
+    write(() -> {
+      constants.writeByte(tag);
+      for (int i : indexes) {
+        constants.writeShort(i);
+      }
+    });
+
+    return addConstant(key.toString(), 1);
+  }
+
+  private int addConstant(String key, int entries) throws TooLargeException {
+    int index = constantCount;
+    constantCount += entries;
+    if (constantCount > 0xffff) {
+      throw new TooLargeException();
+    }
+
+    constantIndexes.put(key, index);
+    return index;
+  }
+
+  void addField(int access, String name, String descriptor) throws TooLargeException {
+    int nameIndex = utf8(name);
+    int descriptorIndex = utf8(descriptor);
+
+    write(() -> {
+      fields.writeShort(access);
+      fields.writeShort(nameIndex);
+      fields.writeShort(descriptorIndex);
+      fields.writeShort(0);
+    });
+
+    fieldCount++;
+  }
+
+  void addMethod(int access, String name, String descriptor, Code code) throws TooLargeException {
+    byte[] bytecode = code.toByteArray();
+    int nameIndex = utf8(name);
+    int descriptorIndex = utf8(descriptor);
+    int codeIndex = utf8("Code");
+
+    write(() -> {
+      methods.writeShort(access);
+      methods.writeShort(nameIndex);
+      methods.writeShort(descriptorIndex);
+
+      // A single attribute, Code, with no exception table or attributes of its
+      // own.
+      methods.writeShort(1);
+      methods.writeShort(codeIndex);
+      methods.writeInt(12 + bytecode.length);
+      methods.writeShort(code.maxStack);
+      methods.writeShort(code.maxLocals);
+      methods.writeInt(bytecode.length);
+      methods.write(bytecode);
+      methods.writeShort(0);
+      methods.writeShort(0);
+    });
+
+    methodCount++;
+  }
+
+  byte[] toByteArray(int access, String name, String superName, String... interfaces) throws TooLargeException {
+    int thisIndex = classRef(name);
+    int superIndex = classRef(superName);
+    int[] interfaceIndexes = new int[interfaces.length];
+    for (int i = 0; i < interfaces.length; i++) {
+      interfaceIndexes[i] = classRef(interfaces[i]);
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    try {
+      out.writeInt(0xcafebabe);
+      out.writeShort(0);
+      out.writeShort(49);
+      out.writeShort(constantCount);
+      constantBytes.writeTo(out);
+      out.writeShort(access);
+      out.writeShort(thisIndex);
+      out.writeShort(superIndex);
+      out.writeShort(interfaceIndexes.length);
+      for (int index : interfaceIndexes) {
+        out.writeShort(index);
+      }
+      out.writeShort(fieldCount);
+      fieldBytes.writeTo(out);
+      out.writeShort(methodCount);
+      methodBytes.writeTo(out);
+      out.writeShort(0);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+
+    return bytes.toByteArray();
+  }
+
+  private interface Write {
+    void run() throws IOException;
+  }
+
+  // Writing to a ByteArrayOutputStream never actually fails.
+  private static void write(Write write) {
+    try {
+      write.run();
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * A position in a method's code, which branches can refer to before it is
+   * placed.
+   */
+  static final class Label {
+    private int position = -1;
+
+    // The branches to this label, each as the position of the branch's opcode,
+    // the position of its offset, and the number of bytes in its offset.
+    private final List<int[]> branches = new ArrayList<>();
+  }
+
+  /**
+   * The code of a single method.
+   *
+   * Branch offsets are written as two bytes, which {@code toByteArray} checks
+   * by limiting the length of the code to {@code maxLength}.
+   */
+  static final class Code {
+    private final ClassFileWriter writer;
+    private final int maxLength;
+    private final List<Label> labels = new ArrayList<>();
+    private byte[] bytes = new byte[256];
+    private int length;
+
+    private final int maxStack;
+    private final int maxLocals;
+
+    Code(ClassFileWriter writer, int maxLength, int maxStack, int maxLocals) {
+      this.writer = writer;
+      this.maxLength = maxLength;
+      this.maxStack = maxStack;
+      this.maxLocals = maxLocals;
+    }
+
+    void op(int opcode) {
+      u1(opcode);
+    }
+
+    // For loads and stores of local variables.
+    void op(int opcode, int local) {
+      u1(opcode);
+      u1(local);
+    }
+
+    void iinc(int local, int increment) {
+      u1(IINC);
+      u1(local);
+      u1(increment);
+    }
+
+    void ldc(String value) throws TooLargeException {
+      ldc(writer.string(value));
+    }
+
+    void ldc(long value) throws TooLargeException {
+      u1(0x14);
+      u2(writer.longConstant(value));
+    }
+
+    void ldc(double value) throws TooLargeException {
+      u1(0x14);
+      u2(writer.doubleConstant(value));
+    }
+
+    private void ldc(int index) {
+      if (index < 0x100) {
+        u1(0x12);
+        u1(index);
+      } else {
+        u1(0x13);
+        u2(index);
+      }
+    }
+
+    void invoke(int opcode, String owner, String name, String descriptor) throws TooLargeException {
+      if (opcode == INVOKEINTERFACE) {
+        u1(opcode);
+        u2(writer.interfaceMethodRef(owner, name, descriptor));
+        u1(argumentSlots(descriptor) + 1);
+        u1(0);
+      } else {
+        u1(opcode);
+        u2(writer.methodRef(owner, name, descriptor));
+      }
+    }
+
+    void field(int opcode, String owner, String name, String descriptor) throws TooLargeException {
+      u1(opcode);
+      u2(writer.fieldRef(owner, name, descriptor));
+    }
+
+    void sipush(int value) throws TooLargeException {
+      if (value > Short.MAX_VALUE) {
+        throw new TooLargeException();
+      }
+
+      u1(SIPUSH);
+      u2(value);
+    }
+
+    void checkcast(String internalName) throws TooLargeException {
+      u1(CHECKCAST);
+      u2(writer.classRef(internalName));
+    }
+
+    void jump(int opcode, Label label) {
+      u1(opcode);
+      label.branches.add(new int[] {length - 1, length, 2});
+      u2(0);
+    }
+
+    /**
+     * Jumps to the label of the first of {@code keys} equal to the int on top
+     * of the stack, or to {@code otherwise}. The keys must be in increasing
+     * order.
+     */
+    void lookupswitch(int[] keys, Label[] labels, Label otherwise) {
+      int start = length;
+      u1(LOOKUPSWITCH);
+      while (length % 4 != 0) {
+        u1(0);
+      }
+
+      branch4(start, otherwise);
+      u4(keys.length);
+      for (int i = 0; i < keys.length; i++) {
+        u4(keys[i]);
+        branch4(start, labels[i]);
+      }
+    }
+
+    private void branch4(int start, Label label) {
+      label.branches.add(new int[] {start, length, 4});
+      u4(0);
+    }
+
+    void place(Label label) {
+      label.position = length;
+      labels.add(label);
+    }
+
+    byte[] toByteArray() throws TooLargeException {
+      if (length > maxLength) {
+        throw new TooLargeException();
+      }
+
+      for (Label label : labels) {
+        for (int[] branch : label.branches) {
+          int offset = label.position - branch[0];
+          for (int i = 0; i < branch[2]; i++) {
+            bytes[branch[1] + i] = (byte) (offset >> (8 * (branch[2] - 1 - i)));
+          }
+        }
+      }
+
+      byte[] code = new byte[length];
+      System.arraycopy(bytes, 0, code, 0, length);
+      return code;
+    }
+
+    private void u1(int value) {
+      if (length == bytes.length) {
+        byte[] grown = new byte[length * 2];
+        System.arraycopy(bytes, 0, grown, 0, length);
+        bytes = grown;
+      }
+
+      bytes[length++] = (byte) value;
+    }
+
+    private void u2(int value) {
+      u1(value >> 8);
+      u1(value);
+    }
+
+    private void u4(int value) {
+      u2(value >> 16);
+      u2(value);
+    }
+
+    // The number of slots the arguments described by a method descriptor take,
+    // which invokeinterface repeats.
+    private static int argumentSlots(String descriptor) {
+      int slots = 0;
+      for (int i = 1; descriptor.charAt(i) != ')'; i++) {
+        char c = descriptor.charAt(i);
+        if (c == 'J' || c == 'D') {
+          slots += 2;
+        } else {
+          slots++;
+          while (descriptor.charAt(i) == '[') {
+            i++;
+          }
+
+          if (descriptor.charAt(i) == 'L') {
+            i = descriptor.indexOf(';', i);
+          }
+        }
+      }
+
+      return slots;
+    }
+  }
+}
@@ -0,0 +1,611 @@
+package com.jsontypedef.jtd;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+import static com.jsontypedef.jtd.ClassFileWriter.*;
+
+/**
+ * Generates a class with the parts of one compiled schema that gain from being
+ * written out as code, for {@code Validator.setCompileThreshold}.
+ *
+ * Those are the nodes whose interpretation looks names up: the properties
+ * form, whose property names become string constants; enums and the mappings
+ * of discriminators, which become switches on the string's hash code; and the
+ * integer types, whose bounds become numeric constants. The class has a
+ * method for each of these nodes, which does what {@code Validator} would do
+ * for it. Every other node is left to {@code Validator}, which the generated
+ * code calls back into, and which calls the generated methods in turn.
+ *
+ * The generated code reports errors through the same {@code ValidationState}
+ * as {@code Validator} does, in the same order, so that it returns exactly
+ * the same errors.
+ *
+ * The class is defined as a hidden class, which is unloaded once the schema
+ * it was generated for is unreachable. Hidden classes were added in Java 15,
+ * and so are looked up reflectively.
+ */
+final class ClassGenerator {
+  // The JIT does not compile methods whose bytecode is longer than this, and a
+  // node that needs that much code is better off interpreted.
+  private static final int MAX_METHOD_LENGTH = 8000;
+
+  private static final String CLASS = "com/jsontypedef/jtd/GeneratedValidator";
+  private static final String INTERFACE = "com/jsontypedef/jtd/Validator$GeneratedValidator";
+  private static final String VALIDATOR = "com/jsontypedef/jtd/Validator";
+  private static final String STATE = "com/jsontypedef/jtd/Validator$ValidationState";
+  private static final String NODE = "com/jsontypedef/jtd/SchemaNode";
+  private static final String JSON = "com/jsontypedef/jtd/Json";
+  private static final String NODES = "[L" + NODE + ";";
+  private static final String METHOD_DESCRIPTOR = "(L" + VALIDATOR + ";L" + STATE + ";L" + JSON + ";)V";
+
+  // The arguments of every node's method. Its temporaries take the locals
+  // after them.
+  private static final int VALIDATOR_LOCAL = 1;
+  private static final int STATE_LOCAL = 2;
+  private static final int INSTANCE_LOCAL = 3;
+
+  private static final Method DEFINE_HIDDEN_CLASS = defineHiddenClass();
+
+  // Applied to every class before it is defined. Tests replace it to make
+  // defining a class fail.
+  static volatile UnaryOperator<byte[]> beforeDefine = UnaryOperator.identity();
+
+  private final ClassFileWriter writer = new ClassFileWriter();
+
+  // The nodes with methods of their own, by the index of their method, and
+  // the parent tag each of them is validated with.
+  private final Map<SchemaNode, Integer> methods = new IdentityHashMap<>();
+  private final Map<SchemaNode, String> parentTags = new IdentityHashMap<>();
+
+  // The nodes the generated code hands back to Validator, which the class
+  // keeps in an array.
+  private final Map<SchemaNode, Integer> delegated = new IdentityHashMap<>();
+
+  private ClassGenerator() {
+  }
+
+  private static Method defineHiddenClass() {
+    try {
+      Class<?> options = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+      return MethodHandles.Lookup.class.getMethod("defineHiddenClass", byte[].class, boolean.class,
+          Array.newInstance(options, 0).getClass());
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Generates and defines a class for {@code schema}, and attaches it to the
+   * nodes {@code Validator} hands to it.
+   *
+   * Nothing is attached if hidden classes are not supported, if the schema is
+   * too large to generate a class for, or if the class cannot be defined. The
+   * schema is then interpreted as if no class had been asked for.
+   */
+  static void generate(CompiledSchema schema) {
+    if (DEFINE_HIDDEN_CLASS == null) {
+      return;
+    }
+
+    ClassGenerator generator = new ClassGenerator();
+    byte[] bytes;
+    try {
+      bytes = generator.generateClass(schema.getNodes());
+    } catch (ClassFileWriter.TooLargeException e) {
+      return;
+    }
+
+    SchemaNode[] nodes = new SchemaNode[generator.delegated.size()];
+    for (Map.Entry<SchemaNode, Integer> entry : generator.delegated.entrySet()) {
+      nodes[entry.getValue()] = entry.getKey();
+    }
+
+    Validator.GeneratedValidator generated;
+    try {
+      Object options = Array.newInstance(DEFINE_HIDDEN_CLASS.getParameterTypes()[2].getComponentType(), 0);
+      MethodHandles.Lookup lookup = (MethodHandles.Lookup) DEFINE_HIDDEN_CLASS.invoke(MethodHandles.lookup(),
+          beforeDefine.apply(bytes), true, options);
+
+      generated = (Validator.GeneratedValidator) lookup.lookupClass().getDeclaredConstructor(SchemaNode[].class)
+          .newInstance((Object) nodes);
+    } catch (ReflectiveOperationException | LinkageError e) {
+      // A class the JVM rejects is a bug in this generator, but one that only
+      // costs the speed of the generated class.
+      return;
+    }
+
+    // Integer types are as quick to interpret as to call into, and so are
+    // only called from other generated methods.
+    for (Map.Entry<SchemaNode, Integer> entry : generator.methods.entrySet()) {
+      if (entry.getKey().form != Form.TYPE) {
+        entry.getKey().generatedIndex = entry.getValue();
+        entry.getKey().generated = generated;
+      }
+    }
+  }
+
+  private byte[] generateClass(List<SchemaNode> nodes) throws ClassFileWriter.TooLargeException {
+    // Every node is validated with the same parent tag each time: a node in
+    // the mapping of a discriminator with the discriminator's tag, and every
+    // other node with none.
+    for (SchemaNode node : nodes) {
+      if (node.form == Form.DISCRIMINATOR) {
+        for (SchemaNode mapped : node.mapping.values()) {
+          parentTags.put(mapped, node.discriminator);
+        }
+      }
+    }
+
+    for (SchemaNode node : nodes) {
+      if (node.form == Form.PROPERTIES || node.form == Form.ENUM || node.form == Form.DISCRIMINATOR
+          || (node.form == Form.TYPE && isInteger(node.type))) {
+        methods.put(node, methods.size());
+      }
+    }
+
+    for (Map.Entry<SchemaNode, Integer> entry : methods.entrySet()) {
+      Code code = new Code(writer, MAX_METHOD_LENGTH, 8, 8);
+      generateNode(code, entry.getKey());
+      writer.addMethod(ACC_PRIVATE, "v" + entry.getValue(), METHOD_DESCRIPTOR, code);
+    }
+
+    writer.addField(ACC_PRIVATE | ACC_FINAL, "nodes", NODES);
+
+    Code constructor = new Code(writer, MAX_METHOD_LENGTH, 2, 2);
+    constructor.op(ALOAD, 0);
+    constructor.invoke(INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+    constructor.op(ALOAD, 0);
+    constructor.op(ALOAD, 1);
+    constructor.field(PUTFIELD, CLASS, "nodes", NODES);
+    constructor.op(RETURN);
+    writer.addMethod(ACC_PUBLIC, "<init>", "(" + NODES + ")V", constructor);
+
+    // validate(validator, state, node, instance) calls the method of node.
+    int[] keys = new int[methods.size()];
+    Label[] labels = new Label[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = i;
+      labels[i] = new Label();
+    }
+
+    Label otherwise = new Label();
+    Code validate = new Code(writer, MAX_METHOD_LENGTH, 4, 5);
+    validate.op(ILOAD, 3);
+    validate.lookupswitch(keys, labels, otherwise);
+    for (int i = 0; i < keys.length; i++) {
+      validate.place(labels[i]);
+      validate.op(ALOAD, 0);
+      validate.op(ALOAD, 1);
+      validate.op(ALOAD, 2);
+      validate.op(ALOAD, 4);
+      validate.invoke(INVOKESPECIAL, CLASS, "v" + i, METHOD_DESCRIPTOR);
+      validate.op(RETURN);
+    }
+    validate.place(otherwise);
+    validate.op(RETURN);
+    writer.addMethod(ACC_PUBLIC, "validate", "(L" + VALIDATOR + ";L" + STATE + ";IL" + JSON + ";)V", validate);
+
+    return writer.toByteArray(ACC_FINAL | ACC_SUPER, CLASS, "java/lang/Object", INTERFACE);
+  }
+
+  private static boolean isInteger(Type type) {
+    switch (type) {
+      case INT8:
+      case UINT8:
+      case INT16:
+      case UINT16:
+      case INT32:
+      case UINT32:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private void generateNode(Code code, SchemaNode node) throws ClassFileWriter.TooLargeException {
+    if (node.nullable) {
+      Label notNull = new Label();
+      code.op(ALOAD, INSTANCE_LOCAL);
+      code.invoke(INVOKEINTERFACE, JSON, "isNull", "()Z");
+      code.jump(IFEQ, notNull);
+      code.op(RETURN);
+      code.place(notNull);
+    }
+
+    switch (node.form) {
+      case TYPE:
+        generateInteger(code, node);
+        break;
+      case ENUM:
+        generateEnum(code, node);
+        break;
+      case PROPERTIES:
+        generateProperties(code, node);
+        break;
+      case DISCRIMINATOR:
+        generateDiscriminator(code, node);
+        break;
+      default:
+        throw new IllegalArgumentException("no method for form: " + node.form);
+    }
+
+    code.op(RETURN);
+  }
+
+  private void generateInteger(Code code, SchemaNode node) throws ClassFileWriter.TooLargeException {
+    Label valid = new Label();
+    Label invalid = new Label();
+    Label notLong = new Label();
+
+    isJson(code, "isNumber");
+    code.jump(IFEQ, invalid);
+    isJson(code, "isLong");
+    code.jump(IFEQ, notLong);
+
+    // intMin <= value && value <= intMax
+    code.op(ALOAD, INSTANCE_LOCAL);
+    code.invoke(INVOKEINTERFACE, JSON, "asLong", "()J");
+    code.op(LSTORE, 4);
+    code.op(LLOAD, 4);
+    code.ldc(node.intMin);
+    code.op(LCMP);
+    code.jump(IFLT, invalid);
+    code.op(LLOAD, 4);
+    code.ldc(node.intMax);
+    code.op(LCMP);
+    code.jump(IFGT, invalid);
+    code.jump(GOTO, valid);
+
+    // intMin <= value && value <= intMax && value == Math.round(value), which
+    // fails for NaN.
+    code.place(notLong);
+    code.op(ALOAD, INSTANCE_LOCAL);
+    code.invoke(INVOKEINTERFACE, JSON, "asNumber", "()D");
+    code.op(DSTORE, 4);
+    code.op(DLOAD, 4);
+    code.ldc((double) node.intMin);
+    code.op(DCMPL);
+    code.jump(IFLT, invalid);
+    code.op(DLOAD, 4);
+    code.ldc((double) node.intMax);
+    code.op(DCMPG);
+    code.jump(IFGT, invalid);
+    code.op(DLOAD, 4);
+    code.op(DLOAD, 4);
+    code.invoke(INVOKESTATIC, "java/lang/Math", "round", "(D)J");
+    code.op(L2D);
+    code.op(DCMPL);
+    code.jump(IFEQ, valid);
+
+    code.place(invalid);
+    pushSchemaToken(code, "type");
+    pushError(code);
+    popSchemaToken(code);
+    code.place(valid);
+  }
+
+  private void generateEnum(Code code, SchemaNode node) throws ClassFileWriter.TooLargeException {
+    Label valid = new Label();
+    Label invalid = new Label();
+
+    pushSchemaToken(code, "enum");
+    isJson(code, "isString");
+    code.jump(IFEQ, invalid);
+    code.op(ALOAD, INSTANCE_LOCAL);
+    code.invoke(INVOKEINTERFACE, JSON, "asString", "()Ljava/lang/String;");
+    code.op(ASTORE, 4);
+
+    Map<String, Label> cases = new LinkedHashMap<>();
+    for (String value : node.enm.strings()) {
+      cases.put(value, valid);
+    }
+    stringSwitch(code, 4, cases, invalid);
+
+    code.place(invalid);
+    pushError(code);
+    code.place(valid);
+    popSchemaToken(code);
+  }
+
+  private void generateProperties(Code code, SchemaNode node) throws ClassFileWriter.TooLargeException {
+    String parentTag = parentTags.get(node);
+    Label object = new Label();
+    Label end = new Label();
+
+    isJson(code, "isObject");
+    code.jump(IFNE, object);
+    pushSchemaToken(code, node.properties == null ? "optionalProperties" : "properties");
+    pushError(code);
+    popSchemaToken(code);
+    code.jump(GOTO, end);
+
+    // Local 4 counts the members found as properties.
+    code.place(object);
+    collectionJson(code);
+    code.op(ICONST_0);
+    code.op(ISTORE, 4);
+
+    if (node.properties != null) {
+      pushSchemaToken(code, "properties");
+      for (int slot = 0; slot < node.requiredCount; slot++) {
+        generateProperty(code, node, slot);
+      }
+      popSchemaToken(code);
+    }
+
+    if (node.optionalProperties != null) {
+      pushSchemaToken(code, "optionalProperties");
+      for (int slot = node.requiredCount; slot < node.propertyNames.length; slot++) {
+        generateProperty(code, node, slot);
+      }
+      popSchemaToken(code);
+    }
+
+    if (!node.additionalProperties) {
+      Label loop = new Label();
+      Label additional = new Label();
+
+      code.op(ALOAD, INSTANCE_LOCAL);
+      code.invoke(INVOKEINTERFACE, JSON, "size", "()I");
+      code.op(ILOAD, 4);
+      if (Validator.tagMembers(node, parentTag) != 0) {
+        code.op(ICONST_1);
+        code.op(IADD);
+      }
+      code.jump(IF_ICMPEQ, end);
+
+      // for (String key : instance.keys())
+      code.op(ALOAD, INSTANCE_LOCAL);
+      code.invoke(INVOKEINTERFACE, JSON, "keys", "()Ljava/lang/Iterable;");
+      code.invoke(INVOKEINTERFACE, "java/lang/Iterable", "iterator", "()Ljava/util/Iterator;");
+      code.op(ASTORE, 5);
+      code.place(loop);
+      code.op(ALOAD, 5);
+      code.invoke(INVOKEINTERFACE, "java/util/Iterator", "hasNext", "()Z");
+      code.jump(IFEQ, end);
+      code.op(ALOAD, 5);
+      code.invoke(INVOKEINTERFACE, "java/util/Iterator", "next", "()Ljava/lang/Object;");
+      code.checkcast("java/lang/String");
+      code.op(ASTORE, 6);
+
+      Map<String, Label> cases = new LinkedHashMap<>();
+      for (String name : node.propertyNames) {
+        cases.put(name, loop);
+      }
+      if (parentTag != null) {
+        cases.put(parentTag, loop);
+      }
+      stringSwitch(code, 6, cases, additional);
+
+      code.place(additional);
+      code.op(ALOAD, STATE_LOCAL);
+      code.op(ALOAD, 6);
+      code.invoke(INVOKEVIRTUAL, STATE, "pushInstanceToken", "(Ljava/lang/String;)V");
+      pushError(code);
+      popInstanceToken(code);
+      code.jump(GOTO, loop);
+    }
+
+    code.place(end);
+  }
+
+  private void generateProperty(Code code, SchemaNode node, int slot) throws ClassFileWriter.TooLargeException {
+    String name = node.propertyNames[slot];
+    Label missing = new Label();
+    Label end = new Label();
+
+    code.op(ALOAD, INSTANCE_LOCAL);
+    code.ldc(name);
+    code.invoke(INVOKEINTERFACE, JSON, "get", "(Ljava/lang/String;)L" + JSON + ";");
+    code.op(ASTORE, 7);
+    pushSchemaToken(code, name);
+    code.op(ALOAD, 7);
+    code.jump(IFNULL, missing);
+
+    code.op(ALOAD, STATE_LOCAL);
+    code.ldc(name);
+    code.invoke(INVOKEVIRTUAL, STATE, "pushInstanceToken", "(Ljava/lang/String;)V");
+    validateNode(code, node.propertySchemas[slot], 7);
+    popInstanceToken(code);
+    code.iinc(4, 1);
+    code.jump(GOTO, end);
+
+    code.place(missing);
+    if (slot < node.requiredCount) {
+      pushError(code);
+    }
+
+    code.place(end);
+    popSchemaToken(code);
+  }
+
+  private void generateDiscriminator(Code code, SchemaNode node) throws ClassFileWriter.TooLargeException {
+    Label noTag = new Label();
+    Label notString = new Label();
+    Label unknown = new Label();
+    Label end = new Label();
+
+    isJson(code, "isObject");
+    code.jump(IFEQ, noTag);
+    collectionJson(code);
+    code.op(ALOAD, INSTANCE_LOCAL);
+    code.ldc(node.discriminator);
+    code.invoke(INVOKEINTERFACE, JSON, "get", "(Ljava/lang/String;)L" + JSON + ";");
+    code.op(ASTORE, 4);
+    code.op(ALOAD, 4);
+    code.jump(IFNULL, noTag);
+    code.op(ALOAD, 4);
+    code.invoke(INVOKEINTERFACE, JSON, "isString", "()Z");
+    code.jump(IFEQ, notString);
+    code.op(ALOAD, 4);
+    code.invoke(INVOKEINTERFACE, JSON, "asString", "()Ljava/lang/String;");
+    code.op(ASTORE, 5);
+
+    Map<String, Label> cases = new LinkedHashMap<>();
+    for (String tag : node.mapping.keySet()) {
+      cases.put(tag, new Label());
+    }
+    stringSwitch(code, 5, cases, unknown);
+
+    for (Map.Entry<String, Label> entry : cases.entrySet()) {
+      code.place(entry.getValue());
+      pushSchemaToken(code, "mapping");
+      pushSchemaToken(code, entry.getKey());
+      validateNode(code, node.mapping.get(entry.getKey()), INSTANCE_LOCAL);
+      popSchemaToken(code);
+      popSchemaToken(code);
+      code.jump(GOTO, end);
+    }
+
+    code.place(unknown);
+    pushSchemaToken(code, "mapping");
+    tagError(code, node);
+    code.jump(GOTO, end);
+
+    code.place(notString);
+    pushSchemaToken(code, "discriminator");
+    tagError(code, node);
+    code.jump(GOTO, end);
+
+    code.place(noTag);
+    pushSchemaToken(code, "discriminator");
+    pushError(code);
+    popSchemaToken(code);
+
+    code.place(end);
+  }
+
+  // Reports an error at the tag of a discriminator, and pops the schema token
+  // pushed before it.
+  private void tagError(Code code, SchemaNode node) throws ClassFileWriter.TooLargeException {
+    code.op(ALOAD, STATE_LOCAL);
+    code.ldc(node.discriminator);
+    code.invoke(INVOKEVIRTUAL, STATE, "pushInstanceToken", "(Ljava/lang/String;)V");
+    pushError(code);
+    popInstanceToken(code);
+    popSchemaToken(code);
+  }
+
+  /**
+   * Validates the value in {@code local} against {@code node}, with the node's
+   * method if it has one, and otherwise with {@code Validator}.
+   */
+  private void validateNode(Code code, SchemaNode node, int local) throws ClassFileWriter.TooLargeException {
+    Integer method = methods.get(node);
+    if (method != null) {
+      code.op(ALOAD, 0);
+      code.op(ALOAD, VALIDATOR_LOCAL);
+      code.op(ALOAD, STATE_LOCAL);
+      code.op(ALOAD, local);
+      code.invoke(INVOKESPECIAL, CLASS, "v" + method, METHOD_DESCRIPTOR);
+      return;
+    }
+
+    Integer index = delegated.get(node);
+    if (index == null) {
+      index = delegated.size();
+      delegated.put(node, index);
+    }
+
+    // validator.validate(state, nodes[index], value, parentTag)
+    code.op(ALOAD, VALIDATOR_LOCAL);
+    code.op(ALOAD, STATE_LOCAL);
+    code.op(ALOAD, 0);
+    code.field(GETFIELD, CLASS, "nodes", NODES);
+    code.sipush(index);
+    code.op(AALOAD);
+    code.op(ALOAD, local);
+    String parentTag = parentTags.get(node);
+    if (parentTag == null) {
+      code.op(ACONST_NULL);
+    } else {
+      code.ldc(parentTag);
+    }
+    code.invoke(INVOKEVIRTUAL, VALIDATOR, "validate",
+        "(L" + STATE + ";L" + NODE + ";L" + JSON + ";Ljava/lang/String;)V");
+  }
+
+  /**
+   * Jumps to the label of the string in {@code cases} equal to the string in
+   * {@code local}, or to {@code otherwise}.
+   *
+   * As for a switch on a string in Java, this switches on the string's hash
+   * code, and then compares it to each of the cases with that hash code.
+   */
+  private void stringSwitch(Code code, int local, Map<String, Label> cases, Label otherwise)
+      throws ClassFileWriter.TooLargeException {
+    Map<Integer, List<String>> buckets = new LinkedHashMap<>();
+    for (String value : cases.keySet()) {
+      buckets.computeIfAbsent(value.hashCode(), hash -> new ArrayList<>()).add(value);
+    }
+
+    int[] hashes = new int[buckets.size()];
+    int i = 0;
+    for (int hash : buckets.keySet()) {
+      hashes[i++] = hash;
+    }
+    Arrays.sort(hashes);
+
+    Label[] labels = new Label[hashes.length];
+    for (i = 0; i < labels.length; i++) {
+      labels[i] = new Label();
+    }
+
+    code.op(ALOAD, local);
+    code.invoke(INVOKEVIRTUAL, "java/lang/String", "hashCode", "()I");
+    code.lookupswitch(hashes, labels, otherwise);
+
+    for (i = 0; i < hashes.length; i++) {
+      code.place(labels[i]);
+      for (String value : buckets.get(hashes[i])) {
+        code.op(ALOAD, local);
+        code.ldc(value);
+        code.invoke(INVOKEVIRTUAL, "java/lang/String", "equals", "(Ljava/lang/Object;)Z");
+        code.jump(IFNE, cases.get(value));
+      }
+      code.jump(GOTO, otherwise);
+    }
+  }
+
+  private static void isJson(Code code, String method) throws ClassFileWriter.TooLargeException {
+    code.op(ALOAD, INSTANCE_LOCAL);
+    code.invoke(INVOKEINTERFACE, JSON, method, "()Z");
+  }
+
+  // instance = CollectionJson.of(instance)
+  private static void collectionJson(Code code) throws ClassFileWriter.TooLargeException {
+    code.op(ALOAD, INSTANCE_LOCAL);
+    code.invoke(INVOKESTATIC, "com/jsontypedef/jtd/CollectionJson", "of", "(L" + JSON + ";)L" + JSON + ";");
+    code.op(ASTORE, INSTANCE_LOCAL);
+  }
+
+  private static void pushSchemaToken(Code code, String token) throws ClassFileWriter.TooLargeException {
+    code.op(ALOAD, STATE_LOCAL);
+    code.ldc(token);
+    code.invoke(INVOKEVIRTUAL, STATE, "pushSchemaToken", "(Ljava/lang/String;)V");
+  }
+
+  private static void popSchemaToken(Code code) throws ClassFileWriter.TooLargeException {
+    code.op(ALOAD, STATE_LOCAL);
+    code.invoke(INVOKEVIRTUAL, STATE, "popSchemaToken", "()V");
+  }
+
+  private static void popInstanceToken(Code code) throws ClassFileWriter.TooLargeException {
+    code.op(ALOAD, STATE_LOCAL);
+    code.invoke(INVOKEVIRTUAL, STATE, "popInstanceToken", "()V");
+  }
+
+  private static void pushError(Code code) throws ClassFileWriter.TooLargeException {
+    code.op(ALOAD, STATE_LOCAL);
+    code.invoke(INVOKEVIRTUAL, STATE, "pushError", "()V");
+  }
+}
@@ -0,0 +1,129 @@
+package com.jsontypedef.jtd;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@code Json} array or object that has been read once, with
+ * {@code asArray} or {@code asObject}, so that reading its elements or members
+ * does not read it again.
+ *
+ * The default accessors of {@code Json}, such as {@code get}, call
+ * {@code asArray} or {@code asObject} on every call. Implementations that
+ * build a new collection in those methods would make looping over an array
+ * with {@code get} take quadratic time. {@code Validator} wraps instances of
+ * such implementations in this class before reading their contents.
+ */
+final class CollectionJson implements Json {
+  // Whether a class overrides both of the get methods, and so can be read in
+  // place.
+  private static final ClassValue<Boolean> READS_IN_PLACE = new ClassValue<Boolean>() {
+    @Override
+    protected Boolean computeValue(Class<?> type) {
+      try {
+        return type.getMethod("get", int.class).getDeclaringClass() != Json.class
+            && type.getMethod("get", String.class).getDeclaringClass() != Json.class;
+      } catch (NoSuchMethodException e) {
+        return false;
+      }
+    }
+  };
+
+  private final Json json;
+  private final List<Json> array;
+  private final Map<String, Json> object;
+
+  private CollectionJson(Json json) {
+    this.json = json;
+    this.array = json.isArray() ? json.asArray() : null;
+    this.object = json.isObject() ? json.asObject() : null;
+  }
+
+  /**
+   * Returns {@code json}, which must be an array or an object, wrapped if its
+   * class does not override {@code get}.
+   */
+  static Json of(Json json) {
+    return READS_IN_PLACE.get(json.getClass()) ? json : new CollectionJson(json);
+  }
+
+  @Override
+  public boolean isNull() {
+    return false;
+  }
+
+  @Override
+  public boolean isBoolean() {
+    return false;
+  }
+
+  @Override
+  public boolean isNumber() {
+    return false;
+  }
+
+  @Override
+  public boolean isString() {
+    return false;
+  }
+
+  @Override
+  public boolean isArray() {
+    return array != null;
+  }
+
+  @Override
+  public boolean isObject() {
+    return object != null;
+  }
+
+  @Override
+  public boolean asBoolean() {
+    return json.asBoolean();
+  }
+
+  @Override
+  public double asNumber() {
+    return json.asNumber();
+  }
+
+  @Override
+  public String asString() {
+    return json.asString();
+  }
+
+  @Override
+  public List<Json> asArray() {
+    return array;
+  }
+
+  @Override
+  public Map<String, Json> asObject() {
+    return object;
+  }
+
+  @Override
+  public int size() {
+    return array != null ? array.size() : object.size();
+  }
+
+  @Override
+  public Json get(int index) {
+    return array.get(index);
+  }
+
+  @Override
+  public Json get(String key) {
+    return object.get(key);
+  }
+
+  @Override
+  public Iterable<String> keys() {
+    return object.keySet();
+  }
+
+  @Override
+  public Iterable<Map.Entry<String, Json>> entries() {
+    return object.entrySet();
+  }
+}
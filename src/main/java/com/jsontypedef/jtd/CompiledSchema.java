@@ -0,0 +1,310 @@
+package com.jsontypedef.jtd;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, pre-resolved form of a {@code Schema}, for validating many
+ * instances against the same schema.
+ *
+ * Compiling a schema computes, once, the facts that {@code Validator} would
+ * otherwise re-derive from the {@code Schema} on every call: the form of each
+ * subschema, and which definition each {@code ref} points to. Validating
+ * against a {@code CompiledSchema} returns exactly the same errors, in the same
+ * order, as validating against the {@code Schema} it was compiled from.
+ *
+ * A {@code CompiledSchema} does not observe later changes to the
+ * {@code Schema} it was compiled from. It is safe to share between threads.
+ */
+public final class CompiledSchema {
+  private final SchemaNode root;
+  private final Map<String, SchemaNode> definitions;
+
+  // Computed the first time it is asked for.
+  private volatile String fingerprint;
+
+  // For Validator's compile threshold: the number of validations counted so
+  // far, and whether a class has been generated for this schema. Threads
+  // counting at once may lose some of their counts, which only puts off
+  // generating it.
+  private int validations;
+  private volatile boolean generated;
+
+  private CompiledSchema(SchemaNode root, Map<String, SchemaNode> definitions) {
+    this.root = root;
+    this.definitions = definitions;
+  }
+
+  /**
+   * Compiles a root schema.
+   *
+   * The schema is verified before it is compiled, so a {@code CompiledSchema}
+   * is always a valid schema.
+   *
+   * @param schema the root schema to compile
+   * @return the compiled schema
+   * @throws InvalidSchemaException if the schema is not valid
+   */
+  public static CompiledSchema compile(Schema schema) throws InvalidSchemaException {
+    schema.verify();
+    return build(schema);
+  }
+
+  /**
+   * Compiles a root schema without verifying it first.
+   *
+   * Refs to non-existent definitions are left unresolved, which mirrors how
+   * {@code Validator} has always treated unverified schemas.
+   */
+  static CompiledSchema build(Schema schema) {
+    List<SchemaNode> refs = new ArrayList<>();
+
+    Map<String, SchemaNode> definitions = new HashMap<>();
+    if (schema.getDefinitions() != null) {
+      for (Map.Entry<String, Schema> entry : schema.getDefinitions().entrySet()) {
+        definitions.put(entry.getKey(), build(entry.getValue(), refs));
+      }
+    }
+
+    SchemaNode root = build(schema, refs);
+
+    for (SchemaNode ref : refs) {
+      ref.refTarget = definitions.get(ref.ref);
+    }
+
+    return new CompiledSchema(root, Collections.unmodifiableMap(definitions));
+  }
+
+  private static SchemaNode build(Schema schema, List<SchemaNode> refs) {
+    Form form = schema.getForm();
+
+    SchemaNode node = new SchemaNode(form, schema.isNullable(), schema.getRef(), schema.getType(),
+        form == Form.ENUM ? Collections.unmodifiableSet(new HashSet<>(schema.getEnum())) : null,
+        form == Form.ELEMENTS ? build(schema.getElements(), refs) : null,
+        form == Form.PROPERTIES ? build(schema.getProperties(), refs) : null,
+        form == Form.PROPERTIES ? build(schema.getOptionalProperties(), refs) : null,
+        schema.getAdditionalProperties() != null && schema.getAdditionalProperties(),
+        form == Form.VALUES ? build(schema.getValues(), refs) : null,
+        form == Form.DISCRIMINATOR ? schema.getDiscriminator() : null,
+        form == Form.DISCRIMINATOR ? build(schema.getMapping(), refs) : null);
+
+    if (form == Form.REF) {
+      refs.add(node);
+    }
+
+    return node;
+  }
+
+  private static Map<String, SchemaNode> build(Map<String, Schema> schemas, List<SchemaNode> refs) {
+    if (schemas == null) {
+      return null;
+    }
+
+    // Keep the iteration order of the original map, so that errors come out in
+    // the same order as they would for the uncompiled schema.
+    Map<String, SchemaNode> nodes = new LinkedHashMap<>();
+    for (Map.Entry<String, Schema> entry : schemas.entrySet()) {
+      nodes.put(entry.getKey(), build(entry.getValue(), refs));
+    }
+
+    return Collections.unmodifiableMap(nodes);
+  }
+
+  /**
+   * Returns a fingerprint of this schema, which identifies it in Flight
+   * Recorder events.
+   *
+   * The fingerprint is a hash of everything about the schema that affects
+   * validation, so it is the same every time the same schema is compiled, in
+   * any JVM. Metadata, the order of definitions, and the order of enum values
+   * do not change it.
+   *
+   * @return the fingerprint, as 16 hexadecimal digits
+   */
+  public String getFingerprint() {
+    String fingerprint = this.fingerprint;
+    if (fingerprint == null) {
+      StringBuilder out = new StringBuilder("{\"definitions\":{");
+      List<String> names = new ArrayList<>(definitions.keySet());
+      Collections.sort(names);
+      for (int i = 0; i < names.size(); i++) {
+        out.append(i == 0 ? "" : ",");
+        appendString(out, names.get(i));
+        out.append(':');
+        appendNode(out, definitions.get(names.get(i)));
+      }
+      out.append("},\"root\":");
+      appendNode(out, root);
+      out.append('}');
+
+      MessageDigest digest;
+      try {
+        digest = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+        // Every Java platform is required to support SHA-256.
+        throw new IllegalStateException(e);
+      }
+
+      byte[] hash = digest.digest(out.toString().getBytes(StandardCharsets.UTF_8));
+      StringBuilder hex = new StringBuilder();
+      for (int i = 0; i < 8; i++) {
+        hex.append(Character.forDigit((hash[i] >> 4) & 0xf, 16)).append(Character.forDigit(hash[i] & 0xf, 16));
+      }
+
+      fingerprint = hex.toString();
+      this.fingerprint = fingerprint;
+    }
+
+    return fingerprint;
+  }
+
+  // Writes a node in a canonical form, from which the fingerprint is hashed.
+  private static void appendNode(StringBuilder out, SchemaNode node) {
+    out.append("{\"form\":\"").append(node.form).append('"');
+
+    if (node.nullable) {
+      out.append(",\"nullable\":true");
+    }
+
+    if (node.ref != null) {
+      out.append(",\"ref\":");
+      appendString(out, node.ref);
+    }
+
+    if (node.type != null) {
+      out.append(",\"type\":\"").append(node.type).append('"');
+    }
+
+    if (node.enm != null) {
+      String[] values = node.enm.strings();
+      Arrays.sort(values);
+      out.append(",\"enum\":[");
+      for (int i = 0; i < values.length; i++) {
+        out.append(i == 0 ? "" : ",");
+        appendString(out, values[i]);
+      }
+      out.append(']');
+    }
+
+    if (node.elements != null) {
+      out.append(",\"elements\":");
+      appendNode(out, node.elements);
+    }
+
+    appendNodes(out, "properties", node.properties);
+    appendNodes(out, "optionalProperties", node.optionalProperties);
+
+    if (node.additionalProperties) {
+      out.append(",\"additionalProperties\":true");
+    }
+
+    if (node.values != null) {
+      out.append(",\"values\":");
+      appendNode(out, node.values);
+    }
+
+    if (node.discriminator != null) {
+      out.append(",\"discriminator\":");
+      appendString(out, node.discriminator);
+    }
+
+    appendNodes(out, "mapping", node.mapping);
+    out.append('}');
+  }
+
+  private static void appendNodes(StringBuilder out, String keyword, Map<String, SchemaNode> nodes) {
+    if (nodes == null) {
+      return;
+    }
+
+    out.append(",\"").append(keyword).append("\":{");
+    boolean first = true;
+    for (Map.Entry<String, SchemaNode> entry : nodes.entrySet()) {
+      out.append(first ? "" : ",");
+      appendString(out, entry.getKey());
+      out.append(':');
+      appendNode(out, entry.getValue());
+      first = false;
+    }
+    out.append('}');
+  }
+
+  private static void appendString(StringBuilder out, String s) {
+    out.append('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        out.append('\\');
+      }
+      out.append(c);
+    }
+    out.append('"');
+  }
+
+  /**
+   * Counts a validation against this schema, and generates a class for it once
+   * {@code threshold} validations have been counted.
+   *
+   * A class is only ever generated once. If generating it fails, the schema
+   * goes on being interpreted.
+   */
+  void countValidation(int threshold) {
+    if (generated || ++validations < threshold) {
+      return;
+    }
+
+    synchronized (this) {
+      if (!generated) {
+        generated = true;
+        ClassGenerator.generate(this);
+      }
+    }
+  }
+
+  SchemaNode getRoot() {
+    return root;
+  }
+
+  Map<String, SchemaNode> getDefinitions() {
+    return definitions;
+  }
+
+  /**
+   * Returns every node of the schema, each of them once.
+   */
+  List<SchemaNode> getNodes() {
+    List<SchemaNode> nodes = new ArrayList<>();
+    for (SchemaNode definition : definitions.values()) {
+      definition.collect(nodes);
+    }
+
+    root.collect(nodes);
+    return nodes;
+  }
+
+  /**
+   * Estimates the memory this schema retains, in bytes, on a 64-bit JVM with
+   * compressed references.
+   */
+  long estimatedSize() {
+    long size = MemoryEstimate.object(8) + MemoryEstimate.map(definitions);
+    for (String name : definitions.keySet()) {
+      size += MemoryEstimate.string(name);
+    }
+
+    for (SchemaNode node : getNodes()) {
+      size += node.estimatedSize();
+    }
+
+    return size;
+  }
+}
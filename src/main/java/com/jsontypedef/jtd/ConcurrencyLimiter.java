@@ -0,0 +1,88 @@
+package com.jsontypedef.jtd;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Limits how many tasks may run at once, queueing the rest.
+ *
+ * Unlike a {@code Semaphore}, this never blocks a thread: a task that is over
+ * the limit is not handed to its executor at all until an earlier task
+ * finishes. This matters for executors with a fixed number of threads, which
+ * a blocked task would otherwise tie up.
+ */
+final class ConcurrencyLimiter {
+  private final int maxRunning;
+  private final Queue<BooleanSupplier> waiting = new ArrayDeque<>();
+  private int running;
+
+  ConcurrencyLimiter(int maxRunning) {
+    this.maxRunning = maxRunning;
+  }
+
+  /**
+   * Runs {@code task} on {@code executor} once fewer than the maximum number
+   * of tasks are running. If {@code executor} rejects the task,
+   * {@code future} is completed with the rejection.
+   */
+  void execute(Executor executor, Runnable task, CompletableFuture<?> future) {
+    BooleanSupplier start = () -> start(executor, task, future);
+
+    synchronized (this) {
+      if (running == maxRunning) {
+        waiting.add(start);
+        return;
+      }
+
+      running++;
+    }
+
+    if (!start.getAsBoolean()) {
+      finish();
+    }
+  }
+
+  /**
+   * Hands {@code task} to {@code executor}.
+   *
+   * @return whether {@code executor} accepted the task
+   */
+  private boolean start(Executor executor, Runnable task, CompletableFuture<?> future) {
+    try {
+      executor.execute(() -> {
+        try {
+          task.run();
+        } finally {
+          finish();
+        }
+      });
+      return true;
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+      return false;
+    }
+  }
+
+  private void finish() {
+    // The finished task's slot passes straight to the next one. Tasks the
+    // executor rejects give it up at once, so keep passing it along in a loop
+    // rather than recursing once per rejected task.
+    while (true) {
+      BooleanSupplier next;
+      synchronized (this) {
+        next = waiting.poll();
+        if (next == null) {
+          running--;
+          return;
+        }
+      }
+
+      if (next.getAsBoolean()) {
+        return;
+      }
+    }
+  }
+}
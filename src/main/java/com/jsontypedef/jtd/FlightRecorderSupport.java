@@ -0,0 +1,34 @@
+package com.jsontypedef.jtd;
+
+/**
+ * Checks whether the JDK Flight Recorder events of {@code Validator} are
+ * enabled.
+ *
+ * Flight Recorder is in the {@code jdk.jfr} module, which not every Java
+ * runtime includes. The event classes are only loaded once this class has
+ * found that module, so that validation works without it, and just never
+ * records any events.
+ */
+final class FlightRecorderSupport {
+  private static final boolean AVAILABLE = isAvailable();
+
+  private FlightRecorderSupport() {
+  }
+
+  private static boolean isAvailable() {
+    try {
+      Class.forName("jdk.jfr.Event");
+      return true;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  static boolean validationEventEnabled() {
+    return AVAILABLE && ValidationEvent.enabled();
+  }
+
+  static boolean refValidationEventEnabled() {
+    return AVAILABLE && RefValidationEvent.enabled();
+  }
+}
@@ -1,7 +1,9 @@
 package com.jsontypedef.jtd;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -62,6 +64,24 @@ public class GsonAdapter implements Json {
     return jsonElement.getAsJsonPrimitive().getAsDouble();
   }
 
+  @Override
+  public boolean isLong() {
+    Number number = jsonElement.getAsJsonPrimitive().getAsNumber();
+    if (number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte) {
+      return true;
+    }
+
+    // Numbers parsed from JSON text are kept as that text, which toString
+    // returns as-is, so check it directly rather than converting it to a
+    // double first.
+    return isLongLiteral(number.toString());
+  }
+
+  @Override
+  public long asLong() {
+    return jsonElement.getAsJsonPrimitive().getAsLong();
+  }
+
   @Override
   public String asString() {
     return jsonElement.getAsJsonPrimitive().getAsString();
@@ -86,4 +106,68 @@ public class GsonAdapter implements Json {
 
     return obj;
   }
+
+  @Override
+  public int size() {
+    return jsonElement.isJsonArray() ? jsonElement.getAsJsonArray().size() : jsonElement.getAsJsonObject().size();
+  }
+
+  @Override
+  public Json get(int index) {
+    return new GsonAdapter(jsonElement.getAsJsonArray().get(index));
+  }
+
+  @Override
+  public Json get(String key) {
+    JsonElement value = jsonElement.getAsJsonObject().get(key);
+    return value == null ? null : new GsonAdapter(value);
+  }
+
+  @Override
+  public Iterable<String> keys() {
+    return jsonElement.getAsJsonObject().keySet();
+  }
+
+  @Override
+  public Iterable<Map.Entry<String, Json>> entries() {
+    return () -> new Iterator<Map.Entry<String, Json>>() {
+      private final Iterator<Map.Entry<String, JsonElement>> entries = jsonElement.getAsJsonObject().entrySet()
+          .iterator();
+
+      @Override
+      public boolean hasNext() {
+        return entries.hasNext();
+      }
+
+      @Override
+      public Map.Entry<String, Json> next() {
+        Map.Entry<String, JsonElement> entry = entries.next();
+        return new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), new GsonAdapter(entry.getValue()));
+      }
+    };
+  }
+
+  /**
+   * Returns whether {@code s} is a JSON integer literal, without a fraction or
+   * exponent, that certainly fits in a long.
+   */
+  static boolean isLongLiteral(String s) {
+    int start = !s.isEmpty() && s.charAt(0) == '-' ? 1 : 0;
+
+    // Any 18 decimal digits fit in a long. Longer literals are left to the
+    // double path, which rejects them for every JSON Typedef integer type.
+    int length = s.length() - start;
+    if (length < 1 || length > 18) {
+      return false;
+    }
+
+    for (int i = start; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c < '0' || c > '9') {
+        return false;
+      }
+    }
+
+    return true;
+  }
 }
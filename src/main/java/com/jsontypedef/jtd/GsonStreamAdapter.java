@@ -0,0 +1,127 @@
+package com.jsontypedef.jtd;
+
+import java.io.IOException;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+
+/**
+ * An implementation of {@code JsonStream} for Gson's streaming
+ * {@code JsonReader}.
+ */
+public class GsonStreamAdapter implements JsonStream {
+  private JsonReader reader;
+  private Token token;
+  private String text;
+
+  /**
+   * Constructs a {@code GsonStreamAdapter} that reads from a Gson
+   * {@code JsonReader}.
+   *
+   * The reader is not closed by this class.
+   *
+   * @param reader the Gson reader to read from
+   */
+  public GsonStreamAdapter(JsonReader reader) {
+    this.reader = reader;
+  }
+
+  @Override
+  public Token next() throws IOException {
+    text = null;
+
+    switch (reader.peek()) {
+      case BEGIN_OBJECT:
+        reader.beginObject();
+        token = Token.START_OBJECT;
+        break;
+      case END_OBJECT:
+        reader.endObject();
+        token = Token.END_OBJECT;
+        break;
+      case BEGIN_ARRAY:
+        reader.beginArray();
+        token = Token.START_ARRAY;
+        break;
+      case END_ARRAY:
+        reader.endArray();
+        token = Token.END_ARRAY;
+        break;
+      case NAME:
+        text = reader.nextName();
+        token = Token.NAME;
+        break;
+      case STRING:
+        text = reader.nextString();
+        token = Token.STRING;
+        break;
+      case NUMBER:
+        // For numbers, nextString returns the number as it appears in the
+        // input, which avoids committing to any particular numeric type here.
+        text = reader.nextString();
+        token = Token.NUMBER;
+        break;
+      case BOOLEAN:
+        reader.nextBoolean();
+        token = Token.BOOLEAN;
+        break;
+      case NULL:
+        reader.nextNull();
+        token = Token.NULL;
+        break;
+      case END_DOCUMENT:
+        token = null;
+        break;
+      default:
+        throw new MalformedJsonException("unsupported token: " + reader.peek());
+    }
+
+    return token;
+  }
+
+  @Override
+  public String getName() {
+    return text;
+  }
+
+  @Override
+  public String getString() {
+    return text;
+  }
+
+  @Override
+  public double getNumber() {
+    return Double.parseDouble(text);
+  }
+
+  @Override
+  public boolean isLong() {
+    return token == Token.NUMBER && GsonAdapter.isLongLiteral(text);
+  }
+
+  @Override
+  public long getLong() {
+    return Long.parseLong(text);
+  }
+
+  @Override
+  public void skipChildren() throws IOException {
+    if (token == Token.START_OBJECT) {
+      // Within an object, skipValue skips member names and member values
+      // alike.
+      while (reader.hasNext()) {
+        reader.skipValue();
+      }
+
+      reader.endObject();
+      token = Token.END_OBJECT;
+    } else if (token == Token.START_ARRAY) {
+      while (reader.hasNext()) {
+        reader.skipValue();
+      }
+
+      reader.endArray();
+      token = Token.END_ARRAY;
+    }
+  }
+}
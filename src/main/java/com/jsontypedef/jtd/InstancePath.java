@@ -0,0 +1,33 @@
+package com.jsontypedef.jtd;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * The instance path of a {@code ValidationError}, as a read-only list view
+ * over the compact form {@code Validator} tracks instance paths in.
+ *
+ * Each element is either a member name, or (when the name is null) an array
+ * index. Array indices are only turned into strings when they are read, so
+ * that validation never has to format the index of an element that has no
+ * errors.
+ */
+final class InstancePath extends AbstractList<String> implements RandomAccess {
+  private final String[] keys;
+  private final int[] indexes;
+
+  InstancePath(String[] keys, int[] indexes) {
+    this.keys = keys;
+    this.indexes = indexes;
+  }
+
+  @Override
+  public String get(int index) {
+    return keys[index] != null ? keys[index] : Integer.toString(indexes[index]);
+  }
+
+  @Override
+  public int size() {
+    return keys.length;
+  }
+}
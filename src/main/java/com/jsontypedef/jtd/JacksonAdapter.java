@@ -1,7 +1,9 @@
 package com.jsontypedef.jtd;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -62,6 +64,16 @@ public class JacksonAdapter implements Json {
     return jsonNode.asDouble();
   }
 
+  @Override
+  public boolean isLong() {
+    return jsonNode.isIntegralNumber() && jsonNode.canConvertToLong();
+  }
+
+  @Override
+  public long asLong() {
+    return jsonNode.longValue();
+  }
+
   @Override
   public String asString() {
     return jsonNode.asText();
@@ -84,4 +96,43 @@ public class JacksonAdapter implements Json {
 
     return obj;
   }
+
+  @Override
+  public int size() {
+    return jsonNode.size();
+  }
+
+  @Override
+  public Json get(int index) {
+    return new JacksonAdapter(jsonNode.get(index));
+  }
+
+  @Override
+  public Json get(String key) {
+    JsonNode value = jsonNode.get(key);
+    return value == null ? null : new JacksonAdapter(value);
+  }
+
+  @Override
+  public Iterable<String> keys() {
+    return jsonNode::fieldNames;
+  }
+
+  @Override
+  public Iterable<Map.Entry<String, Json>> entries() {
+    return () -> new Iterator<Map.Entry<String, Json>>() {
+      private final Iterator<Map.Entry<String, JsonNode>> fields = jsonNode.fields();
+
+      @Override
+      public boolean hasNext() {
+        return fields.hasNext();
+      }
+
+      @Override
+      public Map.Entry<String, Json> next() {
+        Map.Entry<String, JsonNode> field = fields.next();
+        return new AbstractMap.SimpleImmutableEntry<>(field.getKey(), new JacksonAdapter(field.getValue()));
+      }
+    };
+  }
 }
@@ -0,0 +1,117 @@
+package com.jsontypedef.jtd;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * An implementation of {@code JsonStream} for Jackson's streaming
+ * {@code JsonParser}.
+ */
+public class JacksonStreamAdapter implements JsonStream {
+  private JsonParser parser;
+
+  /**
+   * Constructs a {@code JacksonStreamAdapter} that reads from a Jackson
+   * {@code JsonParser}.
+   *
+   * The parser is not closed by this class.
+   *
+   * @param parser the Jackson parser to read from
+   */
+  public JacksonStreamAdapter(JsonParser parser) {
+    this.parser = parser;
+  }
+
+  @Override
+  public Token next() throws IOException {
+    JsonToken token = parser.nextToken();
+    if (token == null) {
+      return null;
+    }
+
+    switch (token) {
+      case START_OBJECT:
+        return Token.START_OBJECT;
+      case END_OBJECT:
+        return Token.END_OBJECT;
+      case START_ARRAY:
+        return Token.START_ARRAY;
+      case END_ARRAY:
+        return Token.END_ARRAY;
+      case FIELD_NAME:
+        return Token.NAME;
+      case VALUE_STRING:
+        return Token.STRING;
+      case VALUE_NUMBER_INT:
+      case VALUE_NUMBER_FLOAT:
+        return Token.NUMBER;
+      case VALUE_TRUE:
+      case VALUE_FALSE:
+        return Token.BOOLEAN;
+      case VALUE_NULL:
+        return Token.NULL;
+      default:
+        throw new JsonParseException(parser, "unsupported token: " + token);
+    }
+  }
+
+  @Override
+  public String getName() throws IOException {
+    return parser.getCurrentName();
+  }
+
+  @Override
+  public String getString() throws IOException {
+    return parser.getText();
+  }
+
+  @Override
+  public boolean hasTextCharacters() {
+    // Jackson always decodes string values into its text buffer. Member names
+    // are canonicalized instead, so getName is already free of copies.
+    return parser.hasToken(JsonToken.VALUE_STRING);
+  }
+
+  @Override
+  public char[] getTextCharacters() throws IOException {
+    return parser.getTextCharacters();
+  }
+
+  @Override
+  public int getTextOffset() throws IOException {
+    return parser.getTextOffset();
+  }
+
+  @Override
+  public int getTextLength() throws IOException {
+    return parser.getTextLength();
+  }
+
+  @Override
+  public double getNumber() throws IOException {
+    return parser.getDoubleValue();
+  }
+
+  @Override
+  public boolean isLong() throws IOException {
+    if (!parser.hasToken(JsonToken.VALUE_NUMBER_INT)) {
+      return false;
+    }
+
+    JsonParser.NumberType type = parser.getNumberType();
+    return type == JsonParser.NumberType.INT || type == JsonParser.NumberType.LONG;
+  }
+
+  @Override
+  public long getLong() throws IOException {
+    return parser.getLongValue();
+  }
+
+  @Override
+  public void skipChildren() throws IOException {
+    parser.skipChildren();
+  }
+}
@@ -23,6 +23,16 @@ import java.util.Map;
  * The {@code GsonAdapter} and {@code JacksonAdapter} classes are
  * implementations of {@code Json} for the widely-used Gson and Jackson
  * libraries.
+ *
+ * Besides {@code asArray} and {@code asObject}, which return Java collections,
+ * {@code Json} has accessors such as {@code size}, {@code get}, {@code keys},
+ * and {@code entries} that read arrays and objects in place. {@code Validator}
+ * only uses the latter. They have default implementations in terms of
+ * {@code asArray} and {@code asObject}, but implementations whose underlying
+ * representation can answer them without copying should override them.
+ * {@code Validator} calls {@code asArray} or {@code asObject} once per array
+ * or object of implementations that do not override {@code get}, rather than
+ * once per element or member.
  */
 public interface Json {
   /**
@@ -93,6 +103,33 @@ public interface Json {
    */
   public double asNumber();
 
+  /**
+   * Gets whether the JSON value is a number that the implementation already
+   * holds as an integer that fits in a {@code long}.
+   *
+   * This is a fast path for integer types. Returning false does not mean the
+   * value is not an integer; for instance, implementations may return false
+   * for "1.0" or "1e2". Callers should fall back to {@code asNumber} in that
+   * case. The default implementation always returns false.
+   *
+   * @return whether the value can be read exactly with {@code asLong}
+   */
+  public default boolean isLong() {
+    return false;
+  }
+
+  /**
+   * Gets the JSON value as a long.
+   *
+   * The behavior of this method is undefined if {@code isLong} does not return
+   * true.
+   *
+   * @return the Java long value of this JSON value
+   */
+  public default long asLong() {
+    return (long) asNumber();
+  }
+
   /**
    * Gets the JSON value as a string.
    *
@@ -122,4 +159,67 @@ public interface Json {
    * @return the Java Map value of this JSON value
    */
   public Map<String, Json> asObject();
+
+  /**
+   * Gets the number of elements in the JSON array, or the number of members in
+   * the JSON object.
+   *
+   * The behavior of this method is undefined if neither {@code isArray} nor
+   * {@code isObject} returns true.
+   *
+   * @return the size of this JSON value
+   */
+  public default int size() {
+    return isArray() ? asArray().size() : asObject().size();
+  }
+
+  /**
+   * Gets an element of the JSON array.
+   *
+   * The behavior of this method is undefined if {@code isArray} does not return
+   * true, or if {@code index} is not less than {@code size}.
+   *
+   * @param index the index of the element, starting from zero
+   * @return the element at {@code index}
+   */
+  public default Json get(int index) {
+    return asArray().get(index);
+  }
+
+  /**
+   * Gets the value of a member of the JSON object.
+   *
+   * The behavior of this method is undefined if {@code isObject} does not
+   * return true.
+   *
+   * @param key the name of the member
+   * @return the value of the member, or null if there is no such member
+   */
+  public default Json get(String key) {
+    return asObject().get(key);
+  }
+
+  /**
+   * Gets the names of the members of the JSON object.
+   *
+   * The behavior of this method is undefined if {@code isObject} does not
+   * return true.
+   *
+   * @return the names of the members of this JSON value
+   */
+  public default Iterable<String> keys() {
+    return asObject().keySet();
+  }
+
+  /**
+   * Gets the members of the JSON object.
+   *
+   * The behavior of this method is undefined if {@code isObject} does not
+   * return true.
+   *
+   * @return the names and values of the members of this JSON value
+   */
+  public default Iterable<Map.Entry<String, Json>> entries() {
+    return asObject().entrySet();
+  }
 }
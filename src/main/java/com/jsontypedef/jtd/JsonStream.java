@@ -0,0 +1,205 @@
+package com.jsontypedef.jtd;
+
+import java.io.IOException;
+
+/**
+ * An implementation-independent, forward-only stream of JSON tokens.
+ *
+ * Where {@code Json} represents a JSON document that has already been parsed
+ * into memory, {@code JsonStream} represents a JSON document as it is being
+ * parsed. Validating a {@code JsonStream} reads each token exactly once, and
+ * never holds more of the document in memory than its nesting requires.
+ *
+ * A {@code JsonStream} is positioned on a "current" token. Calling
+ * {@code next} advances the stream to the following token. The accessors
+ * {@code getName}, {@code getString}, and {@code getNumber} describe the
+ * current token.
+ *
+ * The {@code GsonStreamAdapter} and {@code JacksonStreamAdapter} classes are
+ * implementations of {@code JsonStream} for the streaming APIs of Gson and
+ * Jackson.
+ */
+public interface JsonStream {
+  /**
+   * The kinds of tokens a {@code JsonStream} may produce.
+   */
+  public enum Token {
+    /**
+     * The start of a JSON object.
+     */
+    START_OBJECT,
+
+    /**
+     * The end of a JSON object.
+     */
+    END_OBJECT,
+
+    /**
+     * The start of a JSON array.
+     */
+    START_ARRAY,
+
+    /**
+     * The end of a JSON array.
+     */
+    END_ARRAY,
+
+    /**
+     * The name of a member of a JSON object. The value of the member is the
+     * next token.
+     */
+    NAME,
+
+    /**
+     * A JSON string.
+     */
+    STRING,
+
+    /**
+     * A JSON number.
+     */
+    NUMBER,
+
+    /**
+     * JSON {@code true} or {@code false}.
+     */
+    BOOLEAN,
+
+    /**
+     * JSON {@code null}.
+     */
+    NULL,
+  }
+
+  /**
+   * Advances the stream to its next token.
+   *
+   * @return the new current token, or null if the input has no more tokens
+   * @throws IOException if the underlying input cannot be read or parsed
+   */
+  public Token next() throws IOException;
+
+  /**
+   * Gets the member name of the current token.
+   *
+   * The behavior of this method is undefined if the current token is not
+   * {@code NAME}.
+   *
+   * @return the member name
+   * @throws IOException if the underlying input cannot be read or parsed
+   */
+  public String getName() throws IOException;
+
+  /**
+   * Gets the value of the current token as a string.
+   *
+   * The behavior of this method is undefined if the current token is not
+   * {@code STRING}.
+   *
+   * @return the Java string value of the current token
+   * @throws IOException if the underlying input cannot be read or parsed
+   */
+  public String getString() throws IOException;
+
+  /**
+   * Gets whether the value of the current token can be read in place, with
+   * {@code getTextCharacters}, {@code getTextOffset}, and
+   * {@code getTextLength}.
+   *
+   * Parsers that decode strings into a reusable buffer can return true here,
+   * which lets callers that only need to inspect a string avoid allocating a
+   * {@code String} for it. The default implementation always returns false.
+   *
+   * @return whether the current token's text can be read in place
+   * @throws IOException if the underlying input cannot be read or parsed
+   */
+  public default boolean hasTextCharacters() throws IOException {
+    return false;
+  }
+
+  /**
+   * Gets the buffer holding the value of the current token.
+   *
+   * The behavior of this method is undefined if {@code hasTextCharacters}
+   * does not return true. The buffer may be reused once the stream advances,
+   * and must not be modified.
+   *
+   * @return a buffer containing the characters of the current token
+   * @throws IOException if the underlying input cannot be read or parsed
+   */
+  public default char[] getTextCharacters() throws IOException {
+    return getString().toCharArray();
+  }
+
+  /**
+   * Gets the position of the current token's value in
+   * {@code getTextCharacters}.
+   *
+   * @return the index of the first character of the current token
+   * @throws IOException if the underlying input cannot be read or parsed
+   */
+  public default int getTextOffset() throws IOException {
+    return 0;
+  }
+
+  /**
+   * Gets the length of the current token's value in
+   * {@code getTextCharacters}.
+   *
+   * @return the number of characters in the current token
+   * @throws IOException if the underlying input cannot be read or parsed
+   */
+  public default int getTextLength() throws IOException {
+    return getString().length();
+  }
+
+  /**
+   * Gets the value of the current token as a double.
+   *
+   * The behavior of this method is undefined if the current token is not
+   * {@code NUMBER}.
+   *
+   * @return the Java double value of the current token
+   * @throws IOException if the underlying input cannot be read or parsed
+   */
+  public double getNumber() throws IOException;
+
+  /**
+   * Gets whether the current token is a number that the underlying parser
+   * already holds as an integer that fits in a {@code long}.
+   *
+   * As with {@code Json.isLong}, returning false does not mean the number is
+   * not an integer, and callers should fall back to {@code getNumber}. The
+   * default implementation always returns false.
+   *
+   * @return whether the current token can be read exactly with {@code getLong}
+   * @throws IOException if the underlying input cannot be read or parsed
+   */
+  public default boolean isLong() throws IOException {
+    return false;
+  }
+
+  /**
+   * Gets the value of the current token as a long.
+   *
+   * The behavior of this method is undefined if {@code isLong} does not return
+   * true.
+   *
+   * @return the Java long value of the current token
+   * @throws IOException if the underlying input cannot be read or parsed
+   */
+  public default long getLong() throws IOException {
+    return (long) getNumber();
+  }
+
+  /**
+   * Skips over the contents of the current object or array.
+   *
+   * If the current token is {@code START_OBJECT} or {@code START_ARRAY}, the
+   * stream is advanced to the matching {@code END_OBJECT} or
+   * {@code END_ARRAY}. Otherwise, this method does nothing.
+   *
+   * @throws IOException if the underlying input cannot be read or parsed
+   */
+  public void skipChildren() throws IOException;
+}
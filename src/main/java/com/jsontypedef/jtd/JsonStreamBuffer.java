@@ -0,0 +1,252 @@
+package com.jsontypedef.jtd;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A recording of the start of a JSON object read from a {@code JsonStream},
+ * which can be replayed as a {@code JsonStream} of its own.
+ *
+ * Streaming validation uses this to find the tag of a discriminator, which
+ * may come after other members of the object. Only the members before the tag
+ * are recorded. Once the recording has been replayed, the buffer continues
+ * with the rest of the object from the original stream, so that nothing after
+ * the tag is ever held in memory.
+ */
+final class JsonStreamBuffer implements JsonStream {
+  private final JsonStream source;
+  private final int maxSize;
+  private final List<Token> tokens = new ArrayList<>();
+  private final List<Object> values = new ArrayList<>();
+  private int size;
+  private int position = -1;
+  private int memberIndex = -1;
+
+  // Whether replay has moved past the recording, and on to source.
+  private boolean live;
+
+  private JsonStreamBuffer(JsonStream source, int maxSize) {
+    this.source = source;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Records the object whose {@code START_OBJECT} was just read from
+   * {@code source}, up to and including the first token of the value of the
+   * member called {@code name}.
+   *
+   * If the object has no such member, the entire object is recorded. If the
+   * member's value is an array or object, only its opening token is recorded.
+   *
+   * @param maxSize the maximum size of the recording, as measured by
+   * {@code add}, or zero for no maximum
+   * @throws MaxBufferExceededException if the recording grows larger than
+   * {@code maxSize}
+   */
+  static JsonStreamBuffer recordUntilMember(JsonStream source, String name, int maxSize) throws IOException {
+    JsonStreamBuffer buffer = new JsonStreamBuffer(source, maxSize);
+    buffer.add(Token.START_OBJECT);
+
+    while (true) {
+      Token token = next(source);
+      buffer.add(token);
+
+      if (token == Token.END_OBJECT) {
+        return buffer;
+      }
+
+      boolean found = name.equals(source.getName());
+
+      token = next(source);
+      buffer.add(token);
+
+      if (found) {
+        buffer.memberIndex = buffer.tokens.size() - 1;
+        return buffer;
+      }
+
+      buffer.addChildren(token);
+    }
+  }
+
+  private void addChildren(Token token) throws IOException {
+    if (token != Token.START_OBJECT && token != Token.START_ARRAY) {
+      return;
+    }
+
+    int depth = 1;
+    while (depth != 0) {
+      token = next(source);
+      add(token);
+
+      if (token == Token.START_OBJECT || token == Token.START_ARRAY) {
+        depth++;
+      } else if (token == Token.END_OBJECT || token == Token.END_ARRAY) {
+        depth--;
+      }
+    }
+  }
+
+  // Each token counts as one, plus the length of its text. For typical input,
+  // that is close to the number of bytes of JSON the token was read from.
+  private void add(Token token) throws IOException {
+    Object value;
+    switch (token) {
+      case NAME:
+        value = source.getName();
+        size += ((String) value).length();
+        break;
+      case STRING:
+        value = source.getString();
+        size += ((String) value).length();
+        break;
+      case NUMBER:
+        // Keep integers as longs, so that replaying them is as exact as
+        // reading them from the source.
+        value = source.isLong() ? (Object) source.getLong() : (Object) source.getNumber();
+        break;
+      default:
+        value = null;
+        break;
+    }
+
+    size += 1;
+    if (maxSize != 0 && size > maxSize) {
+      throw new MaxBufferExceededException();
+    }
+
+    tokens.add(token);
+    values.add(value);
+  }
+
+  private static Token next(JsonStream source) throws IOException {
+    Token token = source.next();
+    if (token == null) {
+      throw new EOFException("unexpected end of input");
+    }
+
+    return token;
+  }
+
+  /**
+   * Finds the value of the member that the recording was made up to.
+   *
+   * @return the index of the first token of the member's value, or -1 if the
+   * object has no such member
+   */
+  int indexOfMember() {
+    return memberIndex;
+  }
+
+  Token tokenAt(int index) {
+    return tokens.get(index);
+  }
+
+  Object valueAt(int index) {
+    return values.get(index);
+  }
+
+  /**
+   * Consumes the rest of the recorded object, including whatever of it has
+   * not yet been read from the original stream.
+   */
+  void skipObject() throws IOException {
+    position = 0;
+    live = false;
+    skipChildren();
+  }
+
+  @Override
+  public Token next() throws IOException {
+    if (live) {
+      return source.next();
+    }
+
+    if (position + 1 == tokens.size()) {
+      live = true;
+      return source.next();
+    }
+
+    return tokens.get(++position);
+  }
+
+  @Override
+  public String getName() throws IOException {
+    return live ? source.getName() : (String) values.get(position);
+  }
+
+  @Override
+  public String getString() throws IOException {
+    return live ? source.getString() : (String) values.get(position);
+  }
+
+  @Override
+  public double getNumber() throws IOException {
+    return live ? source.getNumber() : ((Number) values.get(position)).doubleValue();
+  }
+
+  @Override
+  public boolean isLong() throws IOException {
+    return live ? source.isLong() : values.get(position) instanceof Long;
+  }
+
+  @Override
+  public long getLong() throws IOException {
+    return live ? source.getLong() : (Long) values.get(position);
+  }
+
+  @Override
+  public boolean hasTextCharacters() throws IOException {
+    return live && source.hasTextCharacters();
+  }
+
+  @Override
+  public char[] getTextCharacters() throws IOException {
+    return source.getTextCharacters();
+  }
+
+  @Override
+  public int getTextOffset() throws IOException {
+    return source.getTextOffset();
+  }
+
+  @Override
+  public int getTextLength() throws IOException {
+    return source.getTextLength();
+  }
+
+  @Override
+  public void skipChildren() throws IOException {
+    if (live) {
+      source.skipChildren();
+      return;
+    }
+
+    Token token = tokens.get(position);
+    if (token != Token.START_OBJECT && token != Token.START_ARRAY) {
+      return;
+    }
+
+    // The matching closing token may be in the recording, or may not have
+    // been read from source yet.
+    int depth = 1;
+    while (depth != 0) {
+      token = next();
+      if (token == null) {
+        throw new EOFException("unexpected end of input");
+      }
+
+      if (token == Token.START_OBJECT || token == Token.START_ARRAY) {
+        if (live) {
+          source.skipChildren();
+        } else {
+          depth++;
+        }
+      } else if (token == Token.END_OBJECT || token == Token.END_ARRAY) {
+        depth--;
+      }
+    }
+  }
+}
@@ -0,0 +1,177 @@
+package com.jsontypedef.jtd;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies in nanoseconds, which many threads can record into
+ * at once.
+ *
+ * Each power of two is split into {@code 2^subBucketBits} equally sized
+ * sub-buckets, so the histogram takes a fixed amount of memory however many
+ * latencies are recorded, and percentiles are accurate to within one part in
+ * {@code 2^subBucketBits}. Recording is a pair of atomic additions, without
+ * locks. So that threads running at the same time do not contend for the same
+ * counters, the histogram is split into stripes, one of which each thread
+ * records into. Reading the histogram adds the stripes up, and so is
+ * comparatively slow.
+ *
+ * {@code SchemaMetrics} keeps its latencies in one of these, and so do jtd's
+ * load tests.
+ */
+public final class LatencyHistogram {
+  // Latencies of 2^MAX_BITS nanoseconds, about 18 minutes, or more all go in
+  // the last bucket.
+  private static final int MAX_BITS = 40;
+
+  private static final int MAX_STRIPES = 16;
+
+  private final int subBucketBits;
+  private final int subBuckets;
+  private final int buckets;
+
+  // Each stripe is its buckets, followed by the sum of its latencies.
+  private final int stride;
+
+  private final AtomicLongArray counts;
+  private final int stripeMask;
+
+  /**
+   * Constructs a histogram whose percentiles are accurate to within one part
+   * in eight.
+   */
+  public LatencyHistogram() {
+    this(3);
+  }
+
+  /**
+   * Constructs a histogram whose percentiles are accurate to within one part
+   * in {@code 2^subBucketBits}. Each additional bit doubles the memory the
+   * histogram takes.
+   *
+   * @param subBucketBits the number of bits of each latency kept, between 1
+   * and 10
+   */
+  public LatencyHistogram(int subBucketBits) {
+    if (subBucketBits < 1 || subBucketBits > 10) {
+      throw new IllegalArgumentException("subBucketBits must be between 1 and 10");
+    }
+
+    this.subBucketBits = subBucketBits;
+    this.subBuckets = 1 << subBucketBits;
+    this.buckets = (MAX_BITS - subBucketBits + 1) * subBuckets;
+    this.stride = buckets + 1;
+
+    int stripes = 1;
+    while (stripes < Math.min(Runtime.getRuntime().availableProcessors(), MAX_STRIPES)) {
+      stripes *= 2;
+    }
+
+    this.counts = new AtomicLongArray(stripes * stride);
+    this.stripeMask = stripes - 1;
+  }
+
+  /**
+   * Records a latency. Negative latencies are recorded as zero.
+   *
+   * @param nanos the latency, in nanoseconds
+   */
+  public void record(long nanos) {
+    long value = Math.max(nanos, 0);
+    int base = stripe() * stride;
+    counts.getAndIncrement(base + indexOf(value));
+    counts.getAndAdd(base + buckets, value);
+  }
+
+  // Threads are spread over the stripes by their ids, mixed so that threads
+  // created one after another land on different stripes.
+  private int stripe() {
+    long id = Thread.currentThread().getId();
+    return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & stripeMask;
+  }
+
+  /**
+   * Gets the number of latencies recorded.
+   *
+   * @return the number of latencies recorded
+   */
+  public long count() {
+    long count = 0;
+    for (int stripe = 0; stripe <= stripeMask; stripe++) {
+      for (int i = 0; i < buckets; i++) {
+        count += counts.get(stripe * stride + i);
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Gets the sum of the latencies recorded.
+   *
+   * @return the sum of the latencies recorded, in nanoseconds
+   */
+  public long sum() {
+    long sum = 0;
+    for (int stripe = 0; stripe <= stripeMask; stripe++) {
+      sum += counts.get(stripe * stride + buckets);
+    }
+
+    return sum;
+  }
+
+  /**
+   * Gets the latency that {@code percentile} percent of recorded latencies are
+   * no greater than, rounded up to the bound of its sub-bucket.
+   *
+   * @param percentile the percentile, between 0 and 100
+   * @return the latency in nanoseconds, or 0 if nothing has been recorded
+   */
+  public long percentile(double percentile) {
+    long[] totals = new long[buckets];
+    long total = 0;
+    for (int stripe = 0; stripe <= stripeMask; stripe++) {
+      for (int i = 0; i < buckets; i++) {
+        long count = counts.get(stripe * stride + i);
+        totals[i] += count;
+        total += count;
+      }
+    }
+
+    long rank = (long) Math.ceil(total * percentile / 100);
+    long seen = 0;
+    for (int i = 0; i < buckets; i++) {
+      seen += totals[i];
+      if (seen >= rank && seen > 0) {
+        return upperBoundOf(i);
+      }
+    }
+
+    return 0;
+  }
+
+  // Values below subBuckets each get a bucket of their own. Above that, the
+  // position of the highest bit picks a range, and the subBucketBits bits
+  // below it pick a sub-bucket within that range.
+  private int indexOf(long value) {
+    if (value < subBuckets) {
+      return (int) value;
+    }
+
+    if (value >= 1L << MAX_BITS) {
+      return buckets - 1;
+    }
+
+    int shift = 63 - Long.numberOfLeadingZeros(value) - subBucketBits;
+    return (shift + 1) * subBuckets + (int) ((value >>> shift) - subBuckets);
+  }
+
+  private long upperBoundOf(int index) {
+    if (index < subBuckets) {
+      return index;
+    }
+
+    int shift = index / subBuckets - 1;
+    long lowerBound = (long) (index % subBuckets + subBuckets) << shift;
+    return lowerBound + (1L << shift) - 1;
+  }
+}
@@ -0,0 +1,13 @@
+package com.jsontypedef.jtd;
+
+import java.io.IOException;
+
+/**
+ * The exception raised from streaming {@code validate} in {@code Validator} if
+ * more of the input would need to be buffered than the configured maximum.
+ *
+ * This can only happen while looking ahead for the tag of a discriminator.
+ */
+public class MaxBufferExceededException extends IOException {
+  private static final long serialVersionUID = -2779160398478135316L;
+}
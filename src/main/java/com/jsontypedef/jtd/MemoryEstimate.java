@@ -0,0 +1,71 @@
+package com.jsontypedef.jtd;
+
+import java.util.Map;
+
+/**
+ * Rough sizes of objects in memory, for reporting how much memory compiled
+ * schemas retain.
+ *
+ * Sizes assume a 64-bit JVM with compressed references and compact strings,
+ * which is the default for heaps under 32 GB: objects have a 12-byte header,
+ * references take 4 bytes, and everything is padded to a multiple of 8 bytes.
+ */
+final class MemoryEstimate {
+  private static final long HEADER = 12;
+  private static final long ARRAY_HEADER = 16;
+  private static final long REFERENCE = 4;
+
+  // A HashMap or LinkedHashMap entry: a header, a hash, a key, a value, a next
+  // pointer, and, for LinkedHashMap, before and after pointers.
+  private static final long MAP_ENTRY = 40;
+
+  // A LinkedHashMap, with its fields, wrapped in an unmodifiable map.
+  private static final long MAP = 80;
+
+  private MemoryEstimate() {
+  }
+
+  static long object(long fieldBytes) {
+    return align(HEADER + fieldBytes);
+  }
+
+  static long referenceArray(int length) {
+    return align(ARRAY_HEADER + REFERENCE * length);
+  }
+
+  static long intArray(int length) {
+    return align(ARRAY_HEADER + 4L * length);
+  }
+
+  static long string(String s) {
+    if (s == null) {
+      return 0;
+    }
+
+    // The String itself, and its array of Latin-1 bytes.
+    return object(12) + align(ARRAY_HEADER + s.length());
+  }
+
+  /**
+   * Estimates the size of a map built by {@code CompiledSchema}, not counting
+   * its keys or values.
+   */
+  static long map(Map<?, ?> map) {
+    if (map == null) {
+      return 0;
+    }
+
+    // The table is the smallest power of two that keeps the map at most three
+    // quarters full.
+    int capacity = 1;
+    while (capacity * 3 < map.size() * 4) {
+      capacity *= 2;
+    }
+
+    return MAP + referenceArray(capacity) + MAP_ENTRY * map.size();
+  }
+
+  private static long align(long size) {
+    return (size + 7) & ~7L;
+  }
+}
@@ -0,0 +1,99 @@
+package com.jsontypedef.jtd;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A node of the call tree a {@code ValidationProfiler} builds: a schema path,
+ * as reached through a particular chain of parent schema paths.
+ *
+ * Children are found by the schema node being validated, and failing that by
+ * comparing schema paths. Schema nodes differ every time a {@code Schema} is
+ * compiled, but schema paths do not, so the tree only ever grows as large as
+ * the schema itself.
+ */
+final class ProfileFrame {
+  private static final ProfileFrame[] NO_CHILDREN = new ProfileFrame[0];
+
+  // Null for the root of the tree, which stands for no schema at all.
+  final List<String> schemaPath;
+
+  final LongAdder visits = new LongAdder();
+  final LongAdder nanos = new LongAdder();
+  final LongAdder errors = new LongAdder();
+
+  // Copied on write, so that children can be found without locking.
+  private volatile ProfileFrame[] children = NO_CHILDREN;
+
+  // The schema node most recently validated in this frame. Different threads
+  // may race to set this, but any of them finds the right frame.
+  private SchemaNode node;
+
+  ProfileFrame(List<String> schemaPath) {
+    this.schemaPath = schemaPath;
+  }
+
+  /**
+   * Returns the child for {@code node}, whose schema path is
+   * {@code tokens[from]} through {@code tokens[to - 1]}, adding it if there is
+   * none yet.
+   */
+  ProfileFrame child(SchemaNode node, String[] tokens, int from, int to) {
+    ProfileFrame[] children = this.children;
+    for (ProfileFrame child : children) {
+      if (child.node == node) {
+        return child;
+      }
+    }
+
+    for (ProfileFrame child : children) {
+      if (child.hasSchemaPath(tokens, from, to)) {
+        child.node = node;
+        return child;
+      }
+    }
+
+    return addChild(node, tokens, from, to);
+  }
+
+  private synchronized ProfileFrame addChild(SchemaNode node, String[] tokens, int from, int to) {
+    // Another thread may have added the child since it was looked for.
+    for (ProfileFrame child : children) {
+      if (child.hasSchemaPath(tokens, from, to)) {
+        return child;
+      }
+    }
+
+    ProfileFrame child = new ProfileFrame(Arrays.asList(Arrays.copyOfRange(tokens, from, to)));
+    child.node = node;
+
+    ProfileFrame[] newChildren = Arrays.copyOf(children, children.length + 1);
+    newChildren[children.length] = child;
+    children = newChildren;
+    return child;
+  }
+
+  private boolean hasSchemaPath(String[] tokens, int from, int to) {
+    if (schemaPath.size() != to - from) {
+      return false;
+    }
+
+    for (int i = from; i < to; i++) {
+      if (!schemaPath.get(i - from).equals(tokens[i])) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  ProfileFrame[] children() {
+    return children;
+  }
+
+  void record(long elapsedNanos) {
+    visits.increment();
+    nanos.add(elapsedNanos);
+  }
+}
@@ -0,0 +1,46 @@
+package com.jsontypedef.jtd;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A JDK Flight Recorder event for a slow validation of part of an instance
+ * against a definition, reached by following a {@code ref}.
+ *
+ * Like {@code ValidationEvent}, this event is disabled by default. Once
+ * enabled, it is only recorded for validations of a definition that take at
+ * least the event's threshold, which is 10 ms unless the recording's settings
+ * say otherwise. Timing every ref followed has a cost, and so this event is
+ * only recorded by {@code validate}, not {@code isValid}.
+ *
+ * This class must only be loaded where {@code FlightRecorderSupport} says
+ * Flight Recorder is available.
+ */
+@Name("com.jsontypedef.jtd.RefValidation")
+@Label("JSON Typedef Ref Validation")
+@Description("Slow validation of part of an instance against a definition in a JSON Typedef schema")
+@Category("JSON Typedef")
+@Enabled(false)
+@Threshold("10 ms")
+@StackTrace(false)
+final class RefValidationEvent extends Event {
+  private static final RefValidationEvent PROBE = new RefValidationEvent();
+
+  @Label("Definition")
+  @Description("The name of the definition the ref refers to")
+  String ref;
+
+  @Label("Instance Path")
+  @Description("The JSON Pointer to the part of the instance validated against the definition")
+  String instancePath;
+
+  static boolean enabled() {
+    return PROBE.isEnabled();
+  }
+}
@@ -0,0 +1,127 @@
+package com.jsontypedef.jtd;
+
+/**
+ * Checks strings against the RFC 3339 {@code date-time} format, which is what
+ * JSON Typedef's {@code timestamp} type requires.
+ *
+ * Unlike {@code DateTimeFormatter}, this accepts leap seconds, and checks a
+ * string without allocating or throwing anything.
+ */
+final class Rfc3339 {
+  private Rfc3339() {
+  }
+
+  /**
+   * Returns whether {@code s} is an RFC 3339 {@code date-time}.
+   */
+  static boolean isValid(CharSequence s) {
+    return isValid(s, null, 0, s.length());
+  }
+
+  /**
+   * Returns whether the {@code length} characters of {@code chars} starting at
+   * {@code offset} are an RFC 3339 {@code date-time}, such as the text of a
+   * streamed string.
+   */
+  static boolean isValid(char[] chars, int offset, int length) {
+    return isValid(null, chars, offset, length);
+  }
+
+  // Checks either s, or the range of chars, so that the same code serves both
+  // without copying one into the other.
+  private static boolean isValid(CharSequence s, char[] chars, int offset, int length) {
+    // The shortest date-time is "YYYY-MM-DDTHH:MM:SSZ", which is 20 characters.
+    if (length < 20) {
+      return false;
+    }
+
+    int year = digits(s, chars, offset, 0, 4);
+    int month = digits(s, chars, offset, 5, 2);
+    int day = digits(s, chars, offset, 8, 2);
+    if (year < 0 || charAt(s, chars, offset, 4) != '-' || month < 1 || month > 12
+        || charAt(s, chars, offset, 7) != '-' || day < 1 || day > daysInMonth(year, month)) {
+      return false;
+    }
+
+    char separator = charAt(s, chars, offset, 10);
+    if (separator != 'T' && separator != 't') {
+      return false;
+    }
+
+    // Seconds may be 60, to accommodate leap seconds.
+    int hour = digits(s, chars, offset, 11, 2);
+    int minute = digits(s, chars, offset, 14, 2);
+    int second = digits(s, chars, offset, 17, 2);
+    if (hour < 0 || hour > 23 || charAt(s, chars, offset, 13) != ':' || minute < 0 || minute > 59
+        || charAt(s, chars, offset, 16) != ':' || second < 0 || second > 60) {
+      return false;
+    }
+
+    int i = 19;
+    if (charAt(s, chars, offset, i) == '.') {
+      int start = ++i;
+      while (i < length && digits(s, chars, offset, i, 1) >= 0) {
+        i++;
+      }
+
+      if (i == start) {
+        return false;
+      }
+    }
+
+    if (i == length) {
+      return false;
+    }
+
+    char zone = charAt(s, chars, offset, i);
+    if (zone == 'Z' || zone == 'z') {
+      return i + 1 == length;
+    }
+
+    if ((zone != '+' && zone != '-') || i + 6 != length) {
+      return false;
+    }
+
+    int offsetHour = digits(s, chars, offset, i + 1, 2);
+    int offsetMinute = digits(s, chars, offset, i + 4, 2);
+    return offsetHour >= 0 && offsetHour <= 23 && charAt(s, chars, offset, i + 3) == ':' && offsetMinute >= 0
+        && offsetMinute <= 59;
+  }
+
+  private static char charAt(CharSequence s, char[] chars, int offset, int index) {
+    return chars != null ? chars[offset + index] : s.charAt(index);
+  }
+
+  /**
+   * Parses {@code count} decimal digits starting at {@code start}, returning -1
+   * if any of them is not a digit.
+   */
+  private static int digits(CharSequence s, char[] chars, int offset, int start, int count) {
+    int value = 0;
+    for (int i = start; i < start + count; i++) {
+      char c = charAt(s, chars, offset, i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+
+      value = value * 10 + (c - '0');
+    }
+
+    return value;
+  }
+
+  private static int daysInMonth(int year, int month) {
+    switch (month) {
+      case 2:
+        boolean leapYear = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+        return leapYear ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package com.jsontypedef.jtd;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ObjectName;
+
+/**
+ * The metrics a {@code SchemaMetricsRegistry} keeps for a single schema, and
+ * exposes as an MBean.
+ *
+ * Latencies are kept in a histogram that takes a fixed amount of memory, and
+ * that threads record into without locks or contending with each other.
+ * Percentiles are accurate to within one part in eight, rounded up.
+ */
+public class SchemaMetrics implements SchemaMetricsMXBean {
+  private final String name;
+  private final ObjectName objectName;
+  private final CompiledSchema schema;
+  private final int schemaNodeCount;
+  private final long estimatedSchemaBytes;
+
+  // Replaced as a whole by resetStatistics, so that every figure read from
+  // one Counts covers the same validations.
+  private volatile Counts counts = new Counts();
+
+  SchemaMetrics(String name, ObjectName objectName, CompiledSchema schema) {
+    this.name = name;
+    this.objectName = objectName;
+    this.schema = schema;
+
+    // Compiled schemas never change, so their size only needs estimating once.
+    this.schemaNodeCount = schema.getNodes().size();
+    this.estimatedSchemaBytes = schema.estimatedSize();
+  }
+
+  void record(boolean valid, long elapsedNanos) {
+    Counts counts = this.counts;
+    counts.latencies.record(elapsedNanos);
+
+    if (!valid) {
+      counts.invalid.increment();
+    }
+  }
+
+  ObjectName getObjectName() {
+    return objectName;
+  }
+
+  CompiledSchema getSchema() {
+    return schema;
+  }
+
+  @Override
+  public String getSchemaName() {
+    return name;
+  }
+
+  @Override
+  public long getValidationCount() {
+    return counts.latencies.count();
+  }
+
+  @Override
+  public long getInvalidCount() {
+    return counts.invalid.sum();
+  }
+
+  @Override
+  public double getErrorRate() {
+    Counts counts = this.counts;
+    long validations = counts.latencies.count();
+    return validations == 0 ? 0 : (double) counts.invalid.sum() / validations;
+  }
+
+  @Override
+  public double getValidationsPerSecond() {
+    Counts counts = this.counts;
+    return counts.latencies.count() / ((System.nanoTime() - counts.startNanos) / 1e9);
+  }
+
+  @Override
+  public double getMeanLatencyMicros() {
+    Counts counts = this.counts;
+    long validations = counts.latencies.count();
+    return validations == 0 ? 0 : counts.latencies.sum() / 1e3 / validations;
+  }
+
+  @Override
+  public double getLatencyP50Micros() {
+    return counts.latencies.percentile(50) / 1e3;
+  }
+
+  @Override
+  public double getLatencyP90Micros() {
+    return counts.latencies.percentile(90) / 1e3;
+  }
+
+  @Override
+  public double getLatencyP99Micros() {
+    return counts.latencies.percentile(99) / 1e3;
+  }
+
+  @Override
+  public double getLatencyP999Micros() {
+    return counts.latencies.percentile(99.9) / 1e3;
+  }
+
+  @Override
+  public double getMaxLatencyMicros() {
+    return counts.latencies.percentile(100) / 1e3;
+  }
+
+  @Override
+  public int getSchemaNodeCount() {
+    return schemaNodeCount;
+  }
+
+  @Override
+  public long getEstimatedSchemaBytes() {
+    return estimatedSchemaBytes;
+  }
+
+  @Override
+  public void resetStatistics() {
+    counts = new Counts();
+  }
+
+  private static final class Counts {
+    final LatencyHistogram latencies = new LatencyHistogram();
+    final LongAdder invalid = new LongAdder();
+    final long startNanos = System.nanoTime();
+  }
+}
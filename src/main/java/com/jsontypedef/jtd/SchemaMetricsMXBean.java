@@ -0,0 +1,111 @@
+package com.jsontypedef.jtd;
+
+/**
+ * The JMX interface of {@code SchemaMetrics}: what is known about the
+ * validations against a single schema.
+ *
+ * Counts and latencies cover the validations since the schema was registered
+ * with a {@code SchemaMetricsRegistry}, or since {@code resetStatistics} was
+ * last called.
+ */
+public interface SchemaMetricsMXBean {
+  /**
+   * Gets the name the schema was registered under.
+   *
+   * @return the name of the schema
+   */
+  String getSchemaName();
+
+  /**
+   * Gets the number of instances validated against the schema.
+   *
+   * @return the number of validations
+   */
+  long getValidationCount();
+
+  /**
+   * Gets the number of instances that were not valid, or whose validation
+   * raised an exception.
+   *
+   * @return the number of invalid instances
+   */
+  long getInvalidCount();
+
+  /**
+   * Gets the fraction of instances that were not valid.
+   *
+   * @return the number of invalid instances divided by the number of
+   * validations, or 0 if there have been none
+   */
+  double getErrorRate();
+
+  /**
+   * Gets the average number of instances validated per second.
+   *
+   * @return the number of validations divided by the time they were counted
+   * over
+   */
+  double getValidationsPerSecond();
+
+  /**
+   * Gets the mean time validating an instance took.
+   *
+   * @return the mean latency, in microseconds
+   */
+  double getMeanLatencyMicros();
+
+  /**
+   * Gets the median time validating an instance took.
+   *
+   * @return the 50th percentile latency, in microseconds
+   */
+  double getLatencyP50Micros();
+
+  /**
+   * Gets the time that 90% of validations took at most.
+   *
+   * @return the 90th percentile latency, in microseconds
+   */
+  double getLatencyP90Micros();
+
+  /**
+   * Gets the time that 99% of validations took at most.
+   *
+   * @return the 99th percentile latency, in microseconds
+   */
+  double getLatencyP99Micros();
+
+  /**
+   * Gets the time that 99.9% of validations took at most.
+   *
+   * @return the 99.9th percentile latency, in microseconds
+   */
+  double getLatencyP999Micros();
+
+  /**
+   * Gets the longest time validating an instance took.
+   *
+   * @return the maximum latency, in microseconds
+   */
+  double getMaxLatencyMicros();
+
+  /**
+   * Gets the number of subschemas in the compiled schema, including its
+   * definitions.
+   *
+   * @return the number of compiled subschemas
+   */
+  int getSchemaNodeCount();
+
+  /**
+   * Gets an estimate of the memory the compiled schema retains.
+   *
+   * @return the estimated size of the compiled schema, in bytes
+   */
+  long getEstimatedSchemaBytes();
+
+  /**
+   * Starts counting validations over again.
+   */
+  void resetStatistics();
+}
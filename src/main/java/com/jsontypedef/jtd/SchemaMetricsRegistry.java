@@ -0,0 +1,140 @@
+package com.jsontypedef.jtd;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A {@code ValidationListener} that keeps metrics for named schemas, and
+ * exposes them over JMX.
+ *
+ * Each schema registered with {@code register} gets a {@code SchemaMetrics}
+ * MBean, named {@code com.jsontypedef.jtd:type=SchemaMetrics,name=NAME},
+ * until it is unregistered with {@code unregister}.
+ *
+ * Validations are matched to registered schemas by the fingerprint of the
+ * schema they were against, as returned by
+ * {@code CompiledSchema.getFingerprint}. So validations are counted whichever
+ * way the schema was compiled, including by the overloads of
+ * {@code Validator} that accept a {@code Schema}. Validations against schemas
+ * that are not registered are ignored, at the cost of a lookup that takes no
+ * locks. The first validation against each compiled schema also computes its
+ * fingerprint.
+ *
+ * A registry only sees validations by the {@code Validator}s it is set as the
+ * listener of, with {@code setListener}. Until then, it costs nothing.
+ */
+public class SchemaMetricsRegistry implements ValidationListener {
+  private final MBeanServer server;
+
+  // Fingerprints are looked up on every validation, and so are kept in a map
+  // that can be read without locking. Changes to either map are made while
+  // holding the registry's lock.
+  private final ConcurrentHashMap<String, SchemaMetrics> byFingerprint = new ConcurrentHashMap<>();
+  private final Map<String, SchemaMetrics> byName = new HashMap<>();
+
+  /**
+   * Constructs a registry that registers MBeans with the platform MBean
+   * server.
+   */
+  public SchemaMetricsRegistry() {
+    this(ManagementFactory.getPlatformMBeanServer());
+  }
+
+  /**
+   * Constructs a registry that registers MBeans with {@code server}.
+   *
+   * @param server the MBean server to register with
+   */
+  public SchemaMetricsRegistry(MBeanServer server) {
+    this.server = server;
+  }
+
+  /**
+   * Starts keeping metrics for {@code schema}, and registers an MBean for
+   * them.
+   *
+   * @param name the name of the schema, which names its MBean
+   * @param schema the compiled schema to keep metrics for
+   * @return the metrics for the schema
+   * @throws JMException if the MBean cannot be registered, including if
+   * there is already an MBean with the same name
+   * @throws IllegalArgumentException if {@code schema}, or a schema with the
+   * same fingerprint, is already registered under another name
+   */
+  public synchronized SchemaMetrics register(String name, CompiledSchema schema) throws JMException {
+    SchemaMetrics existing = byFingerprint.get(schema.getFingerprint());
+    if (existing != null) {
+      throw new IllegalArgumentException("schema is already registered as " + existing.getSchemaName());
+    }
+
+    ObjectName objectName = new ObjectName("com.jsontypedef.jtd:type=SchemaMetrics,name=" + ObjectName.quote(name));
+    SchemaMetrics metrics = new SchemaMetrics(name, objectName, schema);
+    server.registerMBean(metrics, objectName);
+
+    byName.put(name, metrics);
+    byFingerprint.put(schema.getFingerprint(), metrics);
+    return metrics;
+  }
+
+  /**
+   * Starts keeping metrics for {@code schema}, and registers an MBean for
+   * them.
+   *
+   * This method behaves like the overload that accepts a
+   * {@code CompiledSchema}, with the compiled form of {@code schema} that
+   * {@code Validator} uses for it. Changes made to {@code schema} afterwards
+   * change its fingerprint, and so are not tracked.
+   *
+   * @param name the name of the schema, which names its MBean
+   * @param schema the schema to keep metrics for
+   * @return the metrics for the schema
+   * @throws JMException if the MBean cannot be registered, including if
+   * there is already an MBean with the same name
+   * @throws IllegalArgumentException if {@code schema}, or a schema with the
+   * same fingerprint, is already registered under another name
+   */
+  public SchemaMetrics register(String name, Schema schema) throws JMException {
+    return register(name, CompiledSchema.build(schema));
+  }
+
+  /**
+   * Stops keeping metrics for the schema registered as {@code name}, and
+   * unregisters its MBean. Does nothing if there is no such schema.
+   *
+   * @param name the name the schema was registered under
+   * @throws JMException if the MBean cannot be unregistered
+   */
+  public synchronized void unregister(String name) throws JMException {
+    SchemaMetrics metrics = byName.remove(name);
+    if (metrics == null) {
+      return;
+    }
+
+    byFingerprint.remove(metrics.getSchema().getFingerprint());
+    server.unregisterMBean(metrics.getObjectName());
+  }
+
+  /**
+   * Gets the metrics for the schema registered as {@code name}.
+   *
+   * @param name the name the schema was registered under
+   * @return the metrics, or null if there is no such schema
+   */
+  public synchronized SchemaMetrics getMetrics(String name) {
+    return byName.get(name);
+  }
+
+  @Override
+  public void validationFinished(CompiledSchema schema, boolean valid, long elapsedNanos) {
+    SchemaMetrics metrics = byFingerprint.get(schema.getFingerprint());
+    if (metrics != null) {
+      metrics.record(valid, elapsedNanos);
+    }
+  }
+}
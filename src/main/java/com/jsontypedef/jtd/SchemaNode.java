@@ -0,0 +1,241 @@
+package com.jsontypedef.jtd;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A single, pre-resolved node of a {@code CompiledSchema}.
+ *
+ * Every fact {@code Validator} needs about a schema is computed once, when the
+ * node is constructed, rather than re-derived from {@code Schema} on every
+ * validation. The only field assigned after construction is {@code refTarget},
+ * which is resolved by {@code CompiledSchema} once all definitions exist.
+ */
+final class SchemaNode {
+  final Form form;
+  final boolean nullable;
+  final String ref;
+  final Type type;
+  final StringMatcher enm;
+  final SchemaNode elements;
+  final Map<String, SchemaNode> properties;
+  final Map<String, SchemaNode> optionalProperties;
+  final boolean additionalProperties;
+  final SchemaNode values;
+  final String discriminator;
+  final Map<String, SchemaNode> mapping;
+
+  // For the integer types, the inclusive range of acceptable values. Computing
+  // these once keeps the type check for every integer type to a single branch.
+  final long intMin;
+  final long intMax;
+
+  // For the properties form, the slot of every property the schema names.
+  // Required properties take slots 0 through requiredCount - 1, in schema
+  // order, and optional properties take the slots after them. propertyNames
+  // and propertySchemas are indexed by slot.
+  final String[] propertyNames;
+  final SchemaNode[] propertySchemas;
+  final int requiredCount;
+
+  // Unverified schemas may name a property as both required and optional.
+  // slotOf treats such a property as required.
+  final boolean duplicateNames;
+
+  // An index from names to slots, for slotOf. It is built the first time a
+  // name isn't where slotOf expects it, which never happens for instances
+  // validated as trees, or for instances in schema order.
+  private volatile StringMatcher propertySlots;
+
+  SchemaNode refTarget;
+
+  // Once Validator's compile threshold is reached, the class generated for
+  // the schema, if this node has a method in it, and the index of that method.
+  // generatedIndex is assigned first, so it is visible once generated is.
+  volatile Validator.GeneratedValidator generated;
+  int generatedIndex;
+
+  SchemaNode(Form form, boolean nullable, String ref, Type type, Set<String> enm, SchemaNode elements,
+      Map<String, SchemaNode> properties, Map<String, SchemaNode> optionalProperties, boolean additionalProperties,
+      SchemaNode values, String discriminator, Map<String, SchemaNode> mapping) {
+    this.form = form;
+    this.nullable = nullable;
+    this.ref = ref;
+    this.type = type;
+    this.enm = enm == null ? null : new StringMatcher(enm.toArray(new String[0]));
+    this.elements = elements;
+    this.properties = properties;
+    this.optionalProperties = optionalProperties;
+    this.additionalProperties = additionalProperties;
+    this.values = values;
+    this.discriminator = discriminator;
+    this.mapping = mapping;
+
+    long intMin = 0;
+    long intMax = 0;
+    if (type != null) {
+      switch (type) {
+        case INT8:
+          intMin = -128;
+          intMax = 127;
+          break;
+        case UINT8:
+          intMax = 255;
+          break;
+        case INT16:
+          intMin = -32768;
+          intMax = 32767;
+          break;
+        case UINT16:
+          intMax = 65535;
+          break;
+        case INT32:
+          intMin = -2147483648;
+          intMax = 2147483647;
+          break;
+        case UINT32:
+          intMax = 4294967295L;
+          break;
+        default:
+          break;
+      }
+    }
+
+    this.intMin = intMin;
+    this.intMax = intMax;
+
+    if (properties != null || optionalProperties != null) {
+      int requiredCount = properties == null ? 0 : properties.size();
+      int count = requiredCount + (optionalProperties == null ? 0 : optionalProperties.size());
+
+      String[] propertyNames = new String[count];
+      SchemaNode[] propertySchemas = new SchemaNode[count];
+      boolean duplicateNames = false;
+      int slot = 0;
+      for (Map<String, SchemaNode> group : Arrays.asList(properties, optionalProperties)) {
+        if (group != null) {
+          for (Map.Entry<String, SchemaNode> entry : group.entrySet()) {
+            if (slot >= requiredCount && properties != null && properties.containsKey(entry.getKey())) {
+              duplicateNames = true;
+            }
+
+            propertyNames[slot] = entry.getKey();
+            propertySchemas[slot] = entry.getValue();
+            slot++;
+          }
+        }
+      }
+
+      this.propertyNames = propertyNames;
+      this.propertySchemas = propertySchemas;
+      this.requiredCount = requiredCount;
+      this.duplicateNames = duplicateNames;
+    } else {
+      this.propertyNames = null;
+      this.propertySchemas = null;
+      this.requiredCount = 0;
+      this.duplicateNames = false;
+    }
+  }
+
+  /**
+   * Finds the slot of a property of the properties form.
+   *
+   * Producers usually write members in the same order every time, which is
+   * typically the order of the schema. So before hashing {@code key}, this
+   * compares it to the name in {@code expectedSlot}, which callers set to the
+   * slot after the last one found. For an instance in schema order, that
+   * comparison always succeeds.
+   *
+   * @return the slot of {@code key}, or -1 if the schema does not name it
+   */
+  int slotOf(String key, int expectedSlot) {
+    if (expectedSlot < propertyNames.length && !duplicateNames && key.equals(propertyNames[expectedSlot])) {
+      return expectedSlot;
+    }
+
+    StringMatcher propertySlots = this.propertySlots;
+    if (propertySlots == null) {
+      // Leave the second slot of a duplicated name out of the index, so that
+      // the name is found in its required slot.
+      String[] names = propertyNames;
+      if (duplicateNames) {
+        names = propertyNames.clone();
+        for (int slot = requiredCount; slot < names.length; slot++) {
+          if (properties.containsKey(names[slot])) {
+            names[slot] = null;
+          }
+        }
+      }
+
+      propertySlots = new StringMatcher(names);
+      this.propertySlots = propertySlots;
+    }
+
+    return propertySlots.indexOf(key);
+  }
+
+  /**
+   * Adds this node, and the nodes inside it, to {@code nodes}. Refs are not
+   * followed, since their targets are among the definitions of the schema.
+   */
+  void collect(List<SchemaNode> nodes) {
+    nodes.add(this);
+
+    if (elements != null) {
+      elements.collect(nodes);
+    }
+
+    if (values != null) {
+      values.collect(nodes);
+    }
+
+    if (propertySchemas != null) {
+      for (SchemaNode node : propertySchemas) {
+        node.collect(nodes);
+      }
+    }
+
+    if (mapping != null) {
+      for (SchemaNode node : mapping.values()) {
+        node.collect(nodes);
+      }
+    }
+  }
+
+  /**
+   * Estimates the memory this node takes, not counting the nodes inside it.
+   *
+   * The names of properties are counted once, though the maps of properties
+   * may keep copies of their own.
+   */
+  long estimatedSize() {
+    // 15 references, two longs, two ints and three booleans.
+    long size = MemoryEstimate.object(15 * 4 + 2 * 8 + 2 * 4 + 3);
+
+    size += MemoryEstimate.string(ref) + MemoryEstimate.string(discriminator);
+    size += MemoryEstimate.map(properties) + MemoryEstimate.map(optionalProperties) + MemoryEstimate.map(mapping);
+
+    if (enm != null) {
+      size += enm.estimatedSize();
+    }
+
+    if (propertyNames != null) {
+      size += MemoryEstimate.referenceArray(propertyNames.length)
+          + MemoryEstimate.referenceArray(propertySchemas.length);
+
+      StringMatcher propertySlots = this.propertySlots;
+      if (propertySlots != null) {
+        size += propertySlots.estimatedSize();
+      } else {
+        for (String name : propertyNames) {
+          size += MemoryEstimate.string(name);
+        }
+      }
+    }
+
+    return size;
+  }
+}
@@ -0,0 +1,79 @@
+package com.jsontypedef.jtd;
+
+import java.util.List;
+
+/**
+ * What a {@code ValidationProfiler} found about a single schema path: how
+ * often it was validated, how long that took, and how many errors it found.
+ */
+public class SchemaPathProfile {
+  private final List<String> schemaPath;
+  private final long visitCount;
+  private final long totalNanos;
+  private final long selfNanos;
+  private final long errorCount;
+
+  SchemaPathProfile(List<String> schemaPath, long visitCount, long totalNanos, long selfNanos, long errorCount) {
+    this.schemaPath = schemaPath;
+    this.visitCount = visitCount;
+    this.totalNanos = totalNanos;
+    this.selfNanos = selfNanos;
+    this.errorCount = errorCount;
+  }
+
+  /**
+   * Gets the schema path, in the same form as
+   * {@code ValidationError.getSchemaPath()}.
+   *
+   * Like the schema paths of errors, this starts over at each {@code ref}, as
+   * {@code definitions} and the name of the definition.
+   *
+   * @return the schema path
+   */
+  public List<String> getSchemaPath() {
+    return schemaPath;
+  }
+
+  /**
+   * Gets the number of times a part of an instance was validated against the
+   * schema at this path.
+   *
+   * @return the number of visits
+   */
+  public long getVisitCount() {
+    return visitCount;
+  }
+
+  /**
+   * Gets the time spent validating against the schema at this path, including
+   * the schemas inside it.
+   *
+   * When the schema refers to itself, time spent in the inner references is
+   * only counted once.
+   *
+   * @return the cumulative time, in nanoseconds
+   */
+  public long getTotalNanos() {
+    return totalNanos;
+  }
+
+  /**
+   * Gets the time spent validating against the schema at this path, not
+   * including the schemas inside it.
+   *
+   * @return the time spent at this path alone, in nanoseconds
+   */
+  public long getSelfNanos() {
+    return selfNanos;
+  }
+
+  /**
+   * Gets the number of errors found by the schema at this path itself, rather
+   * than by the schemas inside it.
+   *
+   * @return the number of errors
+   */
+  public long getErrorCount() {
+    return errorCount;
+  }
+}
@@ -0,0 +1,129 @@
+package com.jsontypedef.jtd;
+
+/**
+ * A fixed set of strings, which can be searched for either as a
+ * {@code String} or as a range of characters in a buffer.
+ *
+ * Streaming parsers such as Jackson's decode string values into a reusable
+ * character buffer, and only allocate a {@code String} when asked for one.
+ * Looking a value up by its characters in place avoids that allocation
+ * entirely for enums, whose values are checked but never kept.
+ *
+ * The strings are kept in an open-addressed hash table. The hash function is
+ * the same as {@code String.hashCode}, so that looking up a {@code String}
+ * reuses the hash it has cached.
+ */
+final class StringMatcher {
+  private final String[] strings;
+
+  // Each entry is one more than an index into strings, or zero if empty. The
+  // table is kept at most half full, so probe sequences stay short.
+  private final int[] table;
+  private final int mask;
+
+  /**
+   * Constructs a matcher whose indexes are the indexes of {@code strings}.
+   * Null elements are skipped, and never match anything.
+   */
+  StringMatcher(String[] strings) {
+    this.strings = strings;
+
+    int capacity = 2;
+    while (capacity < strings.length * 2) {
+      capacity *= 2;
+    }
+
+    this.table = new int[capacity];
+    this.mask = capacity - 1;
+
+    for (int i = 0; i < strings.length; i++) {
+      if (strings[i] != null) {
+        int slot = spread(strings[i].hashCode()) & mask;
+        while (table[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+
+        table[slot] = i + 1;
+      }
+    }
+  }
+
+  /**
+   * Finds a string.
+   *
+   * @return the index of {@code s}, or -1 if it is not in this matcher
+   */
+  int indexOf(String s) {
+    for (int slot = spread(s.hashCode()) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+      int index = table[slot] - 1;
+      if (s.equals(strings[index])) {
+        return index;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Finds the string made up of {@code length} characters of {@code chars},
+   * starting at {@code offset}.
+   *
+   * @return the index of the string, or -1 if it is not in this matcher
+   */
+  int indexOf(char[] chars, int offset, int length) {
+    int hash = 0;
+    for (int i = offset; i < offset + length; i++) {
+      hash = 31 * hash + chars[i];
+    }
+
+    for (int slot = spread(hash) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+      int index = table[slot] - 1;
+      if (regionMatches(strings[index], chars, offset, length)) {
+        return index;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Returns a copy of the strings of this matcher, indexed by their indexes.
+   */
+  String[] strings() {
+    return strings.clone();
+  }
+
+  /**
+   * Estimates the memory this matcher takes, including its strings.
+   */
+  long estimatedSize() {
+    long size = MemoryEstimate.object(12) + MemoryEstimate.referenceArray(strings.length)
+        + MemoryEstimate.intArray(table.length);
+    for (String s : strings) {
+      size += MemoryEstimate.string(s);
+    }
+
+    return size;
+  }
+
+  private static boolean regionMatches(String s, char[] chars, int offset, int length) {
+    if (s.length() != length) {
+      return false;
+    }
+
+    for (int i = 0; i < length; i++) {
+      if (s.charAt(i) != chars[offset + i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  // Only the low bits of a hash pick a slot. Mixing the high bits into them
+  // makes strings that differ only in their first few characters collide
+  // less often.
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+}
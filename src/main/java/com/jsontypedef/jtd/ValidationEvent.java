@@ -0,0 +1,67 @@
+package com.jsontypedef.jtd;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JDK Flight Recorder event for the validation of an instance.
+ *
+ * The event is disabled by default, and must be enabled in the recording's
+ * settings, as {@code com.jsontypedef.jtd.Validation#enabled=true}. Until it
+ * is, {@code Validator} only checks whether it is enabled, and creates no
+ * events.
+ *
+ * This class must only be loaded where {@code FlightRecorderSupport} says
+ * Flight Recorder is available.
+ */
+@Name("com.jsontypedef.jtd.Validation")
+@Label("JSON Typedef Validation")
+@Description("Validation of an instance against a JSON Typedef schema")
+@Category("JSON Typedef")
+@Enabled(false)
+@StackTrace(false)
+final class ValidationEvent extends Event {
+  // isEnabled reports the settings of the event type, whichever instance it
+  // is called on, so one instance serves to check them.
+  private static final ValidationEvent PROBE = new ValidationEvent();
+
+  @Label("Schema")
+  @Description("The fingerprint of the schema the instance was validated against, as returned by "
+      + "CompiledSchema.getFingerprint")
+  String schema;
+
+  @Label("Method")
+  @Description("The method of Validator that validated the instance")
+  String method;
+
+  @Label("Streaming")
+  @Description("Whether the instance was read from a JsonStream")
+  boolean streaming;
+
+  @Label("Instance Size")
+  @Description("The number of elements or members in the instance, 0 if it is neither an array nor an object, or -1 "
+      + "if it was read from a JsonStream")
+  int instanceSize;
+
+  @Label("Valid")
+  boolean valid;
+
+  @Label("Error Count")
+  @Description("The number of errors returned, which is always 0 for isValid")
+  int errorCount;
+
+  @Label("Max Errors Reached")
+  boolean maxErrorsReached;
+
+  @Label("Max Depth Exceeded")
+  boolean maxDepthExceeded;
+
+  static boolean enabled() {
+    return PROBE.isEnabled();
+  }
+}
@@ -0,0 +1,78 @@
+package com.jsontypedef.jtd;
+
+/**
+ * Receives notifications about what a {@code Validator} is doing, for
+ * collecting metrics.
+ *
+ * A listener is registered with {@code setListener} in {@code Validator}.
+ * When none is registered, validation does no work on behalf of listeners at
+ * all.
+ *
+ * Every validation of an instance, by any of the methods of
+ * {@code Validator}, calls {@code validationStarted} once, and then
+ * {@code validationFinished} once, even if validation raises an exception.
+ * The other methods are called between the two.
+ *
+ * A single {@code Validator} may be used from many threads at once, so
+ * listeners must be thread-safe. They are called on the thread doing the
+ * validation, and so should be quick. {@code ValidationStatistics} is a
+ * listener that counts what it is notified of.
+ *
+ * All methods do nothing by default, so implementations only need to override
+ * the ones they are interested in.
+ */
+public interface ValidationListener {
+  /**
+   * Called when validation of an instance starts.
+   *
+   * @param schema the schema the instance is being validated against
+   */
+  default void validationStarted(CompiledSchema schema) {
+  }
+
+  /**
+   * Called when validation of an instance finishes, whether or not it
+   * succeeded.
+   *
+   * @param schema the schema the instance was validated against
+   * @param valid whether the instance was valid; this is false if validation
+   * raised an exception
+   * @param elapsedNanos how long validation took, in nanoseconds
+   */
+  default void validationFinished(CompiledSchema schema, boolean valid, long elapsedNanos) {
+  }
+
+  /**
+   * Called for each error returned by {@code validate}, once the instance has
+   * been validated.
+   *
+   * Errors are reported after validation, rather than as they are found, so
+   * that exactly the errors that are returned are reported. {@code isValid}
+   * reports no errors.
+   *
+   * @param error the validation error
+   */
+  default void errorFound(ValidationError error) {
+  }
+
+  /**
+   * Called each time validation follows a {@code ref}.
+   *
+   * @param ref the name of the definition being followed
+   */
+  default void refFollowed(String ref) {
+  }
+
+  /**
+   * Called when validation raises {@code MaxDepthExceededException}.
+   */
+  default void maxDepthExceeded() {
+  }
+
+  /**
+   * Called when {@code validate} stops early because it found
+   * {@code maxErrors} errors.
+   */
+  default void maxErrorsReached() {
+  }
+}
@@ -0,0 +1,272 @@
+package com.jsontypedef.jtd;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@code Flow.Processor} that validates each {@code Json} instance it
+ * receives against a fixed schema, and publishes a {@code ValidationResult}
+ * for each of them.
+ *
+ * Instances are validated with {@code validateAsync} of the given
+ * {@code Validator}, so several may be validated at once. Results are always
+ * published in the order their instances were received.
+ *
+ * At most {@code maxInFlight} instances are ever requested from upstream
+ * without their results having been published downstream. A slow subscriber
+ * therefore slows down the publisher of instances, rather than letting
+ * results accumulate in memory.
+ *
+ * If validation raises {@code MaxDepthExceededException}, or upstream signals
+ * an error, the error is published downstream after the results of all
+ * earlier instances, and upstream is cancelled.
+ *
+ * When the subscriber cancels, upstream is cancelled too, no more results are
+ * published, and validations that haven't started yet are skipped.
+ *
+ * A {@code ValidationProcessor} supports only one subscriber.
+ */
+public class ValidationProcessor implements Flow.Processor<Json, ValidationResult> {
+  private final Validator validator;
+  private final CompiledSchema schema;
+  private final int maxInFlight;
+
+  // Validations in the order their instances arrived, whether or not they are
+  // done yet.
+  private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean subscribed = new AtomicBoolean();
+  private final AtomicLong demand = new AtomicLong();
+
+  // Signals may come from upstream, downstream, and validations finishing,
+  // all on different threads. Each of them calls drain, and wip ensures that
+  // only one thread at a time runs it. Fields not marked volatile below are
+  // only touched within drain.
+  private final AtomicInteger wip = new AtomicInteger();
+
+  private volatile Flow.Subscription upstream;
+  private volatile Flow.Subscriber<? super ValidationResult> downstream;
+  private volatile boolean upstreamDone;
+  private volatile Throwable upstreamError;
+  private volatile boolean cancelled;
+  private volatile Throwable requestError;
+
+  // The number of instances requested from upstream whose results have not
+  // been published yet.
+  private int inFlight;
+  private boolean terminated;
+
+  /**
+   * Constructs a processor that validates against {@code schema}.
+   *
+   * @param validator the validator to validate instances with
+   * @param schema the schema to validate against
+   * @param maxInFlight the maximum number of instances to have requested but
+   * not yet published results for
+   */
+  public ValidationProcessor(Validator validator, Schema schema, int maxInFlight) {
+    this(validator, CompiledSchema.build(schema), maxInFlight);
+  }
+
+  /**
+   * Constructs a processor that validates against {@code schema}.
+   *
+   * @param validator the validator to validate instances with
+   * @param schema the compiled schema to validate against
+   * @param maxInFlight the maximum number of instances to have requested but
+   * not yet published results for
+   */
+  public ValidationProcessor(Validator validator, CompiledSchema schema, int maxInFlight) {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("maxInFlight must be positive");
+    }
+
+    this.validator = validator;
+    this.schema = schema;
+    this.maxInFlight = maxInFlight;
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super ValidationResult> subscriber) {
+    if (subscribed.compareAndSet(false, true)) {
+      // drain publishes nothing until downstream is set, so results can't
+      // reach the subscriber before onSubscribe returns.
+      subscriber.onSubscribe(new Subscription());
+      downstream = subscriber;
+      drain();
+      return;
+    }
+
+    subscriber.onSubscribe(new Flow.Subscription() {
+      @Override
+      public void request(long n) {
+      }
+
+      @Override
+      public void cancel() {
+      }
+    });
+
+    subscriber.onError(new IllegalStateException("ValidationProcessor supports only one subscriber"));
+  }
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    if (upstream != null) {
+      subscription.cancel();
+      return;
+    }
+
+    upstream = subscription;
+    drain();
+  }
+
+  @Override
+  public void onNext(Json instance) {
+    if (cancelled) {
+      return;
+    }
+
+    Pending validation = new Pending(instance, validator.validateAsync(schema, instance));
+    pending.add(validation);
+    validation.errors.whenComplete((r, e) -> drain());
+
+    // If downstream cancelled in the meantime, drain may already have
+    // discarded the validations pending then, but not this one.
+    if (cancelled) {
+      drain();
+    }
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    upstreamError = throwable;
+    upstreamDone = true;
+    drain();
+  }
+
+  @Override
+  public void onComplete() {
+    upstreamDone = true;
+    drain();
+  }
+
+  private void drain() {
+    if (wip.getAndIncrement() != 0) {
+      return;
+    }
+
+    int missed = 1;
+    do {
+      Flow.Subscriber<? super ValidationResult> subscriber = downstream;
+
+      if (cancelled) {
+        cancelPending();
+      } else if (subscriber != null && !terminated && requestError != null) {
+        terminate(subscriber, requestError);
+      } else if (subscriber != null && !terminated) {
+        Pending head;
+        while (!cancelled && demand.get() > 0 && (head = pending.peek()) != null && head.errors.isDone()) {
+          pending.poll();
+
+          ValidationResult result;
+          try {
+            result = new ValidationResult(head.instance, head.errors.join());
+          } catch (CompletionException e) {
+            terminate(subscriber, e.getCause());
+            break;
+          }
+
+          if (demand.get() != Long.MAX_VALUE) {
+            demand.decrementAndGet();
+          }
+
+          inFlight--;
+          subscriber.onNext(result);
+        }
+
+        if (!cancelled && !terminated && upstreamDone && pending.isEmpty()) {
+          terminated = true;
+          if (upstreamError != null) {
+            subscriber.onError(upstreamError);
+          } else {
+            subscriber.onComplete();
+          }
+        }
+
+        Flow.Subscription subscription = upstream;
+        if (!cancelled && !terminated && !upstreamDone && subscription != null && inFlight < maxInFlight) {
+          int request = maxInFlight - inFlight;
+          inFlight = maxInFlight;
+          subscription.request(request);
+        }
+      }
+
+      missed = wip.addAndGet(-missed);
+    } while (missed != 0);
+  }
+
+  private void terminate(Flow.Subscriber<? super ValidationResult> subscriber, Throwable error) {
+    terminated = true;
+    cancelPending();
+
+    if (upstream != null) {
+      upstream.cancel();
+    }
+
+    subscriber.onError(error);
+  }
+
+  // Cancelling a validation that hasn't started yet keeps it from running.
+  private void cancelPending() {
+    Pending validation;
+    while ((validation = pending.poll()) != null) {
+      validation.errors.cancel(false);
+    }
+  }
+
+  /**
+   * An instance, and the future of its errors.
+   */
+  private static final class Pending {
+    final Json instance;
+    final CompletableFuture<List<ValidationError>> errors;
+
+    Pending(Json instance, CompletableFuture<List<ValidationError>> errors) {
+      this.instance = instance;
+      this.errors = errors;
+    }
+  }
+
+  private class Subscription implements Flow.Subscription {
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        requestError = new IllegalArgumentException("request must be positive");
+        drain();
+        return;
+      }
+
+      demand.accumulateAndGet(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+      drain();
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+
+      Flow.Subscription subscription = upstream;
+      if (subscription != null) {
+        subscription.cancel();
+      }
+
+      drain();
+    }
+  }
+}
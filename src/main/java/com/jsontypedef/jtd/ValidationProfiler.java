@@ -0,0 +1,182 @@
+package com.jsontypedef.jtd;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records where {@code validate} in {@code Validator} spends its time, by
+ * schema path.
+ *
+ * A profiler is registered with {@code setProfiler} in {@code Validator}.
+ * While it is, every part of every instance validated is timed, and counted
+ * against the path of the schema it was validated against. That has a cost,
+ * and so profiling is meant for running a validator against sample instances
+ * to find out which parts of a schema are expensive, not for production. When
+ * no profiler is registered, validation does no work for one at all.
+ *
+ * Time is recorded in a call tree: a schema path is recorded separately for
+ * each chain of schema paths it was reached through. {@code getProfiles}
+ * adds these up by schema path, and {@code writeCollapsedStacks} writes the
+ * tree out for drawing flame graphs.
+ *
+ * Only {@code validate} is profiled, not {@code isValid}. A single profiler
+ * may be used by many threads at once. With {@code parallelThreshold} set,
+ * the parts of an instance validated in parallel count their own time, which
+ * can add up to more than the time their parent took.
+ */
+public class ValidationProfiler {
+  private volatile ProfileFrame root = new ProfileFrame(null);
+
+  /**
+   * Discards everything recorded so far.
+   *
+   * Validations in progress may still record into what was discarded.
+   */
+  public void reset() {
+    root = new ProfileFrame(null);
+  }
+
+  ProfileFrame getRoot() {
+    return root;
+  }
+
+  /**
+   * Gets what was recorded for each schema path, most time-consuming first.
+   *
+   * Schema paths are ordered by the time spent at them alone, not including
+   * the schemas inside them, since that is the time restructuring the schema
+   * at that path can save.
+   *
+   * @return a new list of profiles, one for each schema path validated
+   */
+  public List<SchemaPathProfile> getProfiles() {
+    Map<List<String>, long[]> totals = new LinkedHashMap<>();
+    for (ProfileFrame child : root.children()) {
+      addTotals(child, totals, new HashSet<>());
+    }
+
+    List<SchemaPathProfile> profiles = new ArrayList<>();
+    for (Map.Entry<List<String>, long[]> entry : totals.entrySet()) {
+      long[] total = entry.getValue();
+      profiles.add(new SchemaPathProfile(entry.getKey(), total[0], total[1], total[2], total[3]));
+    }
+
+    profiles.sort(Comparator.comparingLong(SchemaPathProfile::getSelfNanos).reversed());
+    return profiles;
+  }
+
+  // Adds up visits, total time, self time and errors. A frame's total time is
+  // left out if its schema path is already on the stack, since the time of
+  // the frame further up includes it.
+  private static void addTotals(ProfileFrame frame, Map<List<String>, long[]> totals, Set<List<String>> stack) {
+    long nanos = frame.nanos.sum();
+    boolean outermost = stack.add(frame.schemaPath);
+
+    long[] total = totals.computeIfAbsent(frame.schemaPath, k -> new long[4]);
+    total[0] += frame.visits.sum();
+    total[1] += outermost ? nanos : 0;
+    total[2] += selfNanos(frame, nanos);
+    total[3] += frame.errors.sum();
+
+    for (ProfileFrame child : frame.children()) {
+      addTotals(child, totals, stack);
+    }
+
+    if (outermost) {
+      stack.remove(frame.schemaPath);
+    }
+  }
+
+  private static long selfNanos(ProfileFrame frame, long nanos) {
+    for (ProfileFrame child : frame.children()) {
+      nanos -= child.nanos.sum();
+    }
+
+    // Children validated in parallel can take longer, added up, than their
+    // parent did.
+    return Math.max(nanos, 0);
+  }
+
+  /**
+   * Gets a report of what was recorded for each schema path, as a table with
+   * one line per schema path, in the same order as {@code getProfiles}.
+   *
+   * @return the report
+   */
+  public String getReport() {
+    StringBuilder report = new StringBuilder();
+    report.append(String.format(Locale.ROOT, "%12s %12s %12s %10s  %s%n", "self ms", "total ms", "visits", "errors",
+        "schema path"));
+
+    for (SchemaPathProfile profile : getProfiles()) {
+      report.append(String.format(Locale.ROOT, "%12.3f %12.3f %12d %10d  %s%n", profile.getSelfNanos() / 1e6,
+          profile.getTotalNanos() / 1e6, profile.getVisitCount(), profile.getErrorCount(),
+          profile.getSchemaPath()));
+    }
+
+    return report.toString();
+  }
+
+  /**
+   * Writes the call tree in the collapsed stack format read by flame graph
+   * tools, such as FlameGraph's {@code flamegraph.pl} and speedscope.
+   *
+   * Each line is a chain of schema paths, separated by semicolons, followed
+   * by the time spent at the last of them alone, in nanoseconds. Schema paths
+   * are written with their tokens separated by slashes, and the root of the
+   * schema as {@code (root)}. Semicolons in tokens are written as commas.
+   *
+   * @param writer where to write the stacks
+   * @throws IOException if writing fails
+   */
+  public void writeCollapsedStacks(Writer writer) throws IOException {
+    // Different chains are written the same way if their tokens contain
+    // slashes or semicolons. Adding them up first keeps each line unique.
+    Map<String, Long> stacks = new LinkedHashMap<>();
+    for (ProfileFrame child : root.children()) {
+      addStacks(child, new ArrayDeque<>(), stacks);
+    }
+
+    for (Map.Entry<String, Long> stack : stacks.entrySet()) {
+      writer.write(stack.getKey());
+      writer.write(' ');
+      writer.write(Long.toString(stack.getValue()));
+      writer.write('\n');
+    }
+
+    writer.flush();
+  }
+
+  private static void addStacks(ProfileFrame frame, Deque<String> labels, Map<String, Long> stacks) {
+    labels.addLast(label(frame.schemaPath));
+
+    long self = selfNanos(frame, frame.nanos.sum());
+    if (self > 0) {
+      stacks.merge(String.join(";", labels), self, Long::sum);
+    }
+
+    for (ProfileFrame child : frame.children()) {
+      addStacks(child, labels, stacks);
+    }
+
+    labels.removeLast();
+  }
+
+  private static String label(List<String> schemaPath) {
+    if (schemaPath.isEmpty()) {
+      return "(root)";
+    }
+
+    return String.join("/", schemaPath).replace(';', ',');
+  }
+}
@@ -0,0 +1,52 @@
+package com.jsontypedef.jtd;
+
+import java.util.List;
+
+/**
+ * An instance, together with the errors found when validating it.
+ *
+ * {@code ValidationProcessor} publishes these, so that each result can be
+ * matched back up with the instance it is for.
+ */
+public class ValidationResult {
+  private final Json instance;
+  private final List<ValidationError> errors;
+
+  /**
+   * Constructs a result for an instance.
+   *
+   * @param instance the instance that was validated
+   * @param errors the errors found in the instance
+   */
+  public ValidationResult(Json instance, List<ValidationError> errors) {
+    this.instance = instance;
+    this.errors = errors;
+  }
+
+  /**
+   * Gets the instance that was validated.
+   *
+   * @return the instance
+   */
+  public Json getInstance() {
+    return instance;
+  }
+
+  /**
+   * Gets the errors found in the instance.
+   *
+   * @return the validation errors, which is empty if the instance is valid
+   */
+  public List<ValidationError> getErrors() {
+    return errors;
+  }
+
+  /**
+   * Gets whether the instance was valid.
+   *
+   * @return whether there were no validation errors
+   */
+  public boolean isValid() {
+    return errors.isEmpty();
+  }
+}
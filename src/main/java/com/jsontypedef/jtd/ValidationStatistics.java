@@ -0,0 +1,153 @@
+package com.jsontypedef.jtd;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@code ValidationListener} that counts what it is notified of.
+ *
+ * Counters are {@code LongAdder}s, which spread updates from different
+ * threads over separate cells, so that many threads validating at once do not
+ * contend on a single counter. Reading a counter adds up its cells, and so is
+ * comparatively slow; it is meant for periodically exporting metrics, not for
+ * every validation.
+ *
+ * Counts read while validations are in progress are not a consistent
+ * snapshot: for example, an error may be counted before the validation it was
+ * found in is.
+ */
+public class ValidationStatistics implements ValidationListener {
+  private final LongAdder validations = new LongAdder();
+  private final LongAdder invalid = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder refsFollowed = new LongAdder();
+  private final LongAdder maxDepthExceeded = new LongAdder();
+  private final LongAdder maxErrorsReached = new LongAdder();
+  private final LongAdder elapsedNanos = new LongAdder();
+  private final ConcurrentHashMap<List<String>, LongAdder> errorsBySchemaPath = new ConcurrentHashMap<>();
+
+  @Override
+  public void validationFinished(CompiledSchema schema, boolean valid, long elapsedNanos) {
+    validations.increment();
+    this.elapsedNanos.add(elapsedNanos);
+
+    if (!valid) {
+      invalid.increment();
+    }
+  }
+
+  @Override
+  public void errorFound(ValidationError error) {
+    errors.increment();
+
+    // Most errors are at schema paths that have had errors before, which
+    // get can find without locking.
+    LongAdder count = errorsBySchemaPath.get(error.getSchemaPath());
+    if (count == null) {
+      count = errorsBySchemaPath.computeIfAbsent(error.getSchemaPath(), k -> new LongAdder());
+    }
+
+    count.increment();
+  }
+
+  @Override
+  public void refFollowed(String ref) {
+    refsFollowed.increment();
+  }
+
+  @Override
+  public void maxDepthExceeded() {
+    maxDepthExceeded.increment();
+  }
+
+  @Override
+  public void maxErrorsReached() {
+    maxErrorsReached.increment();
+  }
+
+  /**
+   * Gets the number of instances validated.
+   *
+   * @return the number of validations that have finished
+   */
+  public long getValidationCount() {
+    return validations.sum();
+  }
+
+  /**
+   * Gets the number of instances that were not valid, or whose validation
+   * raised an exception.
+   *
+   * @return the number of validations that have finished without succeeding
+   */
+  public long getInvalidCount() {
+    return invalid.sum();
+  }
+
+  /**
+   * Gets the number of errors returned by {@code validate}.
+   *
+   * @return the number of errors found
+   */
+  public long getErrorCount() {
+    return errors.sum();
+  }
+
+  /**
+   * Gets the number of errors returned by {@code validate}, grouped by their
+   * schema path.
+   *
+   * @return a new map from schema paths to the number of errors at them
+   */
+  public Map<List<String>, Long> getErrorCountsBySchemaPath() {
+    Map<List<String>, Long> counts = new HashMap<>();
+    for (Map.Entry<List<String>, LongAdder> entry : errorsBySchemaPath.entrySet()) {
+      counts.put(entry.getKey(), entry.getValue().sum());
+    }
+
+    return Collections.unmodifiableMap(counts);
+  }
+
+  /**
+   * Gets the number of times validation followed a {@code ref}.
+   *
+   * @return the number of refs followed
+   */
+  public long getRefsFollowed() {
+    return refsFollowed.sum();
+  }
+
+  /**
+   * Gets the number of validations that raised
+   * {@code MaxDepthExceededException}.
+   *
+   * @return the number of times the max depth was exceeded
+   */
+  public long getMaxDepthExceededCount() {
+    return maxDepthExceeded.sum();
+  }
+
+  /**
+   * Gets the number of validations that stopped early because they found
+   * {@code maxErrors} errors.
+   *
+   * @return the number of times the max errors was reached
+   */
+  public long getMaxErrorsReachedCount() {
+    return maxErrorsReached.sum();
+  }
+
+  /**
+   * Gets the total time spent validating, across all threads.
+   *
+   * @return the sum of the durations of all finished validations, in
+   * nanoseconds
+   */
+  public long getElapsedNanos() {
+    return elapsedNanos.sum();
+  }
+}
@@ -1,10 +1,22 @@
 package com.jsontypedef.jtd;
 
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
+import java.io.EOFException;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Validates schemas against instances, returning a list of validation errors.
@@ -12,6 +24,20 @@ import java.util.Map;
 public class Validator {
   private int maxDepth;
   private int maxErrors;
+  private int maxBufferSize;
+  private int parallelThreshold;
+  private ForkJoinPool forkJoinPool;
+  private Executor executor;
+  private Executor asyncExecutor;
+  private int maxConcurrency;
+  private ConcurrencyLimiter limiter;
+  private ValidationListener listener;
+  private ValidationProfiler profiler;
+  private int compileThreshold;
+
+  // validateAll hands instances to its executor in chunks of this many, so
+  // that the cost of scheduling a task is spread over many small instances.
+  private static final int BATCH_CHUNK_SIZE = 256;
 
   /**
    * Get the maximum number of references {@code validate} will follow before
@@ -51,6 +77,242 @@ public class Validator {
     this.maxErrors = maxErrors;
   }
 
+  /**
+   * Get the maximum amount of input streaming {@code validate} may buffer
+   * before raising {@code MaxBufferExceededException}.
+   *
+   * @return the max buffer size during streaming {@code validate}
+   */
+  public int getMaxBufferSize() {
+    return maxBufferSize;
+  }
+
+  /**
+   * Set the maximum amount of input streaming {@code validate} may buffer
+   * before raising {@code MaxBufferExceededException}.
+   *
+   * Streaming validation only buffers input when an object validated against
+   * a discriminator has other members before its tag. Those members are held
+   * in memory until the tag is found. The size of what is buffered is
+   * measured approximately in characters of input. The default, zero, means
+   * there is no limit.
+   *
+   * @param maxBufferSize the max buffer size during streaming {@code validate}
+   */
+  public void setMaxBufferSize(int maxBufferSize) {
+    this.maxBufferSize = maxBufferSize;
+  }
+
+  /**
+   * Get the smallest number of elements {@code validate} and {@code isValid}
+   * will validate in a single parallel task.
+   *
+   * @return the parallel threshold, or zero if parallel validation is disabled
+   */
+  public int getParallelThreshold() {
+    return parallelThreshold;
+  }
+
+  /**
+   * Set the smallest number of elements {@code validate} and {@code isValid}
+   * will validate in a single parallel task.
+   *
+   * When this is non-zero, arrays validated against an elements schema and
+   * objects validated against a values schema with at least twice this many
+   * elements are split into chunks of at least this many elements, which are
+   * validated in parallel on the configured {@code ForkJoinPool}. The result
+   * is exactly what validating them sequentially would return, including the
+   * order of errors and which errors are kept under {@code maxErrors}.
+   *
+   * The default, zero, disables parallel validation. Parallel validation only
+   * applies to {@code Json} instances; a {@code JsonStream} can only be read
+   * in order.
+   *
+   * @param parallelThreshold the parallel threshold, or zero to disable
+   * parallel validation
+   */
+  public void setParallelThreshold(int parallelThreshold) {
+    this.parallelThreshold = parallelThreshold;
+  }
+
+  /**
+   * Get the pool parallel validation runs on.
+   *
+   * @return the pool for parallel validation, or null if validation uses the
+   * common pool
+   */
+  public ForkJoinPool getForkJoinPool() {
+    return forkJoinPool;
+  }
+
+  /**
+   * Set the pool parallel validation runs on. The default, null, means
+   * {@code ForkJoinPool.commonPool()}.
+   *
+   * This has no effect unless {@code setParallelThreshold} is used to enable
+   * parallel validation.
+   *
+   * @param forkJoinPool the pool for parallel validation, or null to use the
+   * common pool
+   */
+  public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+    this.forkJoinPool = forkJoinPool;
+  }
+
+  /**
+   * Get the executor {@code validateAll} runs on.
+   *
+   * @return the executor for {@code validateAll}, or null if it uses the
+   * common pool
+   */
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Set the executor {@code validateAll} runs on. The default, null, means
+   * {@code ForkJoinPool.commonPool()}.
+   *
+   * @param executor the executor for {@code validateAll}, or null to use the
+   * common pool
+   */
+  public void setExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Get the executor {@code validateAsync} runs on.
+   *
+   * @return the executor for {@code validateAsync}, or null if it uses the
+   * default
+   */
+  public Executor getAsyncExecutor() {
+    return asyncExecutor;
+  }
+
+  /**
+   * Set the executor {@code validateAsync} runs on.
+   *
+   * The default, null, means a new virtual thread for each validation on Java
+   * versions that support virtual threads, and
+   * {@code ForkJoinPool.commonPool()} otherwise.
+   *
+   * @param asyncExecutor the executor for {@code validateAsync}, or null to
+   * use the default
+   */
+  public void setAsyncExecutor(Executor asyncExecutor) {
+    this.asyncExecutor = asyncExecutor;
+  }
+
+  /**
+   * Get the maximum number of validations {@code validateAsync} will run at
+   * once.
+   *
+   * @return the max concurrency of {@code validateAsync}, or zero if there is
+   * no limit
+   */
+  public int getMaxConcurrency() {
+    return maxConcurrency;
+  }
+
+  /**
+   * Set the maximum number of validations {@code validateAsync} will run at
+   * once.
+   *
+   * Validations beyond this limit wait, in the order they were requested,
+   * until an earlier one finishes. They do not occupy a thread of the
+   * executor while waiting. The default, zero, means there is no limit.
+   *
+   * @param maxConcurrency the max concurrency of {@code validateAsync}, or
+   * zero for no limit
+   */
+  public void setMaxConcurrency(int maxConcurrency) {
+    this.maxConcurrency = maxConcurrency;
+    this.limiter = maxConcurrency == 0 ? null : new ConcurrencyLimiter(maxConcurrency);
+  }
+
+  /**
+   * Get the listener notified of what validation does.
+   *
+   * @return the listener, or null if there is none
+   */
+  public ValidationListener getListener() {
+    return listener;
+  }
+
+  /**
+   * Set the listener notified of what validation does.
+   *
+   * The default, null, means there is no listener. Validation does no extra
+   * work at all in that case.
+   *
+   * @param listener the listener, or null for none
+   */
+  public void setListener(ValidationListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Get the profiler recording where validation spends its time.
+   *
+   * @return the profiler, or null if there is none
+   */
+  public ValidationProfiler getProfiler() {
+    return profiler;
+  }
+
+  /**
+   * Set the profiler recording where validation spends its time.
+   *
+   * The default, null, means there is no profiler. Profiling times every part
+   * of every instance validated, and so is meant for finding out which parts
+   * of a schema are expensive, rather than for use in production.
+   *
+   * @param profiler the profiler, or null for none
+   */
+  public void setProfiler(ValidationProfiler profiler) {
+    this.profiler = profiler;
+  }
+
+  /**
+   * Get the number of times {@code validate} is called with a schema before
+   * it generates a class for that schema.
+   *
+   * @return the compile threshold, or zero if classes are never generated
+   */
+  public int getCompileThreshold() {
+    return compileThreshold;
+  }
+
+  /**
+   * Set the number of times {@code validate} is called with a schema before
+   * it generates a class for that schema.
+   *
+   * When this is non-zero, a schema that {@code validate} or
+   * {@code validateAll} has been called with this many times gets a generated
+   * class, which the JIT can compile much like hand-written validation code.
+   * The class covers the parts of the schema that are otherwise looked up as
+   * they are validated: properties, enums, the mappings of discriminators,
+   * and the bounds of integer types. Later validations against the schema,
+   * by any {@code Validator} with a compile threshold, use the class. It
+   * returns exactly the same errors as validating without it.
+   *
+   * Validations are counted on the {@code CompiledSchema}, and approximately
+   * when several threads validate against it at once. Schemas too large to
+   * generate a class for, and Java versions before 15, which lack the hidden
+   * classes generated classes are defined as, go on being interpreted. So do
+   * validations with a profiler, and validations of streams or with
+   * {@code isValid}.
+   *
+   * The default, zero, never generates classes.
+   *
+   * @param compileThreshold the compile threshold, or zero to never generate
+   * classes
+   */
+  public void setCompileThreshold(int compileThreshold) {
+    this.compileThreshold = compileThreshold;
+  }
+
   /**
    * Validate {@code schema} against {@code instance}, returning a list of
    * {@code ValidationError}.
@@ -62,6 +324,12 @@ public class Validator {
    * number of references. For schemas with cyclic references, this may result
    * in a stack overflow.
    *
+   * This method compiles {@code schema} each time it is called, so changes
+   * made to it between calls are always seen. To validate many instances
+   * against the same schema, compile it once with
+   * {@code CompiledSchema.compile}, and use the overload that accepts a
+   * {@code CompiledSchema}.
+   *
    * @param schema the schema to validate against
    * @param instance the JSON data to validate
    * @return a list of validation errors
@@ -69,178 +337,768 @@ public class Validator {
    * exceeds the configured maximum depth
    */
   public List<ValidationError> validate(Schema schema, Json instance) throws MaxDepthExceededException {
-    ValidationState state = new ValidationState();
-    state.errors = new ArrayList<>();
-    state.instanceTokens = new ArrayList<>();
-    state.schemaTokens = new ArrayList<>();
-    state.schemaTokens.add(new ArrayList<>());
-    state.root = schema;
-    state.maxErrors = maxErrors;
+    return validate(CompiledSchema.build(schema), instance);
+  }
+
+  /**
+   * Validate {@code schema} against {@code instance}, returning a list of
+   * {@code ValidationError}.
+   *
+   * This method returns exactly the same errors as {@code validate} does for
+   * the {@code Schema} that {@code schema} was compiled from. Prefer this
+   * method when validating many instances against the same schema.
+   *
+   * @param schema the compiled schema to validate against
+   * @param instance the JSON data to validate
+   * @return a list of validation errors
+   * @throws MaxDepthExceededException if the number of references followed
+   * exceeds the configured maximum depth
+   */
+  public List<ValidationError> validate(CompiledSchema schema, Json instance) throws MaxDepthExceededException {
+    ValidationState state = newState();
+    Observation observation = observe(schema, "validate", instance);
+
+    if (compileThreshold != 0) {
+      schema.countValidation(compileThreshold);
+    }
 
     try {
-      validate(state, schema, instance, null);
+      validate(state, schema.getRoot(), instance, null);
     } catch (MaxErrorsReachedException e) {
       // Nothing to be done here. This is not an actual error condition, just a
       // circuit-breaker.
+      if (observation != null) {
+        observation.maxErrorsReached();
+      }
+    } catch (MaxDepthExceededException | RuntimeException e) {
+      if (observation != null) {
+        observation.failed(e);
+      }
+
+      throw e;
+    }
+
+    if (observation != null) {
+      observation.finished(state.errors);
     }
 
     return state.errors;
   }
 
-  private void validate(ValidationState state, Schema schema, Json instance, String parentTag)
-      throws MaxDepthExceededException, MaxErrorsReachedException {
-    if (schema.isNullable() && instance.isNull()) {
-      return;
-    }
-
-    switch (schema.getForm()) {
-      case EMPTY:
-        break;
-      case REF:
-        if (state.schemaTokens.size() == maxDepth) {
-          throw new MaxDepthExceededException();
-        }
+  /**
+   * Validate {@code schema} against the next value in {@code instance},
+   * returning a list of {@code ValidationError}.
+   *
+   * Unlike the other {@code validate} methods, this method reads the instance
+   * one token at a time, and only keeps as much of it in memory as its nesting
+   * requires. The exception is the discriminator form: when an object
+   * validated against a discriminator has other members before its tag, those
+   * members are buffered until the tag is found. To limit how much is
+   * buffered, use {@code setMaxBufferSize}.
+   *
+   * This method returns the same errors as validating the equivalent
+   * {@code Json} would, but not necessarily in the same order. Errors are
+   * returned in the order the instance is read, and missing required
+   * properties are returned after the rest of their object.
+   *
+   * When {@code maxErrors} errors have been found, this method returns
+   * without reading the rest of the value.
+   *
+   * This method compiles {@code schema} each time it is called, so changes
+   * made to it between calls are always seen. To validate many instances
+   * against the same schema, compile it once with
+   * {@code CompiledSchema.compile}, and use the overload that accepts a
+   * {@code CompiledSchema}.
+   *
+   * @param schema the schema to validate against
+   * @param instance the JSON data to validate
+   * @return a list of validation errors
+   * @throws MaxDepthExceededException if the number of references followed
+   * exceeds the configured maximum depth
+   * @throws IOException if the instance cannot be read, or is not well-formed
+   * JSON, or if validating it would buffer more than the configured maximum
+   * buffer size
+   */
+  public List<ValidationError> validate(Schema schema, JsonStream instance)
+      throws MaxDepthExceededException, IOException {
+    return validate(CompiledSchema.build(schema), instance);
+  }
 
-        state.schemaTokens.add(new ArrayList<>());
-        state.pushSchemaToken("definitions");
-        state.pushSchemaToken(schema.getRef());
+  /**
+   * Validate {@code schema} against the next value in {@code instance},
+   * returning a list of {@code ValidationError}.
+   *
+   * This method behaves like the overload that accepts a {@code Schema}, but
+   * with a schema compiled ahead of time.
+   *
+   * @param schema the compiled schema to validate against
+   * @param instance the JSON data to validate
+   * @return a list of validation errors
+   * @throws MaxDepthExceededException if the number of references followed
+   * exceeds the configured maximum depth
+   * @throws IOException if the instance cannot be read, or is not well-formed
+   * JSON, or if validating it would buffer more than the configured maximum
+   * buffer size
+   */
+  public List<ValidationError> validate(CompiledSchema schema, JsonStream instance)
+      throws MaxDepthExceededException, IOException {
+    ValidationState state = newState();
+    Observation observation = observe(schema, "validate", null);
 
-        validate(state, state.root.getDefinitions().get(schema.getRef()), instance, null);
+    try {
+      validate(state, schema.getRoot(), instance, next(instance), null);
+    } catch (MaxErrorsReachedException e) {
+      // Nothing to be done here. This is not an actual error condition, just a
+      // circuit-breaker.
+      if (observation != null) {
+        observation.maxErrorsReached();
+      }
+    } catch (MaxDepthExceededException | IOException | RuntimeException e) {
+      if (observation != null) {
+        observation.failed(e);
+      }
 
-        state.schemaTokens.remove(state.schemaTokens.size() - 1);
-        break;
-      case TYPE:
-        state.pushSchemaToken("type");
-        switch (schema.getType()) {
-          case BOOLEAN:
-            if (!instance.isBoolean()) {
-              state.pushError();
-            }
-            break;
-          case FLOAT32:
-          case FLOAT64:
-            if (!instance.isNumber()) {
-              state.pushError();
-            }
-            break;
-          case INT8:
-            checkInt(state, instance, -128, 127);
-            break;
-          case UINT8:
-            checkInt(state, instance, 0, 255);
-            break;
-          case INT16:
-            checkInt(state, instance, -32768, 32767);
-            break;
-          case UINT16:
-            checkInt(state, instance, 0, 65535);
-            break;
-          case INT32:
-            checkInt(state, instance, -2147483648, 2147483647);
-            break;
-          case UINT32:
-            checkInt(state, instance, 0, 4294967295L);
-            break;
-          case STRING:
-            if (!instance.isString()) {
-              state.pushError();
-            }
-            break;
-          case TIMESTAMP:
-            if (!instance.isString()) {
-              state.pushError();
-            } else {
-              // The instance is a JSON string. Let's verify it's a
-              // well-formatted RFC3339 timestamp.
-              try {
-                DateTimeFormatter.ISO_ZONED_DATE_TIME.parse(instance.asString());
-              } catch (DateTimeParseException e) {
-                state.pushError();
-              }
-            }
-            break;
-        }
-        state.popSchemaToken();
-        break;
-      case ENUM:
-        state.pushSchemaToken("enum");
+      throw e;
+    }
 
-        if (!instance.isString()) {
-          state.pushError();
-        } else {
-          if (!schema.getEnum().contains(instance.asString())) {
-            state.pushError();
-          }
-        }
+    if (observation != null) {
+      observation.finished(state.errors);
+    }
 
-        state.popSchemaToken();
-        break;
-      case ELEMENTS:
-        state.pushSchemaToken("elements");
+    return state.errors;
+  }
 
-        if (!instance.isArray()) {
-          state.pushError();
-        } else {
-          int index = 0;
-          for (Json subInstance : instance.asArray()) {
-            state.pushInstanceToken(Integer.toString(index));
-            validate(state, schema.getElements(), subInstance, null);
-            state.popInstanceToken();
+  /**
+   * Returns whether {@code instance} satisfies {@code schema}.
+   *
+   * This method is equivalent to checking whether {@code validate} returns an
+   * empty list, but is faster: it returns as soon as it finds a problem with
+   * {@code instance}, and does not keep track of where in the schema or
+   * instance it is. The {@code maxErrors} setting does not apply to this
+   * method.
+   *
+   * Because this method stops at the first problem, it may return false for
+   * an instance where {@code validate} would go on to raise
+   * {@code MaxDepthExceededException}.
+   *
+   * Like {@code validate}, this method compiles {@code schema} each time it
+   * is called; use the overload that accepts a {@code CompiledSchema} to
+   * compile it only once.
+   *
+   * @param schema the schema to validate against
+   * @param instance the JSON data to validate
+   * @return whether the instance is valid
+   * @throws MaxDepthExceededException if the number of references followed
+   * exceeds the configured maximum depth
+   */
+  public boolean isValid(Schema schema, Json instance) throws MaxDepthExceededException {
+    return isValid(CompiledSchema.build(schema), instance);
+  }
 
-            index += 1;
-          }
-        }
+  /**
+   * Returns whether {@code instance} satisfies {@code schema}.
+   *
+   * This method behaves like the overload that accepts a {@code Schema}, but
+   * with a schema compiled ahead of time.
+   *
+   * @param schema the compiled schema to validate against
+   * @param instance the JSON data to validate
+   * @return whether the instance is valid
+   * @throws MaxDepthExceededException if the number of references followed
+   * exceeds the configured maximum depth
+   */
+  public boolean isValid(CompiledSchema schema, Json instance) throws MaxDepthExceededException {
+    Observation observation = observe(schema, "isValid", instance);
+    if (observation == null) {
+      return isValid(schema.getRoot(), instance, null, 1);
+    }
 
-        state.popSchemaToken();
-        break;
-      case PROPERTIES:
-        if (instance.isObject()) {
-          if (schema.getProperties() != null) {
-            state.pushSchemaToken("properties");
-            for (Map.Entry<String, Schema> entry : schema.getProperties().entrySet()) {
-              state.pushSchemaToken(entry.getKey());
-              if (instance.asObject().containsKey(entry.getKey())) {
-                state.pushInstanceToken(entry.getKey());
-                validate(state, entry.getValue(), instance.asObject().get(entry.getKey()), null);
-                state.popInstanceToken();
-              } else {
-                state.pushError();
-              }
-              state.popSchemaToken();
-            }
-            state.popSchemaToken();
-          }
+    boolean valid;
+    try {
+      valid = isValid(schema.getRoot(), instance, null, 1);
+    } catch (MaxDepthExceededException | RuntimeException e) {
+      observation.failed(e);
+      throw e;
+    }
 
-          if (schema.getOptionalProperties() != null) {
-            state.pushSchemaToken("optionalProperties");
-            for (Map.Entry<String, Schema> entry : schema.getOptionalProperties().entrySet()) {
-              state.pushSchemaToken(entry.getKey());
-              if (instance.asObject().containsKey(entry.getKey())) {
-                state.pushInstanceToken(entry.getKey());
-                validate(state, entry.getValue(), instance.asObject().get(entry.getKey()), null);
-                state.popInstanceToken();
-              }
-              state.popSchemaToken();
-            }
-            state.popSchemaToken();
-          }
+    observation.finished(valid);
+    return valid;
+  }
 
-          if (schema.getAdditionalProperties() == null || !schema.getAdditionalProperties()) {
-            for (String key : instance.asObject().keySet()) {
-              boolean inProperties = schema.getProperties() != null && schema.getProperties().containsKey(key);
-              boolean inOptionalProperties = schema.getOptionalProperties() != null
-                  && schema.getOptionalProperties().containsKey(key);
-              boolean discriminatorTagException = key.equals(parentTag);
+  /**
+   * Returns whether the next value in {@code instance} satisfies
+   * {@code schema}.
+   *
+   * This method reads {@code instance} the same way {@code validate} does, but
+   * returns as soon as it finds a problem. In that case, {@code instance} is
+   * left partway through the value.
+   *
+   * Like {@code validate}, this method compiles {@code schema} each time it
+   * is called; use the overload that accepts a {@code CompiledSchema} to
+   * compile it only once.
+   *
+   * @param schema the schema to validate against
+   * @param instance the JSON data to validate
+   * @return whether the instance is valid
+   * @throws MaxDepthExceededException if the number of references followed
+   * exceeds the configured maximum depth
+   * @throws IOException if the instance cannot be read, or is not well-formed
+   * JSON, or if validating it would buffer more than the configured maximum
+   * buffer size
+   */
+  public boolean isValid(Schema schema, JsonStream instance) throws MaxDepthExceededException, IOException {
+    return isValid(CompiledSchema.build(schema), instance);
+  }
 
-              if (!inProperties && !inOptionalProperties && !discriminatorTagException) {
-                state.pushInstanceToken(key);
-                state.pushError();
-                state.popInstanceToken();
+  /**
+   * Returns whether the next value in {@code instance} satisfies
+   * {@code schema}.
+   *
+   * This method behaves like the overload that accepts a {@code Schema}, but
+   * with a schema compiled ahead of time.
+   *
+   * @param schema the compiled schema to validate against
+   * @param instance the JSON data to validate
+   * @return whether the instance is valid
+   * @throws MaxDepthExceededException if the number of references followed
+   * exceeds the configured maximum depth
+   * @throws IOException if the instance cannot be read, or is not well-formed
+   * JSON, or if validating it would buffer more than the configured maximum
+   * buffer size
+   */
+  public boolean isValid(CompiledSchema schema, JsonStream instance) throws MaxDepthExceededException, IOException {
+    Observation observation = observe(schema, "isValid", null);
+    if (observation == null) {
+      return isValid(schema.getRoot(), instance, next(instance), null, 1);
+    }
+
+    boolean valid;
+    try {
+      valid = isValid(schema.getRoot(), instance, next(instance), null, 1);
+    } catch (MaxDepthExceededException | IOException | RuntimeException e) {
+      observation.failed(e);
+      throw e;
+    }
+
+    observation.finished(valid);
+    return valid;
+  }
+
+  /**
+   * Validate {@code schema} against each of {@code instances}, returning the
+   * errors for each of them.
+   *
+   * The schema is compiled once, and the instances are validated in parallel
+   * on the configured executor. The {@code maxDepth} and {@code maxErrors}
+   * settings apply to each instance separately. To validate a
+   * {@code java.util.stream.Stream} of instances, pass
+   * {@code stream::iterator}.
+   *
+   * @param schema the schema to validate against
+   * @param instances the JSON data to validate
+   * @return the validation errors for each instance
+   * @throws MaxDepthExceededException if the number of references followed
+   * for any instance exceeds the configured maximum depth
+   */
+  public BatchResult validateAll(Schema schema, Iterable<? extends Json> instances) throws MaxDepthExceededException {
+    return validateAll(CompiledSchema.build(schema), instances);
+  }
+
+  /**
+   * Validate {@code schema} against each of {@code instances}, returning the
+   * errors for each of them.
+   *
+   * This method behaves like the overload that accepts a {@code Schema}, but
+   * with a schema compiled ahead of time.
+   *
+   * @param schema the compiled schema to validate against
+   * @param instances the JSON data to validate
+   * @return the validation errors for each instance
+   * @throws MaxDepthExceededException if the number of references followed
+   * for any instance exceeds the configured maximum depth
+   */
+  public BatchResult validateAll(CompiledSchema schema, Iterable<? extends Json> instances)
+      throws MaxDepthExceededException {
+    Executor executor = this.executor == null ? ForkJoinPool.commonPool() : this.executor;
+
+    // Chunks are submitted as soon as they are full, so that validation
+    // overlaps with iterating over the rest of the instances. Once a chunk
+    // fails, the batch fails with it, so the other chunks stop early and no
+    // more are submitted.
+    AtomicBoolean failed = new AtomicBoolean();
+    List<CompletableFuture<List<ValidationError>[]>> chunks = new ArrayList<>();
+    Json[] chunk = new Json[BATCH_CHUNK_SIZE];
+    int chunkSize = 0;
+    int size = 0;
+    for (Json instance : instances) {
+      if (failed.get()) {
+        break;
+      }
+
+      chunk[chunkSize++] = instance;
+      size++;
+
+      if (chunkSize == BATCH_CHUNK_SIZE) {
+        chunks.add(validateChunk(schema, chunk, chunkSize, failed, executor));
+        chunk = new Json[BATCH_CHUNK_SIZE];
+        chunkSize = 0;
+      }
+    }
+
+    if (chunkSize != 0 && !failed.get()) {
+      chunks.add(validateChunk(schema, chunk, chunkSize, failed, executor));
+    }
+
+    @SuppressWarnings("unchecked")
+    List<ValidationError>[] errors = (List<ValidationError>[]) new List<?>[size];
+    BitSet invalid = new BitSet(size);
+    int index = 0;
+    for (CompletableFuture<List<ValidationError>[]> future : chunks) {
+      List<ValidationError>[] chunkErrors;
+      try {
+        chunkErrors = future.join();
+      } catch (CompletionException e) {
+        failed.set(true);
+        for (CompletableFuture<List<ValidationError>[]> other : chunks) {
+          other.cancel(false);
+        }
+
+        if (e.getCause() instanceof MaxDepthExceededException) {
+          throw (MaxDepthExceededException) e.getCause();
+        }
+
+        throw e;
+      }
+
+      if (chunkErrors == null) {
+        // This chunk stopped because a later one failed, which is thrown once
+        // it is reached.
+        continue;
+      }
+
+      for (List<ValidationError> instanceErrors : chunkErrors) {
+        if (!instanceErrors.isEmpty()) {
+          invalid.set(index);
+        }
+
+        errors[index++] = instanceErrors;
+      }
+    }
+
+    return new BatchResult(errors, invalid);
+  }
+
+  private CompletableFuture<List<ValidationError>[]> validateChunk(CompiledSchema schema, Json[] chunk, int size,
+      AtomicBoolean failed, Executor executor) {
+    return CompletableFuture.supplyAsync(() -> {
+      // One state serves the whole chunk. Its path stacks are reused as is,
+      // and its error list is only replaced once an instance has errors.
+      ValidationState state = newState();
+
+      @SuppressWarnings("unchecked")
+      List<ValidationError>[] errors = (List<ValidationError>[]) new List<?>[size];
+      for (int i = 0; i < size; i++) {
+        if (failed.get()) {
+          // Another chunk has failed, so these results will never be read.
+          return null;
+        }
+
+        Observation observation = observe(schema, "validateAll", chunk[i]);
+
+        try {
+          if (compileThreshold != 0) {
+            schema.countValidation(compileThreshold);
+          }
+
+          validate(state, schema.getRoot(), chunk[i], null);
+        } catch (MaxErrorsReachedException e) {
+          state.reset();
+
+          if (observation != null) {
+            observation.maxErrorsReached();
+          }
+        } catch (MaxDepthExceededException e) {
+          failed.set(true);
+          if (observation != null) {
+            observation.failed(e);
+          }
+
+          throw new CompletionException(e);
+        } catch (RuntimeException e) {
+          failed.set(true);
+          if (observation != null) {
+            observation.failed(e);
+          }
+
+          throw e;
+        }
+
+        if (observation != null) {
+          observation.finished(state.errors);
+        }
+
+        if (state.errors.isEmpty()) {
+          errors[i] = Collections.emptyList();
+        } else {
+          errors[i] = state.errors;
+          state.errors = new ArrayList<>();
+        }
+      }
+
+      return errors;
+    }, executor);
+  }
+
+  /**
+   * Validate {@code schema} against {@code instance} in the background,
+   * returning a future list of {@code ValidationError}.
+   *
+   * The validation runs on the configured async executor, subject to the
+   * configured max concurrency. It behaves exactly like {@code validate}. If
+   * {@code validate} would raise {@code MaxDepthExceededException}, the
+   * returned future is completed exceptionally with it instead. Cancelling
+   * the returned future before the validation starts keeps it from running.
+   *
+   * @param schema the schema to validate against
+   * @param instance the JSON data to validate
+   * @return a future list of validation errors
+   */
+  public CompletableFuture<List<ValidationError>> validateAsync(Schema schema, Json instance) {
+    return validateAsync(() -> validate(schema, instance));
+  }
+
+  /**
+   * Validate {@code schema} against {@code instance} in the background,
+   * returning a future list of {@code ValidationError}.
+   *
+   * This method behaves like the overload that accepts a {@code Schema}, but
+   * with a schema compiled ahead of time.
+   *
+   * @param schema the compiled schema to validate against
+   * @param instance the JSON data to validate
+   * @return a future list of validation errors
+   */
+  public CompletableFuture<List<ValidationError>> validateAsync(CompiledSchema schema, Json instance) {
+    return validateAsync(() -> validate(schema, instance));
+  }
+
+  private interface Validation {
+    List<ValidationError> run() throws MaxDepthExceededException;
+  }
+
+  private CompletableFuture<List<ValidationError>> validateAsync(Validation validation) {
+    CompletableFuture<List<ValidationError>> future = new CompletableFuture<>();
+    Runnable task = () -> {
+      // A validation cancelled before it starts is skipped.
+      if (future.isDone()) {
+        return;
+      }
+
+      try {
+        future.complete(validation.run());
+      } catch (MaxDepthExceededException | RuntimeException | Error e) {
+        future.completeExceptionally(e);
+      }
+    };
+
+    Executor executor = asyncExecutor == null ? DefaultAsyncExecutor.INSTANCE : asyncExecutor;
+    ConcurrencyLimiter limiter = this.limiter;
+    if (limiter != null) {
+      limiter.execute(executor, task, future);
+    } else {
+      try {
+        executor.execute(task);
+      } catch (RuntimeException e) {
+        future.completeExceptionally(e);
+      }
+    }
+
+    return future;
+  }
+
+  /**
+   * Holds the default executor for {@code validateAsync}, which is only
+   * created if it is used.
+   */
+  private static class DefaultAsyncExecutor {
+    static final Executor INSTANCE = create();
+
+    // jtd does not require a Java version with virtual threads, so they are
+    // looked up reflectively.
+    private static Executor create() {
+      try {
+        return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      } catch (ReflectiveOperationException e) {
+        return ForkJoinPool.commonPool();
+      }
+    }
+  }
+
+  private ValidationState newState() {
+    ValidationState state = new ValidationState();
+    state.errors = new ArrayList<>();
+    state.maxDepth = maxDepth;
+    state.maxErrors = maxErrors;
+    state.listener = listener;
+    state.recordRefs = FlightRecorderSupport.refValidationEventEnabled();
+    state.frame = profiler == null ? null : profiler.getRoot();
+    return state;
+  }
+
+  /**
+   * Starts observing the validation of an instance, on behalf of the listener
+   * and Flight Recorder. Returns null if neither of them is interested, which
+   * is the common case, and costs only a few checks.
+   *
+   * {@code instance} is null for streams, whose size is not known in advance.
+   */
+  private Observation observe(CompiledSchema schema, String method, Json instance) {
+    ValidationListener listener = this.listener;
+    boolean recording = FlightRecorderSupport.validationEventEnabled();
+    if (listener == null && !recording) {
+      return null;
+    }
+
+    return new Observation(listener, schema, recording ? newEvent(schema, method, instance) : null);
+  }
+
+  private static ValidationEvent newEvent(CompiledSchema schema, String method, Json instance) {
+    ValidationEvent event = new ValidationEvent();
+    event.schema = schema.getFingerprint();
+    event.method = method;
+    event.streaming = instance == null;
+
+    if (instance == null) {
+      event.instanceSize = -1;
+    } else if (instance.isArray() || instance.isObject()) {
+      event.instanceSize = instance.size();
+    }
+
+    return event;
+  }
+
+  /**
+   * The listener and Flight Recorder event, either of which may be null, for
+   * a single validation.
+   */
+  private static final class Observation {
+    private final ValidationListener listener;
+    private final CompiledSchema schema;
+    private final ValidationEvent event;
+    private final long start;
+
+    Observation(ValidationListener listener, CompiledSchema schema, ValidationEvent event) {
+      this.listener = listener;
+      this.schema = schema;
+      this.event = event;
+
+      if (listener != null) {
+        listener.validationStarted(schema);
+      }
+
+      if (event != null) {
+        event.begin();
+      }
+
+      this.start = System.nanoTime();
+    }
+
+    void maxErrorsReached() {
+      if (listener != null) {
+        listener.maxErrorsReached();
+      }
+
+      if (event != null) {
+        event.maxErrorsReached = true;
+      }
+    }
+
+    void finished(List<ValidationError> errors) {
+      long elapsed = System.nanoTime() - start;
+
+      if (listener != null) {
+        for (ValidationError error : errors) {
+          listener.errorFound(error);
+        }
+      }
+
+      if (event != null) {
+        event.errorCount = errors.size();
+      }
+
+      finished(errors.isEmpty(), elapsed);
+    }
+
+    void finished(boolean valid) {
+      finished(valid, System.nanoTime() - start);
+    }
+
+    void failed(Exception e) {
+      long elapsed = System.nanoTime() - start;
+
+      if (e instanceof MaxDepthExceededException) {
+        if (listener != null) {
+          listener.maxDepthExceeded();
+        }
+
+        if (event != null) {
+          event.maxDepthExceeded = true;
+        }
+      }
+
+      finished(false, elapsed);
+    }
+
+    private void finished(boolean valid, long elapsed) {
+      if (listener != null) {
+        listener.validationFinished(schema, valid, elapsed);
+      }
+
+      if (event != null) {
+        event.valid = valid;
+        event.commit();
+      }
+    }
+  }
+
+  /**
+   * A class generated by {@code ClassGenerator}, which validates instances
+   * against some of the nodes of one schema.
+   */
+  interface GeneratedValidator {
+    void validate(Validator validator, ValidationState state, int node, Json instance)
+        throws MaxDepthExceededException, MaxErrorsReachedException;
+  }
+
+  // Every schema node is validated through here, so that a profiler can time
+  // each of them, and so that nodes with a generated method use it. Without a
+  // profiler or a compile threshold, this is two checks.
+  void validate(ValidationState state, SchemaNode schema, Json instance, String parentTag)
+      throws MaxDepthExceededException, MaxErrorsReachedException {
+    if (state.frame == null) {
+      GeneratedValidator generated = compileThreshold == 0 ? null : schema.generated;
+      if (generated != null) {
+        generated.validate(this, state, schema.generatedIndex, instance);
+      } else {
+        validateNode(state, schema, instance, parentTag);
+      }
+
+      return;
+    }
+
+    ProfileFrame parent = state.frame;
+    ProfileFrame frame = state.enterFrame(schema);
+    long start = System.nanoTime();
+
+    try {
+      validateNode(state, schema, instance, parentTag);
+    } finally {
+      frame.record(System.nanoTime() - start);
+      state.frame = parent;
+    }
+  }
+
+  private void validateNode(ValidationState state, SchemaNode schema, Json instance, String parentTag)
+      throws MaxDepthExceededException, MaxErrorsReachedException {
+    if (schema.nullable && instance.isNull()) {
+      return;
+    }
+
+    switch (schema.form) {
+      case EMPTY:
+        break;
+      case REF:
+        int schemaBase = state.pushRef(schema.ref);
+        validate(state, schema.refTarget, instance, null);
+        state.popRef(schemaBase);
+        break;
+      case TYPE:
+        if (!isValidType(schema, instance)) {
+          state.pushSchemaToken("type");
+          state.pushError();
+          state.popSchemaToken();
+        }
+        break;
+      case ENUM:
+        state.pushSchemaToken("enum");
+
+        if (!instance.isString()) {
+          state.pushError();
+        } else {
+          if (schema.enm.indexOf(instance.asString()) == -1) {
+            state.pushError();
+          }
+        }
+
+        state.popSchemaToken();
+        break;
+      case ELEMENTS:
+        state.pushSchemaToken("elements");
+
+        if (!instance.isArray()) {
+          state.pushError();
+        } else {
+          instance = CollectionJson.of(instance);
+
+          if (isParallel(instance.size())) {
+            validateInParallel(state, schema.elements, instance, null);
+          } else {
+            for (int index = 0, size = instance.size(); index < size; index++) {
+              state.pushInstanceToken(index);
+              validate(state, schema.elements, instance.get(index), null);
+              state.popInstanceToken();
+            }
+          }
+        }
+
+        state.popSchemaToken();
+        break;
+      case PROPERTIES:
+        if (instance.isObject()) {
+          instance = CollectionJson.of(instance);
+
+          // Properties are checked in schema order, required ones first, and
+          // then members the schema doesn't name, so that errors keep their
+          // order, and stay the same under maxErrors.
+          int found = 0;
+          if (schema.properties != null) {
+            state.pushSchemaToken("properties");
+            for (int slot = 0; slot < schema.requiredCount; slot++) {
+              if (validateProperty(state, schema, slot, instance)) {
+                found++;
+              }
+            }
+            state.popSchemaToken();
+          }
+
+          if (schema.optionalProperties != null) {
+            state.pushSchemaToken("optionalProperties");
+            for (int slot = schema.requiredCount; slot < schema.propertyNames.length; slot++) {
+              if (validateProperty(state, schema, slot, instance)) {
+                found++;
+              }
+            }
+            state.popSchemaToken();
+          }
+
+          // If every member has been found as a property, or is the tag, no
+          // member is additional.
+          if (!schema.additionalProperties && instance.size() != found + tagMembers(schema, parentTag)) {
+            int expectedSlot = 0;
+            for (String key : instance.keys()) {
+              int slot = schema.slotOf(key, expectedSlot);
+
+              if (slot != -1) {
+                expectedSlot = slot + 1;
+              } else if (!key.equals(parentTag)) {
+                state.pushInstanceToken(key);
+                state.pushError();
+                state.popInstanceToken();
               }
             }
           }
         } else {
-          if (schema.getProperties() == null) {
+          if (schema.properties == null) {
             state.pushSchemaToken("optionalProperties");
           } else {
             state.pushSchemaToken("properties");
@@ -253,43 +1111,46 @@ public class Validator {
         break;
       case VALUES:
         state.pushSchemaToken("values");
-        if (instance.isObject()) {
-          for (Map.Entry<String, Json> entry : instance.asObject().entrySet()) {
+        if (!instance.isObject()) {
+          state.pushError();
+        } else if (isParallel(instance.size())) {
+          validateInParallel(state, schema.values, null, members(instance));
+        } else {
+          for (Map.Entry<String, Json> entry : instance.entries()) {
             state.pushInstanceToken(entry.getKey());
-            validate(state, schema.getValues(), entry.getValue(), null);
+            validate(state, schema.values, entry.getValue(), null);
             state.popInstanceToken();
           }
-        } else {
-          state.pushError();
         }
         state.popSchemaToken();
         break;
       case DISCRIMINATOR:
         if (instance.isObject()) {
-          Map<String, Json> instanceObj = instance.asObject();
+          // The mapping's schema reads the same object again.
+          instance = CollectionJson.of(instance);
+          Json instanceTag = instance.get(schema.discriminator);
 
-          if (instanceObj.containsKey(schema.getDiscriminator())) {
-            Json instanceTag = instanceObj.get(schema.getDiscriminator());
+          if (instanceTag != null) {
             if (instanceTag.isString()) {
               String instanceTagString = instanceTag.asString();
-              if (schema.getMapping().containsKey(instanceTagString)) {
-                Schema subSchema = schema.getMapping().get(instanceTagString);
+              if (schema.mapping.containsKey(instanceTagString)) {
+                SchemaNode subSchema = schema.mapping.get(instanceTagString);
 
                 state.pushSchemaToken("mapping");
                 state.pushSchemaToken(instanceTagString);
-                validate(state, subSchema, instance, schema.getDiscriminator());
+                validate(state, subSchema, instance, schema.discriminator);
                 state.popSchemaToken();
                 state.popSchemaToken();
               } else {
                 state.pushSchemaToken("mapping");
-                state.pushInstanceToken(schema.getDiscriminator());
+                state.pushInstanceToken(schema.discriminator);
                 state.pushError();
                 state.popInstanceToken();
                 state.popSchemaToken();
               }
             } else {
               state.pushSchemaToken("discriminator");
-              state.pushInstanceToken(schema.getDiscriminator());
+              state.pushInstanceToken(schema.discriminator);
               state.pushError();
               state.popInstanceToken();
               state.popSchemaToken();
@@ -308,44 +1169,924 @@ public class Validator {
     }
   }
 
-  private void checkInt(ValidationState state, Json instance, long min, long max) throws MaxErrorsReachedException {
-    if (!instance.isNumber()) {
-      state.pushError();
-    } else {
-      double val = instance.asNumber();
-      if (val < min || val > max || val != Math.round(val)) {
-        state.pushError();
-      }
+  private void validate(ValidationState state, SchemaNode schema, JsonStream instance, JsonStream.Token token,
+      String parentTag) throws MaxDepthExceededException, MaxErrorsReachedException, IOException {
+    if (state.frame == null) {
+      validateNode(state, schema, instance, token, parentTag);
+      return;
     }
-  }
 
-  private static class ValidationState {
-    public List<ValidationError> errors;
-    public List<String> instanceTokens;
-    public List<List<String>> schemaTokens;
-    public Schema root;
-    public int maxErrors;
+    ProfileFrame parent = state.frame;
+    ProfileFrame frame = state.enterFrame(schema);
+    long start = System.nanoTime();
 
-    public void pushSchemaToken(String token) {
-      schemaTokens.get(schemaTokens.size() - 1).add(token);
+    try {
+      validateNode(state, schema, instance, token, parentTag);
+    } finally {
+      frame.record(System.nanoTime() - start);
+      state.frame = parent;
     }
+  }
 
-    public void popSchemaToken() {
-      List<String> last = schemaTokens.get(schemaTokens.size() - 1);
-      last.remove(last.size() - 1);
+  private void validateNode(ValidationState state, SchemaNode schema, JsonStream instance, JsonStream.Token token,
+      String parentTag) throws MaxDepthExceededException, MaxErrorsReachedException, IOException {
+    if (schema.nullable && token == JsonStream.Token.NULL) {
+      return;
+    }
+
+    switch (schema.form) {
+      case EMPTY:
+        instance.skipChildren();
+        break;
+      case REF:
+        int schemaBase = state.pushRef(schema.ref);
+        validate(state, schema.refTarget, instance, token, null);
+        state.popRef(schemaBase);
+        break;
+      case TYPE:
+        if (!isValidType(schema, instance, token)) {
+          instance.skipChildren();
+
+          state.pushSchemaToken("type");
+          state.pushError();
+          state.popSchemaToken();
+        }
+        break;
+      case ENUM:
+        if (token != JsonStream.Token.STRING || !isEnumMember(schema, instance)) {
+          instance.skipChildren();
+
+          state.pushSchemaToken("enum");
+          state.pushError();
+          state.popSchemaToken();
+        }
+        break;
+      case ELEMENTS:
+        state.pushSchemaToken("elements");
+
+        if (token != JsonStream.Token.START_ARRAY) {
+          instance.skipChildren();
+          state.pushError();
+        } else {
+          int index = 0;
+          JsonStream.Token subToken;
+          while ((subToken = next(instance)) != JsonStream.Token.END_ARRAY) {
+            state.pushInstanceToken(index);
+            validate(state, schema.elements, instance, subToken, null);
+            state.popInstanceToken();
+
+            index += 1;
+          }
+        }
+
+        state.popSchemaToken();
+        break;
+      case PROPERTIES:
+        if (token == JsonStream.Token.START_OBJECT) {
+          // Streams may repeat member names, so track exactly which required
+          // properties have been seen. Up to 64 of them fit in a bitmask, which
+          // unlike an array costs no allocation per object.
+          long seenMask = 0;
+          boolean[] seen = schema.requiredCount > 64 ? new boolean[schema.requiredCount] : null;
+          int expectedSlot = 0;
+
+          while (next(instance) != JsonStream.Token.END_OBJECT) {
+            String key = instance.getName();
+            JsonStream.Token subToken = next(instance);
+            int slot = schema.slotOf(key, expectedSlot);
+
+            if (slot != -1) {
+              expectedSlot = slot + 1;
+
+              if (slot < schema.requiredCount) {
+                if (seen == null) {
+                  seenMask |= 1L << slot;
+                } else {
+                  seen[slot] = true;
+                }
+
+                state.pushSchemaToken("properties");
+              } else {
+                state.pushSchemaToken("optionalProperties");
+              }
+
+              state.pushSchemaToken(key);
+              state.pushInstanceToken(key);
+              validate(state, schema.propertySchemas[slot], instance, subToken, null);
+              state.popInstanceToken();
+              state.popSchemaToken();
+              state.popSchemaToken();
+            } else {
+              instance.skipChildren();
+
+              if (!schema.additionalProperties && !key.equals(parentTag)) {
+                state.pushInstanceToken(key);
+                state.pushError();
+                state.popInstanceToken();
+              }
+            }
+          }
+
+          if (schema.requiredCount != 0) {
+            state.pushSchemaToken("properties");
+            for (int slot = 0; slot < schema.requiredCount; slot++) {
+              if (seen == null ? (seenMask & (1L << slot)) == 0 : !seen[slot]) {
+                state.pushSchemaToken(schema.propertyNames[slot]);
+                state.pushError();
+                state.popSchemaToken();
+              }
+            }
+            state.popSchemaToken();
+          }
+        } else {
+          instance.skipChildren();
+
+          if (schema.properties == null) {
+            state.pushSchemaToken("optionalProperties");
+          } else {
+            state.pushSchemaToken("properties");
+          }
+
+          state.pushError();
+          state.popSchemaToken();
+        }
+
+        break;
+      case VALUES:
+        state.pushSchemaToken("values");
+        if (token == JsonStream.Token.START_OBJECT) {
+          while (next(instance) != JsonStream.Token.END_OBJECT) {
+            String key = instance.getName();
+            JsonStream.Token subToken = next(instance);
+
+            state.pushInstanceToken(key);
+            validate(state, schema.values, instance, subToken, null);
+            state.popInstanceToken();
+          }
+        } else {
+          instance.skipChildren();
+          state.pushError();
+        }
+        state.popSchemaToken();
+        break;
+      case DISCRIMINATOR:
+        if (token == JsonStream.Token.START_OBJECT) {
+          // The tag may come after other members of the object, but we can't
+          // validate those members until we know the tag. Buffer the members
+          // up to the tag, and then validate the buffer, which carries on with
+          // the rest of the object once the buffered members run out. When
+          // the tag comes first, only the tag itself is buffered.
+          JsonStreamBuffer buffer = JsonStreamBuffer.recordUntilMember(instance, schema.discriminator,
+              maxBufferSize);
+          int tagIndex = buffer.indexOfMember();
+
+          if (tagIndex == -1) {
+            state.pushSchemaToken("discriminator");
+            state.pushError();
+            state.popSchemaToken();
+          } else if (buffer.tokenAt(tagIndex) != JsonStream.Token.STRING) {
+            buffer.skipObject();
+
+            state.pushSchemaToken("discriminator");
+            state.pushInstanceToken(schema.discriminator);
+            state.pushError();
+            state.popInstanceToken();
+            state.popSchemaToken();
+          } else {
+            String instanceTagString = (String) buffer.valueAt(tagIndex);
+            SchemaNode subSchema = schema.mapping.get(instanceTagString);
+
+            if (subSchema != null) {
+              state.pushSchemaToken("mapping");
+              state.pushSchemaToken(instanceTagString);
+              validate(state, subSchema, buffer, buffer.next(), schema.discriminator);
+              state.popSchemaToken();
+              state.popSchemaToken();
+            } else {
+              buffer.skipObject();
+
+              state.pushSchemaToken("mapping");
+              state.pushInstanceToken(schema.discriminator);
+              state.pushError();
+              state.popInstanceToken();
+              state.popSchemaToken();
+            }
+          }
+        } else {
+          instance.skipChildren();
+
+          state.pushSchemaToken("discriminator");
+          state.pushError();
+          state.popSchemaToken();
+        }
+        break;
+    }
+  }
+
+  // The isValid methods below mirror the validate methods above, but return
+  // false at the first problem instead of recording it. depth is the number of
+  // schema paths validate would have at the same point: one for the root,
+  // plus one for each ref being followed.
+
+  private boolean isValid(SchemaNode schema, Json instance, String parentTag, int depth)
+      throws MaxDepthExceededException {
+    if (schema.nullable && instance.isNull()) {
+      return true;
+    }
+
+    switch (schema.form) {
+      case EMPTY:
+        break;
+      case REF:
+        if (depth == maxDepth) {
+          throw new MaxDepthExceededException();
+        }
+
+        if (listener != null) {
+          listener.refFollowed(schema.ref);
+        }
+
+        return isValid(schema.refTarget, instance, null, depth + 1);
+      case TYPE:
+        return isValidType(schema, instance);
+      case ENUM:
+        return instance.isString() && schema.enm.indexOf(instance.asString()) != -1;
+      case ELEMENTS:
+        if (!instance.isArray()) {
+          return false;
+        }
+
+        instance = CollectionJson.of(instance);
+        if (isParallel(instance.size())) {
+          return isValidInParallel(schema.elements, instance, null, depth);
+        }
+
+        for (int index = 0, size = instance.size(); index < size; index++) {
+          if (!isValid(schema.elements, instance.get(index), null, depth)) {
+            return false;
+          }
+        }
+        break;
+      case PROPERTIES:
+        if (!instance.isObject()) {
+          return false;
+        }
+
+        instance = CollectionJson.of(instance);
+
+        int found = 0;
+        for (int slot = 0; slot < schema.propertyNames.length; slot++) {
+          Json value = instance.get(schema.propertyNames[slot]);
+
+          if (value != null) {
+            if (!isValid(schema.propertySchemas[slot], value, null, depth)) {
+              return false;
+            }
+
+            found++;
+          } else if (slot < schema.requiredCount) {
+            return false;
+          }
+        }
+
+        if (!schema.additionalProperties && instance.size() != found + tagMembers(schema, parentTag)) {
+          int expectedSlot = 0;
+          for (String key : instance.keys()) {
+            int slot = schema.slotOf(key, expectedSlot);
+
+            if (slot != -1) {
+              expectedSlot = slot + 1;
+            } else if (!key.equals(parentTag)) {
+              return false;
+            }
+          }
+        }
+        break;
+      case VALUES:
+        if (!instance.isObject()) {
+          return false;
+        }
+
+        if (isParallel(instance.size())) {
+          return isValidInParallel(schema.values, null, members(instance), depth);
+        }
+
+        for (Map.Entry<String, Json> entry : instance.entries()) {
+          if (!isValid(schema.values, entry.getValue(), null, depth)) {
+            return false;
+          }
+        }
+        break;
+      case DISCRIMINATOR:
+        if (!instance.isObject()) {
+          return false;
+        }
+
+        instance = CollectionJson.of(instance);
+        Json instanceTag = instance.get(schema.discriminator);
+        if (instanceTag == null || !instanceTag.isString()) {
+          return false;
+        }
+
+        SchemaNode subSchema = schema.mapping.get(instanceTag.asString());
+        return subSchema != null && isValid(subSchema, instance, schema.discriminator, depth);
+    }
+
+    return true;
+  }
+
+  private boolean isValid(SchemaNode schema, JsonStream instance, JsonStream.Token token, String parentTag,
+      int depth) throws MaxDepthExceededException, IOException {
+    if (schema.nullable && token == JsonStream.Token.NULL) {
+      return true;
+    }
+
+    switch (schema.form) {
+      case EMPTY:
+        instance.skipChildren();
+        break;
+      case REF:
+        if (depth == maxDepth) {
+          throw new MaxDepthExceededException();
+        }
+
+        if (listener != null) {
+          listener.refFollowed(schema.ref);
+        }
+
+        return isValid(schema.refTarget, instance, token, null, depth + 1);
+      case TYPE:
+        return isValidType(schema, instance, token);
+      case ENUM:
+        return token == JsonStream.Token.STRING && isEnumMember(schema, instance);
+      case ELEMENTS:
+        if (token != JsonStream.Token.START_ARRAY) {
+          return false;
+        }
+
+        JsonStream.Token subToken;
+        while ((subToken = next(instance)) != JsonStream.Token.END_ARRAY) {
+          if (!isValid(schema.elements, instance, subToken, null, depth)) {
+            return false;
+          }
+        }
+        break;
+      case PROPERTIES:
+        if (token != JsonStream.Token.START_OBJECT) {
+          return false;
+        }
+
+        long seenMask = 0;
+        boolean[] seen = schema.requiredCount > 64 ? new boolean[schema.requiredCount] : null;
+        int expectedSlot = 0;
+
+        while (next(instance) != JsonStream.Token.END_OBJECT) {
+          String key = instance.getName();
+          subToken = next(instance);
+          int slot = schema.slotOf(key, expectedSlot);
+
+          if (slot != -1) {
+            expectedSlot = slot + 1;
+
+            if (slot < schema.requiredCount) {
+              if (seen == null) {
+                seenMask |= 1L << slot;
+              } else {
+                seen[slot] = true;
+              }
+            }
+
+            if (!isValid(schema.propertySchemas[slot], instance, subToken, null, depth)) {
+              return false;
+            }
+          } else if (schema.additionalProperties || key.equals(parentTag)) {
+            instance.skipChildren();
+          } else {
+            return false;
+          }
+        }
+
+        if (seen == null) {
+          if (seenMask != (schema.requiredCount == 64 ? -1L : (1L << schema.requiredCount) - 1)) {
+            return false;
+          }
+        } else {
+          for (boolean required : seen) {
+            if (!required) {
+              return false;
+            }
+          }
+        }
+        break;
+      case VALUES:
+        if (token != JsonStream.Token.START_OBJECT) {
+          return false;
+        }
+
+        while (next(instance) != JsonStream.Token.END_OBJECT) {
+          if (!isValid(schema.values, instance, next(instance), null, depth)) {
+            return false;
+          }
+        }
+        break;
+      case DISCRIMINATOR:
+        if (token != JsonStream.Token.START_OBJECT) {
+          return false;
+        }
+
+        JsonStreamBuffer buffer = JsonStreamBuffer.recordUntilMember(instance, schema.discriminator,
+            maxBufferSize);
+        int tagIndex = buffer.indexOfMember();
+        if (tagIndex == -1 || buffer.tokenAt(tagIndex) != JsonStream.Token.STRING) {
+          return false;
+        }
+
+        SchemaNode subSchema = schema.mapping.get((String) buffer.valueAt(tagIndex));
+        return subSchema != null && isValid(subSchema, buffer, buffer.next(), schema.discriminator, depth);
+    }
+
+    return true;
+  }
+
+  /**
+   * Validates the member of {@code instance} for the property in
+   * {@code slot}, or reports it missing if the property is required.
+   *
+   * @return whether {@code instance} has the member
+   */
+  private boolean validateProperty(ValidationState state, SchemaNode schema, int slot, Json instance)
+      throws MaxDepthExceededException, MaxErrorsReachedException {
+    String name = schema.propertyNames[slot];
+    Json value = instance.get(name);
+
+    state.pushSchemaToken(name);
+    if (value != null) {
+      state.pushInstanceToken(name);
+      validate(state, schema.propertySchemas[slot], value, null);
+      state.popInstanceToken();
+    } else if (slot < schema.requiredCount) {
+      state.pushError();
+    }
+    state.popSchemaToken();
+
+    return value != null;
+  }
+
+  /**
+   * The number of members of an object, validated against a mapping of a
+   * discriminator, that are its tag and not one of its properties.
+   */
+  static int tagMembers(SchemaNode schema, String parentTag) {
+    if (parentTag == null || (schema.properties != null && schema.properties.containsKey(parentTag))
+        || (schema.optionalProperties != null && schema.optionalProperties.containsKey(parentTag))) {
+      return 0;
+    }
+
+    return 1;
+  }
+
+  private boolean isParallel(int size) {
+    return parallelThreshold != 0 && size >= parallelThreshold * 2;
+  }
+
+  private static List<Map.Entry<String, Json>> members(Json instance) {
+    List<Map.Entry<String, Json>> members = new ArrayList<>(instance.size());
+    for (Map.Entry<String, Json> entry : instance.entries()) {
+      members.add(entry);
+    }
+
+    return members;
+  }
+
+  private void validateInParallel(ValidationState state, SchemaNode schema, Json elements,
+      List<Map.Entry<String, Json>> members) throws MaxDepthExceededException, MaxErrorsReachedException {
+    List<ValidationChunk> chunks = runChunks(state, schema, elements, members, 0);
+
+    // Merging the chunks' errors in order gives exactly the errors sequential
+    // validation would have found, up to the point where it would have
+    // stopped.
+    for (ValidationChunk chunk : chunks) {
+      state.pushErrors(chunk.state.errors);
+
+      if (chunk.maxDepthExceeded) {
+        throw new MaxDepthExceededException();
+      }
+    }
+  }
+
+  private boolean isValidInParallel(SchemaNode schema, Json elements, List<Map.Entry<String, Json>> members,
+      int depth) throws MaxDepthExceededException {
+    for (ValidationChunk chunk : runChunks(null, schema, elements, members, depth)) {
+      if (chunk.maxDepthExceeded) {
+        throw new MaxDepthExceededException();
+      }
+
+      if (chunk.invalid) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private List<ValidationChunk> runChunks(ValidationState state, SchemaNode schema, Json elements,
+      List<Map.Entry<String, Json>> members, int depth) {
+    ForkJoinPool pool = forkJoinPool == null ? ForkJoinPool.commonPool() : forkJoinPool;
+
+    int size = elements != null ? elements.size() : members.size();
+    int count = Math.min(size / parallelThreshold, pool.getParallelism() * 4);
+
+    AtomicInteger stoppedAt = new AtomicInteger(count);
+    List<ValidationChunk> chunks = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      chunks.add(new ValidationChunk(i, stoppedAt, state == null ? null : state.fork(), schema, elements, members,
+          depth, (int) ((long) size * i / count), (int) ((long) size * (i + 1) / count)));
+    }
+
+    if (ForkJoinTask.getPool() == pool) {
+      ForkJoinTask.invokeAll(chunks);
+    } else {
+      pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(chunks)));
+    }
+
+    return chunks;
+  }
+
+  /**
+   * A contiguous range of the elements of an array, or the members of an
+   * object, validated as one parallel task.
+   *
+   * When a chunk stops early, because it reached {@code maxErrors}, found an
+   * invalid element in {@code isValid}, or exceeded {@code maxDepth}, the
+   * chunks after it cannot affect the result, so they are cancelled.
+   * {@code stoppedAt} is the index of the earliest chunk to have stopped.
+   */
+  private class ValidationChunk extends RecursiveAction {
+    private static final long serialVersionUID = 5361127924720735016L;
+
+    private final int index;
+    private final AtomicInteger stoppedAt;
+
+    // The state to record errors in, or null when checking isValid.
+    private final ValidationState state;
+
+    private final SchemaNode schema;
+    private final Json elements;
+    private final List<Map.Entry<String, Json>> members;
+    private final int depth;
+    private final int start;
+    private final int end;
+
+    private boolean invalid;
+    private boolean maxDepthExceeded;
+
+    ValidationChunk(int index, AtomicInteger stoppedAt, ValidationState state, SchemaNode schema, Json elements,
+        List<Map.Entry<String, Json>> members, int depth, int start, int end) {
+      this.index = index;
+      this.stoppedAt = stoppedAt;
+      this.state = state;
+      this.schema = schema;
+      this.elements = elements;
+      this.members = members;
+      this.depth = depth;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      try {
+        for (int i = start; i < end && stoppedAt.get() > index; i++) {
+          Map.Entry<String, Json> member = members == null ? null : members.get(i);
+          Json instance = member == null ? elements.get(i) : member.getValue();
+
+          if (state == null) {
+            if (!isValid(schema, instance, null, depth)) {
+              invalid = true;
+              stop();
+              return;
+            }
+          } else {
+            if (member == null) {
+              state.pushInstanceToken(i);
+            } else {
+              state.pushInstanceToken(member.getKey());
+            }
+
+            validate(state, schema, instance, null);
+            state.popInstanceToken();
+          }
+        }
+      } catch (MaxErrorsReachedException e) {
+        stop();
+      } catch (MaxDepthExceededException e) {
+        maxDepthExceeded = true;
+        stop();
+      }
+    }
+
+    private void stop() {
+      stoppedAt.accumulateAndGet(index, Math::min);
+    }
+  }
+
+  private static boolean isValidType(SchemaNode schema, Json instance) {
+    switch (schema.type) {
+      case BOOLEAN:
+        return instance.isBoolean();
+      case FLOAT32:
+      case FLOAT64:
+        return instance.isNumber();
+      case INT8:
+      case UINT8:
+      case INT16:
+      case UINT16:
+      case INT32:
+      case UINT32:
+        if (!instance.isNumber()) {
+          return false;
+        }
+
+        return instance.isLong() ? isInt(instance.asLong(), schema.intMin, schema.intMax)
+            : isInt(instance.asNumber(), schema.intMin, schema.intMax);
+      case STRING:
+        return instance.isString();
+      case TIMESTAMP:
+        return instance.isString() && isTimestamp(instance.asString());
+    }
+
+    return false;
+  }
+
+  private static boolean isValidType(SchemaNode schema, JsonStream instance, JsonStream.Token token)
+      throws IOException {
+    switch (schema.type) {
+      case BOOLEAN:
+        return token == JsonStream.Token.BOOLEAN;
+      case FLOAT32:
+      case FLOAT64:
+        return token == JsonStream.Token.NUMBER;
+      case INT8:
+      case UINT8:
+      case INT16:
+      case UINT16:
+      case INT32:
+      case UINT32:
+        if (token != JsonStream.Token.NUMBER) {
+          return false;
+        }
+
+        return instance.isLong() ? isInt(instance.getLong(), schema.intMin, schema.intMax)
+            : isInt(instance.getNumber(), schema.intMin, schema.intMax);
+      case STRING:
+        return token == JsonStream.Token.STRING;
+      case TIMESTAMP:
+        return token == JsonStream.Token.STRING && isTimestamp(instance);
+    }
+
+    return false;
+  }
+
+  private static boolean isEnumMember(SchemaNode schema, JsonStream instance) throws IOException {
+    if (instance.hasTextCharacters()) {
+      return schema.enm.indexOf(instance.getTextCharacters(), instance.getTextOffset(),
+          instance.getTextLength()) != -1;
+    }
+
+    return schema.enm.indexOf(instance.getString()) != -1;
+  }
+
+  private static JsonStream.Token next(JsonStream instance) throws IOException {
+    JsonStream.Token token = instance.next();
+    if (token == null) {
+      throw new EOFException("unexpected end of input");
+    }
+
+    return token;
+  }
+
+  private static boolean isInt(long val, long min, long max) {
+    return val >= min && val <= max;
+  }
+
+  // Used for numbers that aren't already held as integers, such as "1.0".
+  private static boolean isInt(double val, long min, long max) {
+    return val >= min && val <= max && val == Math.round(val);
+  }
+
+  private static boolean isTimestamp(String val) {
+    return Rfc3339.isValid(val);
+  }
+
+  private static boolean isTimestamp(JsonStream instance) throws IOException {
+    if (instance.hasTextCharacters()) {
+      return Rfc3339.isValid(instance.getTextCharacters(), instance.getTextOffset(), instance.getTextLength());
+    }
+
+    return Rfc3339.isValid(instance.getString());
+  }
+
+  /**
+   * The position of a validation within the schema and the instance.
+   *
+   * Both paths are kept as array-backed stacks, so that descending into the
+   * schema or instance allocates nothing. They are only copied when an error
+   * is found, and array indices are only turned into strings if the error's
+   * instance path is read.
+   */
+  private static class ValidationState {
+    public List<ValidationError> errors;
+    public int maxDepth;
+    public int maxErrors;
+    public ValidationListener listener;
+
+    // Whether to time each ref followed, for RefValidationEvent. The events
+    // for the refs being followed are kept in a stack alongside the schema
+    // path, which is only created once there is a ref to time.
+    public boolean recordRefs;
+    private RefValidationEvent[] refEvents;
+
+    // The profiler's frame for the schema node being validated, or null when
+    // not profiling.
+    public ProfileFrame frame;
+
+    // Each element of the instance path is either a member name in
+    // instanceKeys, or (when that is null) an array index in instanceIndexes.
+    private String[] instanceKeys = new String[16];
+    private int[] instanceIndexes = new int[16];
+    private int instanceSize;
+
+    // The schema path of an error restarts at the most recently followed ref,
+    // which begins at schemaBase.
+    private String[] schemaTokens = new String[16];
+    private int schemaBase;
+    private int schemaSize;
+    private int refDepth;
+
+    /**
+     * Returns to the root of the schema and instance, for when validation was
+     * cut short before popping everything it pushed.
+     */
+    public void reset() {
+      instanceSize = 0;
+      schemaBase = 0;
+      schemaSize = 0;
+      refDepth = 0;
+    }
+
+    public void pushSchemaToken(String token) {
+      if (schemaSize == schemaTokens.length) {
+        schemaTokens = Arrays.copyOf(schemaTokens, schemaSize * 2);
+      }
+
+      schemaTokens[schemaSize++] = token;
+    }
+
+    public void popSchemaToken() {
+      schemaSize--;
+    }
+
+    /**
+     * Starts a new schema path for a followed ref, returning the start of the
+     * previous schema path for {@code popRef}.
+     */
+    public int pushRef(String ref) throws MaxDepthExceededException {
+      // One schema path for the root, plus one for each ref being followed.
+      if (refDepth + 1 == maxDepth) {
+        throw new MaxDepthExceededException();
+      }
+
+      refDepth++;
+
+      if (listener != null) {
+        listener.refFollowed(ref);
+      }
+
+      if (recordRefs) {
+        beginRefEvent(ref);
+      }
+
+      int base = schemaBase;
+      schemaBase = schemaSize;
+      pushSchemaToken("definitions");
+      pushSchemaToken(ref);
+      return base;
+    }
+
+    public void popRef(int base) {
+      if (recordRefs) {
+        commitRefEvent();
+      }
+
+      refDepth--;
+      schemaSize = schemaBase;
+      schemaBase = base;
+    }
+
+    private void beginRefEvent(String ref) {
+      // A forked state starts partway down the stack.
+      if (refEvents == null) {
+        refEvents = new RefValidationEvent[Math.max(16, refDepth + 1)];
+      } else if (refDepth == refEvents.length) {
+        refEvents = Arrays.copyOf(refEvents, refDepth * 2);
+      }
+
+      RefValidationEvent event = new RefValidationEvent();
+      event.ref = ref;
+      event.begin();
+      refEvents[refDepth] = event;
+    }
+
+    private void commitRefEvent() {
+      RefValidationEvent event = refEvents[refDepth];
+      refEvents[refDepth] = null;
+
+      // Most validations are quicker than the threshold, and so the instance
+      // path is only formatted for events that will be recorded.
+      event.end();
+      if (event.shouldCommit()) {
+        StringBuilder path = new StringBuilder();
+        for (String token : new InstancePath(Arrays.copyOf(instanceKeys, instanceSize),
+            Arrays.copyOf(instanceIndexes, instanceSize))) {
+          path.append('/').append(token.replace("~", "~0").replace("/", "~1"));
+        }
+
+        event.instancePath = path.toString();
+        event.commit();
+      }
     }
 
     public void pushInstanceToken(String token) {
-      instanceTokens.add(token);
+      growInstancePath();
+      instanceKeys[instanceSize++] = token;
+    }
+
+    public void pushInstanceToken(int index) {
+      growInstancePath();
+      instanceKeys[instanceSize] = null;
+      instanceIndexes[instanceSize++] = index;
+    }
+
+    private void growInstancePath() {
+      if (instanceSize == instanceKeys.length) {
+        instanceKeys = Arrays.copyOf(instanceKeys, instanceSize * 2);
+        instanceIndexes = Arrays.copyOf(instanceIndexes, instanceSize * 2);
+      }
     }
 
     public void popInstanceToken() {
-      instanceTokens.remove(instanceTokens.size() - 1);
+      instanceSize--;
+    }
+
+    /**
+     * Creates a state at the same position as this one, but with no errors
+     * yet, for validating part of an instance in parallel.
+     */
+    public ValidationState fork() {
+      ValidationState state = new ValidationState();
+      state.errors = new ArrayList<>();
+      state.maxDepth = maxDepth;
+      state.maxErrors = maxErrors;
+      state.listener = listener;
+      state.recordRefs = recordRefs;
+      state.frame = frame;
+      state.instanceKeys = instanceKeys.clone();
+      state.instanceIndexes = instanceIndexes.clone();
+      state.instanceSize = instanceSize;
+      state.schemaTokens = schemaTokens.clone();
+      state.schemaBase = schemaBase;
+      state.schemaSize = schemaSize;
+      state.refDepth = refDepth;
+      return state;
+    }
+
+    public void pushErrors(List<ValidationError> newErrors) throws MaxErrorsReachedException {
+      for (ValidationError error : newErrors) {
+        errors.add(error);
+
+        if (errors.size() == maxErrors) {
+          throw new MaxErrorsReachedException();
+        }
+      }
+    }
+
+    /**
+     * Makes the profiler's frame for {@code schema}, whose schema path is the
+     * current one, the current frame.
+     */
+    public ProfileFrame enterFrame(SchemaNode schema) {
+      frame = frame.child(schema, schemaTokens, schemaBase, schemaSize);
+      return frame;
     }
 
     public void pushError() throws MaxErrorsReachedException {
-      errors.add(new ValidationError(new ArrayList<>(instanceTokens),
-          new ArrayList<>(schemaTokens.get(schemaTokens.size() - 1))));
+      if (frame != null) {
+        frame.errors.increment();
+      }
+
+      errors.add(new ValidationError(
+          new InstancePath(Arrays.copyOf(instanceKeys, instanceSize), Arrays.copyOf(instanceIndexes, instanceSize)),
+          Arrays.asList(Arrays.copyOfRange(schemaTokens, schemaBase, schemaSize))));
 
       if (errors.size() == maxErrors) {
         throw new MaxErrorsReachedException();
@@ -0,0 +1,217 @@
+package com.jsontypedef.jtd;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+/**
+ * Checks how much memory validating valid instances allocates, so that changes
+ * which add allocations to the success path fail the build.
+ *
+ * Each valid instance in the spec's test cases is validated both on its own,
+ * to check a budget per document, and as {@code COPIES} and twice
+ * {@code COPIES} elements of an array, to check a budget per element. The
+ * difference between the two arrays leaves out everything that is only
+ * allocated once per document.
+ *
+ * Allocation is measured with {@code getThreadAllocatedBytes}, after warming
+ * up, and taking the least of several rounds. The JIT can eliminate some
+ * allocations but never adds them, so the least is the most stable measure.
+ */
+public class AllocationTest {
+  private static final int COPIES = 64;
+  private static final int WARMUP = 1000;
+  private static final int ROUNDS = 3;
+  private static final int ITERATIONS = 100;
+
+  // A ValidationState, plus room for an occasional ref or array growing.
+  private static final long DOCUMENT_BUDGET = 1024;
+  private static final long IS_VALID_DOCUMENT_BUDGET = 512;
+
+  // The Json adapters wrap each node in an object of their own, and object
+  // members in a Map.Entry, as they are visited. Arrays and objects also need
+  // an iterator over their contents.
+  private static final long TREE_NODE_BUDGET = 64;
+  private static final long TREE_CONTAINER_BUDGET = 64;
+
+  private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final JsonFactory jsonFactory = objectMapper.getFactory();
+
+  @TestFactory
+  public List<DynamicTest> testAllocation() throws IOException {
+    assumeTrue(THREAD_MX_BEAN.isThreadAllocatedMemorySupported() && THREAD_MX_BEAN.isThreadAllocatedMemoryEnabled());
+
+    ClassLoader classLoader = this.getClass().getClassLoader();
+    InputStream inputStream = classLoader.getResourceAsStream("json-typedef-spec/tests/validation.json");
+    JsonNode testCases = objectMapper.readTree(inputStream);
+
+    List<DynamicTest> tests = new ArrayList<>();
+    for (Iterator<Map.Entry<String, JsonNode>> it = testCases.fields(); it.hasNext();) {
+      Map.Entry<String, JsonNode> testCase = it.next();
+      JsonNode schemaJson = testCase.getValue().get("schema");
+      JsonNode instance = testCase.getValue().get("instance");
+      if (testCase.getValue().get("errors").size() != 0 || !isValidSchema(schemaJson)) {
+        continue;
+      }
+
+      tests.add(DynamicTest.dynamicTest(testCase.getKey(), () -> {
+        CompiledSchema schema = CompiledSchema.compile(objectMapper.treeToValue(schemaJson, Schema.class));
+        CompiledSchema arraySchema = CompiledSchema.compile(elementsOf(schemaJson));
+
+        ArrayNode copies = objectMapper.createArrayNode();
+        ArrayNode moreCopies = objectMapper.createArrayNode();
+        for (int i = 0; i < COPIES; i++) {
+          copies.add(instance);
+          moreCopies.add(instance).add(instance);
+        }
+
+        Validator validator = new Validator();
+        long treeBudget = TREE_NODE_BUDGET * countNodes(instance) + TREE_CONTAINER_BUDGET * countContainers(instance);
+
+        assertWithinBudget("validate(Jackson tree)", DOCUMENT_BUDGET, treeBudget,
+            json -> validator.validate(schema, new JacksonAdapter(json)),
+            json -> validator.validate(arraySchema, new JacksonAdapter(json)),
+            instance, copies, moreCopies);
+
+        assertWithinBudget("isValid(Jackson tree)", IS_VALID_DOCUMENT_BUDGET, treeBudget,
+            json -> validator.isValid(schema, new JacksonAdapter(json)),
+            json -> validator.isValid(arraySchema, new JacksonAdapter(json)),
+            instance, copies, moreCopies);
+
+        JsonElement gsonInstance = JsonParser.parseString(instance.toString());
+        JsonElement gsonCopies = JsonParser.parseString(copies.toString());
+        JsonElement gsonMoreCopies = JsonParser.parseString(moreCopies.toString());
+        assertWithinBudget("validate(Gson tree)", DOCUMENT_BUDGET, treeBudget + decodingBudget(instance),
+            json -> validator.validate(schema, new GsonAdapter(json)),
+            json -> validator.validate(arraySchema, new GsonAdapter(json)),
+            gsonInstance, gsonCopies, gsonMoreCopies);
+
+        // The parser's own allocations are the same for every document, and
+        // are left out of the budget per document by measuring them alone.
+        byte[] bytes = objectMapper.writeValueAsBytes(instance);
+        long parserBytes = measure(() -> jsonFactory.createParser(bytes).close());
+        long streamBudget = streamingBudget(schemaJson, instance);
+        assertWithinBudget("validate(Jackson stream)", DOCUMENT_BUDGET + parserBytes + streamBudget, streamBudget,
+            json -> validator.validate(schema, new JacksonStreamAdapter(jsonFactory.createParser(json))),
+            json -> validator.validate(arraySchema, new JacksonStreamAdapter(jsonFactory.createParser(json))),
+            bytes, objectMapper.writeValueAsBytes(copies), objectMapper.writeValueAsBytes(moreCopies));
+      }));
+    }
+
+    return tests;
+  }
+
+  // Streaming validation reads values straight out of the parser's buffers,
+  // timestamps included, and so allocates nothing per element, except where a
+  // number with a fraction has to be decoded. Discriminators also buffer the
+  // members that come before their tag.
+  private static long streamingBudget(JsonNode schemaJson, JsonNode instance) {
+    if (schemaJson.has("discriminator")) {
+      return 512;
+    }
+
+    return decodingBudget(instance);
+  }
+
+  // Checking whether a number with a fraction is an integer means parsing it
+  // as a double, for adapters that keep numbers as text.
+  private static long decodingBudget(JsonNode instance) {
+    return instance.isFloatingPointNumber() ? 256 : 0;
+  }
+
+  private <T> void assertWithinBudget(String name, long documentBudget, long elementBudget, Validation<T> validate,
+      Validation<T> validateArray, T instance, T copies, T moreCopies) throws Exception {
+    long perDocument = measure(() -> validate.run(instance));
+    assertTrue(perDocument <= documentBudget,
+        name + " allocated " + perDocument + " bytes per document, budget is " + documentBudget);
+
+    long perElement = (measure(() -> validateArray.run(moreCopies)) - measure(() -> validateArray.run(copies)))
+        / COPIES;
+    assertTrue(perElement <= elementBudget,
+        name + " allocated " + perElement + " bytes per element, budget is " + elementBudget);
+  }
+
+  private static long measure(Action action) throws Exception {
+    for (int i = 0; i < WARMUP; i++) {
+      action.run();
+    }
+
+    long thread = Thread.currentThread().getId();
+    long least = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      long before = THREAD_MX_BEAN.getThreadAllocatedBytes(thread);
+      for (int i = 0; i < ITERATIONS; i++) {
+        action.run();
+      }
+
+      least = Math.min(least, (THREAD_MX_BEAN.getThreadAllocatedBytes(thread) - before) / ITERATIONS);
+    }
+
+    return least;
+  }
+
+  private boolean isValidSchema(JsonNode schemaJson) throws IOException {
+    try {
+      objectMapper.treeToValue(schemaJson, Schema.class).verify();
+      return true;
+    } catch (InvalidSchemaException e) {
+      return false;
+    }
+  }
+
+  // Returns a schema for arrays of instances of schemaJson, keeping its
+  // definitions at the root.
+  private Schema elementsOf(JsonNode schemaJson) throws IOException {
+    Schema elements = objectMapper.treeToValue(schemaJson, Schema.class);
+    Schema schema = new Schema();
+    schema.setDefinitions(elements.getDefinitions());
+    schema.setElements(elements);
+    elements.setDefinitions(null);
+    return schema;
+  }
+
+  private static int countNodes(JsonNode node) {
+    int count = 1;
+    for (JsonNode child : node) {
+      count += countNodes(child);
+    }
+
+    return count;
+  }
+
+  private static int countContainers(JsonNode node) {
+    int count = node.isContainerNode() ? 1 : 0;
+    for (JsonNode child : node) {
+      count += countContainers(child);
+    }
+
+    return count;
+  }
+
+  private interface Action {
+    void run() throws Exception;
+  }
+
+  private interface Validation<T> {
+    Object run(T instance) throws Exception;
+  }
+}
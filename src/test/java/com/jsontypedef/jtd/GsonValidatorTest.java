@@ -1,22 +1,50 @@
 package com.jsontypedef.jtd;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
-import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonIOException;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 import org.junit.jupiter.api.DynamicTest;
 import org.junit.jupiter.api.Test;
@@ -30,7 +58,8 @@ public class GsonValidatorTest {
 
     Validator validator = new Validator();
     validator.setMaxDepth(3);
-    assertThrows(MaxDepthExceededException.class, () -> validator.validate(schema, null));
+    assertThrows(MaxDepthExceededException.class, () -> validator.validate(schema, (Json) null));
+    assertThrows(MaxDepthExceededException.class, () -> validator.isValid(schema, (Json) null));
   }
 
   @Test
@@ -44,11 +73,676 @@ public class GsonValidatorTest {
     assertEquals(3, validator.validate(schema, new GsonAdapter(instance)).size());
   }
 
-  // We ignore two test cases from the standard spec. Both of these are due to
-  // the fact that the Java standard library's version of RFC3339 does not
-  // support leap seconds.
-  private static final List<String> IGNORED_SPEC_TESTS = Arrays.asList("timestamp type schema - 1990-12-31T23:59:60Z",
-      "timestamp type schema - 1990-12-31T15:59:60-08:00");
+  @Test
+  public void testMaxErrorsStreaming() throws MaxDepthExceededException, IOException {
+    Gson gson = new Gson();
+    Schema schema = gson.fromJson("{\"elements\": {\"type\": \"string\"}}", Schema.class);
+    JsonReader reader = new JsonReader(new StringReader("[1, 1, 1, 1, 1]"));
+
+    Validator validator = new Validator();
+    validator.setMaxErrors(3);
+    assertEquals(3, validator.validate(schema, new GsonStreamAdapter(reader)).size());
+  }
+
+  @Test
+  public void testPropertiesErrorOrder() throws MaxDepthExceededException {
+    Gson gson = new Gson();
+    Schema schema = gson.fromJson("{\"properties\": {\"a\": {}, \"b\": {\"type\": \"string\"}}}", Schema.class);
+    JsonElement instance = gson.fromJson("{\"x\": 1, \"b\": 1}", JsonElement.class);
+
+    ValidationError missing = new ValidationError(Arrays.asList(), Arrays.asList("properties", "a"));
+    ValidationError type = new ValidationError(Arrays.asList("b"), Arrays.asList("properties", "b", "type"));
+    ValidationError additional = new ValidationError(Arrays.asList("x"), Arrays.asList());
+
+    Validator validator = new Validator();
+    assertEquals(Arrays.asList(missing, type, additional), validator.validate(schema, new GsonAdapter(instance)));
+
+    validator.setMaxErrors(1);
+    assertEquals(Arrays.asList(missing), validator.validate(schema, new GsonAdapter(instance)));
+  }
+
+  @Test
+  public void testLongIntegerLiterals() throws MaxDepthExceededException, IOException {
+    Gson gson = new Gson();
+    Schema schema = gson.fromJson("{\"type\": \"uint32\"}", Schema.class);
+
+    // Literals of up to 18 digits are read as longs, and longer ones as
+    // doubles, which must not round them into range.
+    assertTrue(GsonAdapter.isLongLiteral("999999999999999999"));
+    assertTrue(GsonAdapter.isLongLiteral("-999999999999999999"));
+    assertEquals(false, GsonAdapter.isLongLiteral("1000000000000000000"));
+    assertEquals(false, GsonAdapter.isLongLiteral("-"));
+    assertEquals(false, GsonAdapter.isLongLiteral("1.0"));
+
+    Map<String, Boolean> literals = new LinkedHashMap<>();
+    literals.put("4294967295", true);
+    literals.put("4294967296", false);
+    literals.put("-0", true);
+    literals.put("999999999999999999", false);
+    literals.put("1000000000000000000", false);
+    literals.put("18446744073709551617", false);
+    literals.put("-1000000000000000000000", false);
+    literals.put("4294967295.0", true);
+
+    Validator validator = new Validator();
+    for (Map.Entry<String, Boolean> literal : literals.entrySet()) {
+      JsonReader reader = new JsonReader(new StringReader(literal.getKey()));
+      assertEquals(literal.getValue(),
+          validator.isValid(schema, new GsonAdapter(gson.fromJson(literal.getKey(), JsonElement.class))),
+          literal.getKey());
+      assertEquals(literal.getValue(), validator.isValid(schema, new GsonStreamAdapter(reader)), literal.getKey());
+    }
+  }
+
+  @Test
+  public void testMaxBufferSize() throws MaxDepthExceededException, IOException {
+    Gson gson = new Gson();
+    Schema schema = gson.fromJson(
+        "{\"discriminator\": \"kind\", \"mapping\": {\"a\": {\"properties\": {\"x\": {}}}}}", Schema.class);
+
+    Validator validator = new Validator();
+    validator.setMaxBufferSize(16);
+
+    JsonReader reader = new JsonReader(new StringReader("{\"kind\": \"a\", \"x\": \"xxxxxxxxxxxxxxxxxxxx\"}"));
+    assertEquals(0, validator.validate(schema, new GsonStreamAdapter(reader)).size());
+
+    JsonReader tagLast = new JsonReader(new StringReader("{\"x\": \"xxxxxxxxxxxxxxxxxxxx\", \"kind\": \"a\"}"));
+    assertThrows(MaxBufferExceededException.class,
+        () -> validator.validate(schema, new GsonStreamAdapter(tagLast)));
+  }
+
+  @Test
+  public void testMaxErrorsParallel() throws MaxDepthExceededException {
+    Gson gson = new Gson();
+    Schema schema = gson.fromJson("{\"elements\": {\"type\": \"uint8\"}}", Schema.class);
+
+    JsonArray array = new JsonArray();
+    for (int i = 0; i < 10000; i++) {
+      array.add(i % 7 == 0 ? 1000 : i % 256);
+    }
+
+    Validator sequential = new Validator();
+    sequential.setMaxErrors(50);
+
+    Validator parallel = new Validator();
+    parallel.setMaxErrors(50);
+    parallel.setParallelThreshold(100);
+
+    assertEquals(sequential.validate(schema, new GsonAdapter(array)),
+        parallel.validate(schema, new GsonAdapter(array)));
+  }
+
+  @Test
+  public void testCompileThreshold() throws MaxDepthExceededException {
+    Gson gson = new Gson();
+    CompiledSchema schema = CompiledSchema.build(gson.fromJson(
+        "{\"definitions\": {\"x\": {\"ref\": \"x\"}}, \"properties\": {\"a\": {\"type\": \"uint8\"}}, "
+            + "\"optionalProperties\": {\"b\": {\"ref\": \"x\"}}}",
+        Schema.class));
+    JsonElement instance = gson.fromJson("{\"a\": 1000, \"c\": 1}", JsonElement.class);
+
+    Validator validator = new Validator();
+    validator.setCompileThreshold(3);
+    List<ValidationError> expected = new Validator().validate(schema, new GsonAdapter(instance));
+    for (int i = 0; i < 3; i++) {
+      assertNull(schema.getRoot().generated);
+      assertEquals(expected, validator.validate(schema, new GsonAdapter(instance)));
+    }
+
+    assertNotNull(schema.getRoot().generated);
+    assertEquals(expected, validator.validate(schema, new GsonAdapter(instance)));
+
+    // Refs from generated code are followed only as deep as the interpreter
+    // follows them.
+    validator.setMaxDepth(3);
+    JsonElement deep = gson.fromJson("{\"a\": 1, \"b\": 1}", JsonElement.class);
+    assertThrows(MaxDepthExceededException.class, () -> validator.validate(schema, new GsonAdapter(deep)));
+
+    // An enum this large would take a method longer than the JIT compiles, so
+    // its schema goes on being interpreted.
+    JsonArray values = new JsonArray();
+    for (int i = 0; i < 2000; i++) {
+      values.add("value" + i);
+    }
+    JsonObject large = new JsonObject();
+    large.add("enum", values);
+    CompiledSchema largeSchema = CompiledSchema.build(gson.fromJson(large, Schema.class));
+
+    assertEquals(1, validator.validate(largeSchema, new GsonAdapter(gson.fromJson("\"value\"", JsonElement.class)))
+        .size());
+    assertNull(largeSchema.getRoot().generated);
+  }
+
+  @Test
+  public void testCompileThresholdDefineFailure() throws MaxDepthExceededException {
+    Gson gson = new Gson();
+    CompiledSchema schema = CompiledSchema.build(gson.fromJson(
+        "{\"properties\": {\"a\": {\"type\": \"uint8\"}}}", Schema.class));
+    JsonElement instance = gson.fromJson("{\"a\": 1000, \"c\": 1}", JsonElement.class);
+    List<ValidationError> expected = new Validator().validate(schema, new GsonAdapter(instance));
+
+    // A class the JVM rejects leaves the schema interpreted, and isn't
+    // generated again.
+    int[] defines = new int[1];
+    UnaryOperator<byte[]> beforeDefine = ClassGenerator.beforeDefine;
+    ClassGenerator.beforeDefine = bytes -> {
+      defines[0]++;
+      return Arrays.copyOf(bytes, bytes.length / 2);
+    };
+
+    try {
+      Validator validator = new Validator();
+      validator.setCompileThreshold(1);
+      for (int i = 0; i < 3; i++) {
+        assertEquals(expected, validator.validate(schema, new GsonAdapter(instance)));
+      }
+
+      assertNull(schema.getRoot().generated);
+      assertEquals(1, defines[0]);
+    } finally {
+      ClassGenerator.beforeDefine = beforeDefine;
+    }
+  }
+
+  @Test
+  public void testValidateAll() throws MaxDepthExceededException {
+    Gson gson = new Gson();
+    Schema schema = gson.fromJson("{\"elements\": {\"type\": \"uint8\"}}", Schema.class);
+
+    List<Json> instances = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      instances.add(new GsonAdapter(gson.fromJson(i % 3 == 0 ? "[1, 1000, 1000]" : "[1]", JsonElement.class)));
+    }
+
+    Validator validator = new Validator();
+    validator.setMaxErrors(1);
+    BatchResult result = validator.validateAll(schema, instances);
+
+    assertEquals(1000, result.size());
+    assertEquals(334, result.getInvalidCount());
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(validator.validate(schema, instances.get(i)), result.getErrors(i));
+      assertEquals(i % 3 != 0, result.isValid(i));
+      assertEquals(i % 3 == 0, result.getInvalid().get(i));
+    }
+  }
+
+  @Test
+  public void testValidateAllStopsOnFailure() throws Exception {
+    Gson gson = new Gson();
+    Schema schema = gson.fromJson("{\"definitions\": {\"x\": {\"ref\": \"x\"}}, \"ref\": \"x\"}", Schema.class);
+    Json instance = new GsonAdapter(gson.fromJson("null", JsonElement.class));
+
+    // Once the first chunk fails, the rest of the instances are not read.
+    int[] read = new int[1];
+    Iterable<Json> instances = () -> IntStream.range(0, 10000).mapToObj(i -> {
+      read[0]++;
+      return instance;
+    }).iterator();
+
+    Validator validator = new Validator();
+    validator.setMaxDepth(3);
+    validator.setExecutor(Runnable::run);
+    assertThrows(MaxDepthExceededException.class, () -> validator.validateAll(schema, instances));
+    assertTrue(read[0] < 1000);
+  }
+
+  @Test
+  public void testJsonWithoutInPlaceAccessors() throws Exception {
+    Gson gson = new Gson();
+    Schema schema = gson.fromJson(
+        "{\"elements\": {\"properties\": {\"a\": {\"type\": \"uint8\"}}}}", Schema.class);
+    JsonArray array = new JsonArray();
+    for (int i = 0; i < 100; i++) {
+      array.add(gson.fromJson("{\"a\": " + i * 3 + "}", JsonElement.class));
+    }
+
+    // Reading the array or an object must not copy it again for every element
+    // or member.
+    int[] copies = new int[1];
+    Json instance = new CopyingJson(new GsonAdapter(array), copies);
+
+    Validator validator = new Validator();
+    assertEquals(14, validator.validate(schema, instance).size());
+    assertEquals(101, copies[0]);
+
+    copies[0] = 0;
+    assertEquals(false, validator.isValid(schema, instance));
+    assertTrue(copies[0] <= 101);
+  }
+
+  // A Json that only implements the methods it has to, and builds a new
+  // collection every time it is asked for one.
+  private static class CopyingJson implements Json {
+    private final Json json;
+    private final int[] copies;
+
+    CopyingJson(Json json, int[] copies) {
+      this.json = json;
+      this.copies = copies;
+    }
+
+    public boolean isNull() {
+      return json.isNull();
+    }
+
+    public boolean isBoolean() {
+      return json.isBoolean();
+    }
+
+    public boolean isNumber() {
+      return json.isNumber();
+    }
+
+    public boolean isString() {
+      return json.isString();
+    }
+
+    public boolean isArray() {
+      return json.isArray();
+    }
+
+    public boolean isObject() {
+      return json.isObject();
+    }
+
+    public boolean asBoolean() {
+      return json.asBoolean();
+    }
+
+    public double asNumber() {
+      return json.asNumber();
+    }
+
+    public String asString() {
+      return json.asString();
+    }
+
+    public List<Json> asArray() {
+      copies[0]++;
+      List<Json> array = new ArrayList<>();
+      for (Json element : json.asArray()) {
+        array.add(new CopyingJson(element, copies));
+      }
+
+      return array;
+    }
+
+    public Map<String, Json> asObject() {
+      copies[0]++;
+      Map<String, Json> object = new LinkedHashMap<>();
+      for (Map.Entry<String, Json> entry : json.asObject().entrySet()) {
+        object.put(entry.getKey(), new CopyingJson(entry.getValue(), copies));
+      }
+
+      return object;
+    }
+  }
+
+  @Test
+  public void testSchemaChangesNoticed() throws Exception {
+    Gson gson = new Gson();
+    Schema schema = gson.fromJson("{\"elements\": {\"type\": \"uint8\"}}", Schema.class);
+    Json instance = new GsonAdapter(gson.fromJson("[1]", JsonElement.class));
+
+    Validator validator = new Validator();
+    assertEquals(0, validator.validate(schema, instance).size());
+    assertEquals(true, validator.isValid(schema, instance));
+
+    // Changes to nested schemas are seen, not just calls to the root's setters.
+    schema.getElements().setType(Type.STRING);
+    assertEquals(1, validator.validate(schema, instance).size());
+    assertEquals(false, validator.isValid(schema, instance));
+    assertEquals(1, validator.validateAll(schema, Arrays.asList(instance)).getErrors(0).size());
+  }
+
+  @Test
+  public void testValidationStatistics() throws Exception {
+    Gson gson = new Gson();
+    Schema schema = gson.fromJson(
+        "{\"definitions\": {\"x\": {\"type\": \"uint8\"}}, \"elements\": {\"ref\": \"x\"}}", Schema.class);
+    Json valid = new GsonAdapter(gson.fromJson("[1, 2]", JsonElement.class));
+    Json invalid = new GsonAdapter(gson.fromJson("[1, 1000, 1000]", JsonElement.class));
+
+    ValidationStatistics statistics = new ValidationStatistics();
+    Validator validator = new Validator();
+    validator.setListener(statistics);
+    validator.setMaxErrors(1);
+
+    assertEquals(0, validator.validate(schema, valid).size());
+    assertEquals(1, validator.validate(schema, invalid).size());
+    assertEquals(false, validator.isValid(schema, invalid));
+    assertEquals(1, validator.validate(schema, new GsonStreamAdapter(new JsonReader(new StringReader("[1000]"))))
+        .size());
+
+    Schema loop = gson.fromJson("{\"definitions\": {\"x\": {\"ref\": \"x\"}}, \"ref\": \"x\"}", Schema.class);
+    validator.setMaxDepth(3);
+    assertThrows(MaxDepthExceededException.class, () -> validator.validate(loop, valid));
+
+    assertEquals(5, statistics.getValidationCount());
+    assertEquals(4, statistics.getInvalidCount());
+    assertEquals(2, statistics.getErrorCount());
+    assertEquals(2, statistics.getMaxErrorsReachedCount());
+    assertEquals(1, statistics.getMaxDepthExceededCount());
+
+    // 2 refs for valid, 2 for invalid (stopping at its first error), 2 for
+    // isValid, 1 for the stream, and 2 before the loop exceeds the max depth.
+    assertEquals(9, statistics.getRefsFollowed());
+
+    Map<List<String>, Long> expected = new HashMap<>();
+    expected.put(Arrays.asList("definitions", "x", "type"), 2L);
+    assertEquals(expected, statistics.getErrorCountsBySchemaPath());
+  }
+
+  @Test
+  public void testFlightRecorderEvents() throws Exception {
+    Gson gson = new Gson();
+    Schema schema = gson.fromJson(
+        "{\"definitions\": {\"x\": {\"type\": \"uint8\"}}, \"elements\": {\"ref\": \"x\"}}", Schema.class);
+    Json invalid = new GsonAdapter(gson.fromJson("[1, 1000, 1000]", JsonElement.class));
+
+    Validator validator = new Validator();
+    validator.setMaxErrors(1);
+
+    // Nothing is recorded until the events are enabled.
+    Path file = Files.createTempFile("jtd", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.start();
+      validator.validate(schema, invalid);
+
+      recording.enable("com.jsontypedef.jtd.Validation");
+      recording.enable("com.jsontypedef.jtd.RefValidation").withThreshold(Duration.ZERO);
+      validator.validate(schema, invalid);
+      validator.isValid(schema, new GsonStreamAdapter(new JsonReader(new StringReader("[1]"))));
+
+      recording.stop();
+      recording.dump(file);
+
+      List<RecordedEvent> validations = new ArrayList<>();
+      List<RecordedEvent> refs = new ArrayList<>();
+      for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+        if (event.getEventType().getName().equals("com.jsontypedef.jtd.Validation")) {
+          validations.add(event);
+        } else if (event.getEventType().getName().equals("com.jsontypedef.jtd.RefValidation")) {
+          refs.add(event);
+        }
+      }
+
+      assertEquals(2, validations.size());
+
+      // The schema is identified by its contents, so compiling it again gives
+      // the same fingerprint.
+      assertEquals(CompiledSchema.compile(schema).getFingerprint(), validations.get(0).getString("schema"));
+      Schema other = gson.fromJson("{\"elements\": {\"type\": \"uint8\"}}", Schema.class);
+      assertNotEquals(CompiledSchema.compile(other).getFingerprint(), validations.get(0).getString("schema"));
+      assertEquals("validate", validations.get(0).getString("method"));
+      assertEquals(3, validations.get(0).getInt("instanceSize"));
+      assertEquals(1, validations.get(0).getInt("errorCount"));
+      assertEquals(false, validations.get(0).getBoolean("valid"));
+      assertEquals(true, validations.get(0).getBoolean("maxErrorsReached"));
+      assertEquals(false, validations.get(0).getBoolean("maxDepthExceeded"));
+      assertEquals("isValid", validations.get(1).getString("method"));
+      assertEquals(true, validations.get(1).getBoolean("streaming"));
+      assertEquals(-1, validations.get(1).getInt("instanceSize"));
+      assertEquals(true, validations.get(1).getBoolean("valid"));
+
+      // validate records the first element's ref, then stops at the second;
+      // isValid records no refs.
+      assertEquals(1, refs.size());
+      assertEquals("x", refs.get(0).getString("ref"));
+      assertEquals("/0", refs.get(0).getString("instancePath"));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testValidationProfiler() throws Exception {
+    Gson gson = new Gson();
+    Schema schema = gson.fromJson(
+        "{\"definitions\": {\"x\": {\"type\": \"uint8\"}}, \"elements\": {\"ref\": \"x\"}}", Schema.class);
+    Json invalid = new GsonAdapter(gson.fromJson("[1, 1000, 1000]", JsonElement.class));
+
+    ValidationProfiler profiler = new ValidationProfiler();
+    Validator validator = new Validator();
+    validator.setProfiler(profiler);
+
+    // Compiling the schema again each time makes no difference to the paths
+    // recorded.
+    validator.validate(schema, invalid);
+    validator.validate(schema, invalid);
+    assertEquals(true, validator.isValid(schema, new GsonAdapter(gson.fromJson("[1]", JsonElement.class))));
+
+    Map<List<String>, SchemaPathProfile> profiles = new HashMap<>();
+    for (SchemaPathProfile profile : profiler.getProfiles()) {
+      profiles.put(profile.getSchemaPath(), profile);
+    }
+
+    assertEquals(3, profiles.size());
+    assertEquals(2, profiles.get(Arrays.asList()).getVisitCount());
+    assertEquals(6, profiles.get(Arrays.asList("elements")).getVisitCount());
+    assertEquals(6, profiles.get(Arrays.asList("definitions", "x")).getVisitCount());
+    assertEquals(0, profiles.get(Arrays.asList("elements")).getErrorCount());
+    assertEquals(4, profiles.get(Arrays.asList("definitions", "x")).getErrorCount());
+
+    SchemaPathProfile root = profiles.get(Arrays.asList());
+    assertTrue(root.getTotalNanos() >= root.getSelfNanos());
+    assertTrue(root.getTotalNanos() >= profiles.get(Arrays.asList("elements")).getTotalNanos());
+    assertTrue(profiler.getReport().contains("[definitions, x]"));
+
+    StringWriter stacks = new StringWriter();
+    profiler.writeCollapsedStacks(stacks);
+    for (String line : stacks.toString().split("\n")) {
+      assertTrue(line.matches("\\(root\\)(;elements(;definitions/x)?)? \\d+"), line);
+    }
+
+    profiler.reset();
+    assertEquals(0, profiler.getProfiles().size());
+  }
+
+  @Test
+  public void testSchemaMetricsRegistry() throws Exception {
+    Gson gson = new Gson();
+    Schema source = gson.fromJson(
+        "{\"definitions\": {\"x\": {\"type\": \"uint8\"}}, \"elements\": {\"ref\": \"x\"}}", Schema.class);
+    CompiledSchema schema = CompiledSchema.compile(source);
+    Json valid = new GsonAdapter(gson.fromJson("[1, 2]", JsonElement.class));
+    Json invalid = new GsonAdapter(gson.fromJson("[1, 1000, 1000]", JsonElement.class));
+
+    MBeanServer server = MBeanServerFactory.newMBeanServer();
+    SchemaMetricsRegistry registry = new SchemaMetricsRegistry(server);
+    Validator validator = new Validator();
+    validator.setListener(registry);
+
+    registry.register("example", schema);
+    assertThrows(IllegalArgumentException.class, () -> registry.register("other", schema));
+
+    validator.validate(schema, valid);
+    validator.validate(schema, invalid);
+    validator.isValid(schema, valid);
+    validator.isValid(schema, invalid);
+
+    // Schemas are matched by their contents, however they were compiled.
+    validator.validate(source, valid);
+    assertThrows(IllegalArgumentException.class, () -> registry.register("other", source));
+
+    // Validations against other schemas are not counted.
+    validator.validate(CompiledSchema.compile(new Schema()), valid);
+
+    ObjectName name = new ObjectName("com.jsontypedef.jtd:type=SchemaMetrics,name=\"example\"");
+    assertEquals("example", server.getAttribute(name, "SchemaName"));
+    assertEquals(5L, server.getAttribute(name, "ValidationCount"));
+    assertEquals(2L, server.getAttribute(name, "InvalidCount"));
+    assertEquals(0.4, server.getAttribute(name, "ErrorRate"));
+    assertEquals(3, server.getAttribute(name, "SchemaNodeCount"));
+    assertTrue((Long) server.getAttribute(name, "EstimatedSchemaBytes") > 0);
+
+    double p50 = (Double) server.getAttribute(name, "LatencyP50Micros");
+    double p99 = (Double) server.getAttribute(name, "LatencyP99Micros");
+    double max = (Double) server.getAttribute(name, "MaxLatencyMicros");
+    assertTrue(0 < p50 && p50 <= p99 && p99 <= max);
+
+    server.invoke(name, "resetStatistics", null, null);
+    assertEquals(0L, server.getAttribute(name, "ValidationCount"));
+    assertEquals(0.0, server.getAttribute(name, "ErrorRate"));
+
+    registry.unregister("example");
+    assertEquals(false, server.isRegistered(name));
+    assertEquals(null, registry.getMetrics("example"));
+    validator.validate(schema, valid);
+  }
+
+  @Test
+  public void testValidateAsync() throws Exception {
+    Gson gson = new Gson();
+    Schema schema = gson.fromJson("{\"elements\": {\"type\": \"string\"}}", Schema.class);
+    Json instance = new GsonAdapter(gson.fromJson("[1, \"a\", 1]", JsonElement.class));
+
+    Validator validator = new Validator();
+    validator.setMaxConcurrency(2);
+
+    List<CompletableFuture<List<ValidationError>>> futures = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      futures.add(validator.validateAsync(schema, instance));
+    }
+
+    for (CompletableFuture<List<ValidationError>> future : futures) {
+      assertEquals(validator.validate(schema, instance), future.get());
+    }
+
+    Schema loop = gson.fromJson("{\"definitions\": {\"x\": {\"ref\": \"x\"}}, \"ref\": \"x\"}", Schema.class);
+    validator.setMaxDepth(3);
+    ExecutionException e = assertThrows(ExecutionException.class, () -> validator.validateAsync(loop, instance).get());
+    assertTrue(e.getCause() instanceof MaxDepthExceededException);
+  }
+
+  @Test
+  public void testValidationProcessor() throws Exception {
+    Gson gson = new Gson();
+    Schema schema = gson.fromJson("{\"elements\": {\"type\": \"string\"}}", Schema.class);
+
+    List<Json> instances = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      instances.add(new GsonAdapter(gson.fromJson(i % 3 == 0 ? "[\"a\"]" : "[" + i + "]", JsonElement.class)));
+    }
+
+    ValidationProcessor processor = new ValidationProcessor(new Validator(), schema, 4);
+    List<ValidationResult> results = new ArrayList<>();
+    CompletableFuture<Void> done = new CompletableFuture<>();
+
+    processor.subscribe(new Flow.Subscriber<ValidationResult>() {
+      private Flow.Subscription subscription;
+
+      @Override
+      public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+      }
+
+      @Override
+      public void onNext(ValidationResult result) {
+        results.add(result);
+        subscription.request(1);
+      }
+
+      @Override
+      public void onError(Throwable throwable) {
+        done.completeExceptionally(throwable);
+      }
+
+      @Override
+      public void onComplete() {
+        done.complete(null);
+      }
+    });
+
+    try (SubmissionPublisher<Json> publisher = new SubmissionPublisher<>()) {
+      publisher.subscribe(processor);
+      for (Json instance : instances) {
+        publisher.submit(instance);
+      }
+    }
+
+    done.get();
+    assertEquals(instances.size(), results.size());
+    for (int i = 0; i < instances.size(); i++) {
+      assertEquals(instances.get(i), results.get(i).getInstance());
+      assertEquals(new Validator().validate(schema, instances.get(i)), results.get(i).getErrors());
+    }
+  }
+
+  @Test
+  public void testValidationProcessorCancel() throws Exception {
+    Gson gson = new Gson();
+    Schema schema = gson.fromJson("{\"type\": \"string\"}", Schema.class);
+    Json instance = new GsonAdapter(gson.fromJson("\"a\"", JsonElement.class));
+
+    // Validations wait in tasks until the test runs them, and are counted.
+    List<Runnable> tasks = new ArrayList<>();
+    int[] validations = new int[1];
+    Validator validator = new Validator() {
+      @Override
+      public List<ValidationError> validate(CompiledSchema schema, Json instance) throws MaxDepthExceededException {
+        validations[0]++;
+        return super.validate(schema, instance);
+      }
+    };
+    validator.setAsyncExecutor(tasks::add);
+
+    ValidationProcessor processor = new ValidationProcessor(validator, CompiledSchema.compile(schema), 4);
+    List<ValidationResult> results = new ArrayList<>();
+    processor.subscribe(new Flow.Subscriber<ValidationResult>() {
+      private Flow.Subscription subscription;
+
+      @Override
+      public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(Long.MAX_VALUE);
+      }
+
+      @Override
+      public void onNext(ValidationResult result) {
+        results.add(result);
+        subscription.cancel();
+      }
+
+      @Override
+      public void onError(Throwable throwable) {
+      }
+
+      @Override
+      public void onComplete() {
+      }
+    });
+
+    boolean[] upstreamCancelled = new boolean[1];
+    processor.onSubscribe(new Flow.Subscription() {
+      @Override
+      public void request(long n) {
+      }
+
+      @Override
+      public void cancel() {
+        upstreamCancelled[0] = true;
+      }
+    });
+
+    for (int i = 0; i < 3; i++) {
+      processor.onNext(instance);
+    }
+
+    // The first result cancels the subscription. The validations queued
+    // behind it are skipped, and later instances aren't validated at all.
+    for (Runnable task : new ArrayList<>(tasks)) {
+      task.run();
+    }
+    processor.onNext(instance);
+
+    assertEquals(1, results.size());
+    assertEquals(1, validations[0]);
+    assertEquals(3, tasks.size());
+    assertTrue(upstreamCancelled[0]);
+  }
 
   @TestFactory
   public List<DynamicTest> testValidate() throws JsonIOException, JsonSyntaxException, UnsupportedEncodingException {
@@ -63,13 +757,44 @@ public class GsonValidatorTest {
     List<DynamicTest> tests = new ArrayList<>();
     for (Map.Entry<String, TestCase> testCase : testCases.entrySet()) {
       tests.add(DynamicTest.dynamicTest(testCase.getKey(), () -> {
-        assumeFalse(IGNORED_SPEC_TESTS.contains(testCase.getKey()));
         testCase.getValue().schema.verify();
 
         List<ValidationError> expected = testCase.getValue().errors;
         List<ValidationError> actual = new Validator().validate(testCase.getValue().schema,
             new GsonAdapter(testCase.getValue().instance));
 
+        // Compiled schemas must produce exactly the same errors, in the same
+        // order, as their uncompiled counterparts.
+        assertEquals(actual, new Validator().validate(CompiledSchema.compile(testCase.getValue().schema),
+            new GsonAdapter(testCase.getValue().instance)));
+
+        // So must parallel validation, even when it splits every array and
+        // object it can.
+        Validator parallel = new Validator();
+        parallel.setParallelThreshold(1);
+        assertEquals(actual,
+            parallel.validate(testCase.getValue().schema, new GsonAdapter(testCase.getValue().instance)));
+        assertEquals(actual.isEmpty(),
+            parallel.isValid(testCase.getValue().schema, new GsonAdapter(testCase.getValue().instance)));
+
+        // So must the class generated for the schema, under every maxErrors.
+        CompiledSchema compiled = CompiledSchema.compile(testCase.getValue().schema);
+        Validator generated = new Validator();
+        generated.setCompileThreshold(1);
+        assertEquals(actual, generated.validate(compiled, new GsonAdapter(testCase.getValue().instance)));
+        for (SchemaNode node : compiled.getNodes()) {
+          if (node.form == Form.PROPERTIES || node.form == Form.ENUM || node.form == Form.DISCRIMINATOR) {
+            assertNotNull(node.generated);
+          }
+        }
+        for (int maxErrors = 1; maxErrors < actual.size(); maxErrors++) {
+          Validator interpreter = new Validator();
+          interpreter.setMaxErrors(maxErrors);
+          generated.setMaxErrors(maxErrors);
+          assertEquals(interpreter.validate(compiled, new GsonAdapter(testCase.getValue().instance)),
+              generated.validate(compiled, new GsonAdapter(testCase.getValue().instance)));
+        }
+
         expected.sort((e1, e2) -> {
           String a = String.join("/", e1.getSchemaPath()) + ":" + String.join("/", e1.getInstancePath());
           String b = String.join("/", e2.getSchemaPath()) + ":" + String.join("/", e2.getInstancePath());
@@ -83,6 +808,26 @@ public class GsonValidatorTest {
         });
 
         assertEquals(expected, actual);
+
+        // Streaming validation must find the same errors, though not
+        // necessarily in the same order.
+        JsonReader reader = new JsonReader(new StringReader(testCase.getValue().instance.toString()));
+        List<ValidationError> streamed = new Validator().validate(testCase.getValue().schema,
+            new GsonStreamAdapter(reader));
+
+        streamed.sort((e1, e2) -> {
+          String a = String.join("/", e1.getSchemaPath()) + ":" + String.join("/", e1.getInstancePath());
+          String b = String.join("/", e2.getSchemaPath()) + ":" + String.join("/", e2.getInstancePath());
+          return a.compareTo(b);
+        });
+
+        assertEquals(expected, streamed);
+
+        assertEquals(expected.isEmpty(),
+            new Validator().isValid(testCase.getValue().schema, new GsonAdapter(testCase.getValue().instance)));
+        reader = new JsonReader(new StringReader(testCase.getValue().instance.toString()));
+        assertEquals(expected.isEmpty(),
+            new Validator().isValid(testCase.getValue().schema, new GsonStreamAdapter(reader)));
       }));
     }
 
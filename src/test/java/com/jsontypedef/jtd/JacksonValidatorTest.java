@@ -2,7 +2,7 @@ package com.jsontypedef.jtd;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
-import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -12,13 +12,21 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.junit.jupiter.api.DynamicTest;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestFactory;
@@ -32,7 +40,8 @@ public class JacksonValidatorTest {
 
     Validator validator = new Validator();
     validator.setMaxDepth(3);
-    assertThrows(MaxDepthExceededException.class, () -> validator.validate(schema, null));
+    assertThrows(MaxDepthExceededException.class, () -> validator.validate(schema, (Json) null));
+    assertThrows(MaxDepthExceededException.class, () -> validator.isValid(schema, (Json) null));
   }
 
   @Test
@@ -47,11 +56,269 @@ public class JacksonValidatorTest {
     assertEquals(3, validator.validate(schema, new JacksonAdapter(instance)).size());
   }
 
-  // We ignore two test cases from the standard spec. Both of these are due to
-  // the fact that the Java standard library's version of RFC3339 does not
-  // support leap seconds.
-  private static final List<String> IGNORED_SPEC_TESTS = Arrays.asList("timestamp type schema - 1990-12-31T23:59:60Z",
-      "timestamp type schema - 1990-12-31T15:59:60-08:00");
+  @Test
+  public void testMaxErrorsStreaming() throws MaxDepthExceededException, IOException {
+    ObjectMapper objectMapper = new ObjectMapper();
+    Schema schema = objectMapper.readValue("{\"elements\": {\"type\": \"string\"}}", Schema.class);
+
+    JsonParser parser = objectMapper.getFactory().createParser("[1, 1, 1, 1, 1]");
+
+    Validator validator = new Validator();
+    validator.setMaxErrors(3);
+    assertEquals(3, validator.validate(schema, new JacksonStreamAdapter(parser)).size());
+  }
+
+  @Test
+  public void testMaxBufferSize() throws MaxDepthExceededException, IOException {
+    ObjectMapper objectMapper = new ObjectMapper();
+    Schema schema = objectMapper.readValue(
+        "{\"discriminator\": \"kind\", \"mapping\": {\"a\": {\"properties\": {\"x\": {}}}}}", Schema.class);
+
+    Validator validator = new Validator();
+    validator.setMaxBufferSize(16);
+
+    JsonParser parser = objectMapper.getFactory().createParser("{\"kind\": \"a\", \"x\": \"xxxxxxxxxxxxxxxxxxxx\"}");
+    assertEquals(0, validator.validate(schema, new JacksonStreamAdapter(parser)).size());
+
+    JsonParser tagLast = objectMapper.getFactory().createParser("{\"x\": \"xxxxxxxxxxxxxxxxxxxx\", \"kind\": \"a\"}");
+    assertThrows(MaxBufferExceededException.class,
+        () -> validator.validate(schema, new JacksonStreamAdapter(tagLast)));
+  }
+
+  @Test
+  public void testManyRequiredPropertiesStreaming() throws MaxDepthExceededException, IOException {
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    // Streaming validation tracks up to 64 required properties in a bitmask,
+    // and any more than that in an array.
+    for (int count : new int[] { 63, 64, 65 }) {
+      ObjectNode properties = objectMapper.createObjectNode();
+      ObjectNode instance = objectMapper.createObjectNode();
+      for (int i = 0; i < count; i++) {
+        properties.putObject("k" + i);
+        instance.put("k" + i, i);
+      }
+
+      Schema schema = objectMapper.treeToValue(objectMapper.createObjectNode().set("properties", properties),
+          Schema.class);
+
+      Validator validator = new Validator();
+      String json = objectMapper.writeValueAsString(instance);
+      assertEquals(0, validator.validate(schema, new JacksonStreamAdapter(objectMapper.getFactory().createParser(json)))
+          .size());
+      assertTrue(validator.isValid(schema, new JacksonStreamAdapter(objectMapper.getFactory().createParser(json))));
+
+      instance.remove("k" + (count - 1));
+      json = objectMapper.writeValueAsString(instance);
+      assertEquals(validator.validate(schema, new JacksonAdapter(instance)),
+          validator.validate(schema, new JacksonStreamAdapter(objectMapper.getFactory().createParser(json))));
+      assertEquals(false,
+          validator.isValid(schema, new JacksonStreamAdapter(objectMapper.getFactory().createParser(json))));
+    }
+  }
+
+  @Test
+  public void testLongIntegerLiterals() throws MaxDepthExceededException, IOException {
+    ObjectMapper objectMapper = new ObjectMapper();
+    Schema schema = objectMapper.readValue("{\"type\": \"uint32\"}", Schema.class);
+
+    // Jackson reads integers as longs up to the range of a long, and as big
+    // integers beyond it.
+    assertTrue(new JacksonAdapter(objectMapper.readTree("9223372036854775807")).isLong());
+    assertEquals(false, new JacksonAdapter(objectMapper.readTree("9223372036854775808")).isLong());
+    assertEquals(false, new JacksonAdapter(objectMapper.readTree("-9223372036854775809")).isLong());
+
+    Validator validator = new Validator();
+    for (String literal : new String[] { "4294967296", "9223372036854775807", "9223372036854775808",
+        "18446744073709551617", "-9223372036854775809" }) {
+      assertEquals(false, validator.isValid(schema, new JacksonAdapter(objectMapper.readTree(literal))), literal);
+      assertEquals(false,
+          validator.isValid(schema, new JacksonStreamAdapter(objectMapper.getFactory().createParser(literal))),
+          literal);
+    }
+
+    assertTrue(validator.isValid(schema, new JacksonAdapter(objectMapper.readTree("4294967295"))));
+    assertTrue(
+        validator.isValid(schema, new JacksonStreamAdapter(objectMapper.getFactory().createParser("4294967295"))));
+  }
+
+  @Test
+  public void testPropertiesOutOfOrder() throws MaxDepthExceededException, IOException {
+    ObjectMapper objectMapper = new ObjectMapper();
+    Schema schema = objectMapper.readValue("{\"properties\": {\"a\": {\"type\": \"uint8\"}, \"b\": {\"type\": "
+        + "\"string\"}}, \"optionalProperties\": {\"c\": {\"type\": \"string\"}}}", Schema.class);
+
+    // Member names must be matched by their contents, not by identity.
+    JsonFactory factory = JsonFactory.builder().disable(JsonFactory.Feature.INTERN_FIELD_NAMES)
+        .disable(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES).build();
+    String json = "{\"c\": 1, \"x\": 1, \"b\": 1, \"a\": 1000}";
+
+    ValidationError a = new ValidationError(Arrays.asList("a"), Arrays.asList("properties", "a", "type"));
+    ValidationError b = new ValidationError(Arrays.asList("b"), Arrays.asList("properties", "b", "type"));
+    ValidationError c = new ValidationError(Arrays.asList("c"), Arrays.asList("optionalProperties", "c", "type"));
+    ValidationError x = new ValidationError(Arrays.asList("x"), Arrays.asList());
+
+    Validator validator = new Validator();
+    assertEquals(Arrays.asList(a, b, c, x),
+        validator.validate(schema, new JacksonAdapter(objectMapper.readTree(json))));
+    assertEquals(Arrays.asList(c, x, b, a),
+        validator.validate(schema, new JacksonStreamAdapter(factory.createParser(json))));
+    assertEquals(false, validator.isValid(schema, new JacksonStreamAdapter(factory.createParser(json))));
+
+    String valid = "{\"c\": \"c\", \"b\": \"b\", \"a\": 1}";
+    assertTrue(validator.isValid(schema, new JacksonAdapter(objectMapper.readTree(valid))));
+    assertTrue(validator.isValid(schema, new JacksonStreamAdapter(factory.createParser(valid))));
+  }
+
+  @Test
+  public void testEnumMatching() throws MaxDepthExceededException, IOException {
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    // "Aa" and "BB" have the same hash code, and so do all four of their
+    // combinations. Enum values must also not match their prefixes or
+    // extensions.
+    Schema schema = objectMapper.readValue(
+        "{\"enum\": [\"AaAa\", \"BBBB\", \"AaBB\", \"a\", \"ab\", \"abc\"]}", Schema.class);
+
+    Validator validator = new Validator();
+    for (String value : new String[] { "AaAa", "BBBB", "AaBB", "BBAa", "a", "ab", "abc", "abcd", "b", "" }) {
+      boolean expected = Arrays.asList("AaAa", "BBBB", "AaBB", "a", "ab", "abc").contains(value);
+      String json = objectMapper.writeValueAsString(value);
+
+      assertEquals(expected, validator.isValid(schema, new JacksonAdapter(objectMapper.readTree(json))), value);
+      assertEquals(expected,
+          validator.isValid(schema, new JacksonStreamAdapter(objectMapper.getFactory().createParser(json))), value);
+      assertEquals(expected ? 0 : 1,
+          validator.validate(schema, new JacksonStreamAdapter(objectMapper.getFactory().createParser(json))).size(),
+          value);
+    }
+  }
+
+  @Test
+  public void testDuplicateMembersStreaming() throws MaxDepthExceededException, IOException {
+    ObjectMapper objectMapper = new ObjectMapper();
+    Schema schema = objectMapper.readValue("{\"properties\": {\"a\": {\"type\": \"uint8\"}, \"b\": {}}}", Schema.class);
+
+    // Streams may repeat a member. Every occurrence is validated, and a
+    // repeated required property still counts once.
+    String json = "{\"a\": 1000, \"a\": 1, \"c\": 1, \"c\": 1}";
+    ValidationError a = new ValidationError(Arrays.asList("a"), Arrays.asList("properties", "a", "type"));
+    ValidationError c = new ValidationError(Arrays.asList("c"), Arrays.asList());
+    ValidationError b = new ValidationError(Arrays.asList(), Arrays.asList("properties", "b"));
+
+    Validator validator = new Validator();
+    assertEquals(Arrays.asList(a, c, c, b),
+        validator.validate(schema, new JacksonStreamAdapter(objectMapper.getFactory().createParser(json))));
+
+    String valid = "{\"b\": 1, \"a\": 1, \"b\": 2, \"a\": 2}";
+    assertEquals(0,
+        validator.validate(schema, new JacksonStreamAdapter(objectMapper.getFactory().createParser(valid))).size());
+    assertTrue(validator.isValid(schema, new JacksonStreamAdapter(objectMapper.getFactory().createParser(valid))));
+  }
+
+  @Test
+  public void testMaxErrorsParallel() throws MaxDepthExceededException, JsonMappingException, JsonProcessingException {
+    ObjectMapper objectMapper = new ObjectMapper();
+    Schema schema = objectMapper.readValue("{\"values\": {\"type\": \"uint8\"}}", Schema.class);
+
+    ObjectNode object = objectMapper.createObjectNode();
+    for (int i = 0; i < 10000; i++) {
+      object.put("k" + i, i % 7 == 0 ? 1000 : i % 256);
+    }
+
+    Validator sequential = new Validator();
+    sequential.setMaxErrors(50);
+
+    Validator parallel = new Validator();
+    parallel.setMaxErrors(50);
+    parallel.setParallelThreshold(100);
+
+    assertEquals(sequential.validate(schema, new JacksonAdapter(object)),
+        parallel.validate(schema, new JacksonAdapter(object)));
+  }
+
+  @Test
+  public void testValidateAll() throws MaxDepthExceededException, JsonMappingException, JsonProcessingException {
+    ObjectMapper objectMapper = new ObjectMapper();
+    Schema schema = objectMapper.readValue("{\"elements\": {\"type\": \"uint8\"}}", Schema.class);
+
+    List<Json> instances = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      instances.add(new JacksonAdapter(objectMapper.readTree(i % 3 == 0 ? "[1, 1000, 1000]" : "[1]")));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    Validator validator = new Validator();
+    validator.setMaxErrors(1);
+    validator.setExecutor(executor);
+
+    BatchResult result;
+    try {
+      result = validator.validateAll(schema, instances);
+    } finally {
+      executor.shutdown();
+    }
+
+    assertEquals(1000, result.size());
+    assertEquals(334, result.getInvalidCount());
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(validator.validate(schema, instances.get(i)), result.getErrors(i));
+      assertEquals(i % 3 != 0, result.isValid(i));
+    }
+  }
+
+  @Test
+  public void testValidateAsync() throws Exception {
+    ObjectMapper objectMapper = new ObjectMapper();
+    Schema schema = objectMapper.readValue("{\"elements\": {\"type\": \"string\"}}", Schema.class);
+    Json instance = new JacksonAdapter(objectMapper.readTree("[1, \"a\", 1]"));
+
+    ExecutorService executor = Executors.newFixedThreadPool(1);
+    Validator validator = new Validator();
+    validator.setAsyncExecutor(executor);
+    validator.setMaxConcurrency(1);
+
+    try {
+      List<CompletableFuture<List<ValidationError>>> futures = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        futures.add(validator.validateAsync(CompiledSchema.compile(schema), instance));
+      }
+
+      for (CompletableFuture<List<ValidationError>> future : futures) {
+        assertEquals(validator.validate(schema, instance), future.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    // Rejected validations fail their future, rather than being lost.
+    ExecutionException e = assertThrows(ExecutionException.class,
+        () -> validator.validateAsync(schema, instance).get());
+    assertTrue(e.getCause() instanceof RejectedExecutionException);
+
+    // An executor that takes one validation and then rejects every other one.
+    // Each rejection passes the slot on to the next waiting validation, and a
+    // long queue of them must not overflow the stack.
+    List<Runnable> accepted = new ArrayList<>();
+    validator.setAsyncExecutor(task -> {
+      if (!accepted.isEmpty()) {
+        throw new RejectedExecutionException();
+      }
+
+      accepted.add(task);
+    });
+
+    List<CompletableFuture<List<ValidationError>>> futures = new ArrayList<>();
+    for (int i = 0; i < 100000; i++) {
+      futures.add(validator.validateAsync(schema, instance));
+    }
+
+    accepted.get(0).run();
+    assertEquals(validator.validate(schema, instance), futures.get(0).get());
+    for (int i = 1; i < futures.size(); i++) {
+      assertTrue(futures.get(i).isCompletedExceptionally());
+    }
+  }
 
   @TestFactory
   public List<DynamicTest> testValidate()
@@ -67,13 +334,32 @@ public class JacksonValidatorTest {
     List<DynamicTest> tests = new ArrayList<>();
     for (Map.Entry<String, TestCase> testCase : testCases.entrySet()) {
       tests.add(DynamicTest.dynamicTest(testCase.getKey(), () -> {
-        assumeFalse(IGNORED_SPEC_TESTS.contains(testCase.getKey()));
         testCase.getValue().schema.verify();
 
         List<ValidationError> expected = testCase.getValue().errors;
         List<ValidationError> actual = new Validator().validate(testCase.getValue().schema,
             new JacksonAdapter(testCase.getValue().instance));
 
+        // Compiled schemas must produce exactly the same errors, in the same
+        // order, as their uncompiled counterparts.
+        assertEquals(actual, new Validator().validate(CompiledSchema.compile(testCase.getValue().schema),
+            new JacksonAdapter(testCase.getValue().instance)));
+
+        // So must parallel validation, even when it splits every array and
+        // object it can.
+        Validator parallel = new Validator();
+        parallel.setParallelThreshold(1);
+        assertEquals(actual,
+            parallel.validate(testCase.getValue().schema, new JacksonAdapter(testCase.getValue().instance)));
+        assertEquals(actual.isEmpty(),
+            parallel.isValid(testCase.getValue().schema, new JacksonAdapter(testCase.getValue().instance)));
+
+        // So must the class generated for the schema.
+        Validator generated = new Validator();
+        generated.setCompileThreshold(1);
+        assertEquals(actual, generated.validate(CompiledSchema.compile(testCase.getValue().schema),
+            new JacksonAdapter(testCase.getValue().instance)));
+
         expected.sort((e1, e2) -> {
           String a = String.join("/", e1.getSchemaPath()) + ":" + String.join("/", e1.getInstancePath());
           String b = String.join("/", e2.getSchemaPath()) + ":" + String.join("/", e2.getInstancePath());
@@ -87,6 +373,27 @@ public class JacksonValidatorTest {
         });
 
         assertEquals(expected, actual);
+
+        // Streaming validation must find the same errors, though not
+        // necessarily in the same order.
+        JsonParser parser = objectMapper.getFactory()
+            .createParser(objectMapper.writeValueAsString(testCase.getValue().instance));
+        List<ValidationError> streamed = new Validator().validate(testCase.getValue().schema,
+            new JacksonStreamAdapter(parser));
+
+        streamed.sort((e1, e2) -> {
+          String a = String.join("/", e1.getSchemaPath()) + ":" + String.join("/", e1.getInstancePath());
+          String b = String.join("/", e2.getSchemaPath()) + ":" + String.join("/", e2.getInstancePath());
+          return a.compareTo(b);
+        });
+
+        assertEquals(expected, streamed);
+
+        assertEquals(expected.isEmpty(),
+            new Validator().isValid(testCase.getValue().schema, new JacksonAdapter(testCase.getValue().instance)));
+        parser = objectMapper.getFactory().createParser(objectMapper.writeValueAsString(testCase.getValue().instance));
+        assertEquals(expected.isEmpty(),
+            new Validator().isValid(testCase.getValue().schema, new JacksonStreamAdapter(parser)));
       }));
     }
 
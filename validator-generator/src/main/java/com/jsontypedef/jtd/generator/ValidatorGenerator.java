@@ -0,0 +1,733 @@
+package com.jsontypedef.jtd.generator;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.jsontypedef.jtd.InvalidSchemaException;
+import com.jsontypedef.jtd.Schema;
+
+/**
+ * Generates Java source code for a validator dedicated to a single schema.
+ *
+ * The generated class has no dependencies beyond the {@code Json},
+ * {@code ValidationError}, and {@code MaxDepthExceededException} types of
+ * {@code jtd}. It does no schema parsing, reflection, or interpretation at
+ * runtime, and returns exactly the same errors, in the same order, as
+ * {@code Validator} does for the same schema.
+ *
+ * The generated class mirrors the {@code Validator} API: it has
+ * {@code maxDepth} and {@code maxErrors} properties, and a {@code validate}
+ * method that accepts a {@code Json} instance.
+ */
+public class ValidatorGenerator {
+  private final StringBuilder out = new StringBuilder();
+  private final List<Schema> nodes = new ArrayList<>();
+  private final List<String> parentTags = new ArrayList<>();
+  private final Map<String, Integer> definitionIds = new HashMap<>();
+  private int indent;
+  private boolean usesTimestamps;
+  private boolean usesCollections;
+
+  private ValidatorGenerator() {
+  }
+
+  /**
+   * Generates a validator class from a JSON Typedef schema file.
+   *
+   * Usage: {@code ValidatorGenerator SCHEMA_FILE PACKAGE CLASS_NAME OUTPUT_DIR}.
+   * The generated source is written to {@code OUTPUT_DIR}, in the
+   * subdirectory corresponding to {@code PACKAGE}.
+   *
+   * @param args the command-line arguments
+   * @throws IOException if the schema cannot be read or the source written
+   * @throws InvalidSchemaException if the schema is not valid
+   */
+  public static void main(String[] args) throws IOException, InvalidSchemaException {
+    if (args.length != 4) {
+      System.err.println("usage: ValidatorGenerator SCHEMA_FILE PACKAGE CLASS_NAME OUTPUT_DIR");
+      System.exit(1);
+    }
+
+    Schema schema;
+    try (Reader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+      schema = new Gson().fromJson(reader, Schema.class);
+    }
+
+    String packageName = args[1];
+    String className = args[2];
+
+    Path dir = Paths.get(args[3]);
+    if (!packageName.isEmpty()) {
+      dir = dir.resolve(packageName.replace('.', '/'));
+    }
+
+    Files.createDirectories(dir);
+    try (Writer writer = Files.newBufferedWriter(dir.resolve(className + ".java"), StandardCharsets.UTF_8)) {
+      writer.write(generate(schema, packageName, className));
+    }
+  }
+
+  /**
+   * Generates the source code of a validator class for {@code schema}.
+   *
+   * @param schema the root schema the generated class validates against
+   * @param packageName the package of the generated class, or the empty string
+   * for the default package
+   * @param className the simple name of the generated class
+   * @return the Java source code of the generated class
+   * @throws InvalidSchemaException if the schema is not valid
+   */
+  public static String generate(Schema schema, String packageName, String className)
+      throws InvalidSchemaException {
+    schema.verify();
+
+    ValidatorGenerator generator = new ValidatorGenerator();
+    generator.generateClass(schema, packageName, className);
+    return generator.out.toString();
+  }
+
+  private void generateClass(Schema schema, String packageName, String className) {
+    // Number every definition up front, so that refs can be emitted as calls
+    // to methods that may not have been generated yet.
+    if (schema.getDefinitions() != null) {
+      for (Map.Entry<String, Schema> entry : schema.getDefinitions().entrySet()) {
+        definitionIds.put(entry.getKey(), addNode(entry.getValue(), null));
+      }
+    }
+
+    int rootId = addNode(schema, null);
+
+    if (!packageName.isEmpty()) {
+      line("package " + packageName + ";");
+      line("");
+    }
+
+    line("import java.util.ArrayList;");
+    line("import java.util.List;");
+    line("import java.util.Map;");
+    line("");
+    line("import com.jsontypedef.jtd.Json;");
+    line("import com.jsontypedef.jtd.MaxDepthExceededException;");
+    line("import com.jsontypedef.jtd.ValidationError;");
+    line("");
+    line("/**");
+    line(" * Validates instances against a fixed JSON Typedef schema.");
+    line(" *");
+    line(" * Generated by ValidatorGenerator. Do not edit.");
+    line(" */");
+    open("public final class " + className + " {");
+    line("private int maxDepth;");
+    line("private int maxErrors;");
+    line("");
+    open("public int getMaxDepth() {");
+    line("return maxDepth;");
+    close("}");
+    line("");
+    open("public void setMaxDepth(int maxDepth) {");
+    line("this.maxDepth = maxDepth;");
+    close("}");
+    line("");
+    open("public int getMaxErrors() {");
+    line("return maxErrors;");
+    close("}");
+    line("");
+    open("public void setMaxErrors(int maxErrors) {");
+    line("this.maxErrors = maxErrors;");
+    close("}");
+    line("");
+    open("public List<ValidationError> validate(Json instance) throws MaxDepthExceededException {");
+    line("ValidationState state = new ValidationState(maxDepth, maxErrors);");
+    open("try {");
+    line("validate" + rootId + "(state, instance);");
+    closeOpen("} catch (MaxErrorsReachedException e) {");
+    line("// Nothing to be done here. This is not an actual error condition, just a");
+    line("// circuit-breaker.");
+    close("}");
+    line("");
+    line("return state.errors;");
+    close("}");
+
+    // nodes grows as methods are generated, so this cannot be a for-each loop.
+    for (int id = 0; id < nodes.size(); id++) {
+      line("");
+      generateMethod(id, nodes.get(id), parentTags.get(id));
+    }
+
+    if (usesTimestamps) {
+      line("");
+      generateTimestamp();
+    }
+
+    if (usesCollections) {
+      line("");
+      generateCollectionJson();
+    }
+
+    line("");
+    generateState();
+    close("}");
+  }
+
+  private int addNode(Schema schema) {
+    return addNode(schema, null);
+  }
+
+  private int addNode(Schema schema, String parentTag) {
+    nodes.add(schema);
+    parentTags.add(parentTag);
+    return nodes.size() - 1;
+  }
+
+  private void generateMethod(int id, Schema schema, String parentTag) {
+    open("private static void validate" + id
+        + "(ValidationState state, Json instance) throws MaxDepthExceededException, MaxErrorsReachedException {");
+    if (schema.isNullable()) {
+      open("if (instance.isNull()) {");
+      line("return;");
+      close("}");
+      line("");
+    }
+
+    switch (schema.getForm()) {
+      case EMPTY:
+        break;
+      case REF:
+        line("state.pushRef(" + literal(schema.getRef()) + ");");
+        line("validate" + definitionIds.get(schema.getRef()) + "(state, instance);");
+        line("state.popRef();");
+        break;
+      case TYPE:
+        generateType(schema);
+        break;
+      case ENUM:
+        line("state.pushSchemaToken(\"enum\");");
+        open("if (!instance.isString()) {");
+        line("state.pushError();");
+        closeOpen("} else {");
+        open("switch (instance.asString()) {");
+        for (String value : schema.getEnum()) {
+          line("case " + literal(value) + ":");
+        }
+        indent++;
+        line("break;");
+        indent--;
+        line("default:");
+        indent++;
+        line("state.pushError();");
+        indent--;
+        close("}");
+        close("}");
+        line("state.popSchemaToken();");
+        break;
+      case ELEMENTS:
+        line("state.pushSchemaToken(\"elements\");");
+        open("if (!instance.isArray()) {");
+        line("state.pushError();");
+        closeOpen("} else {");
+        line("instance = collection(instance);");
+        usesCollections = true;
+        open("for (int index = 0, size = instance.size(); index < size; index++) {");
+        line("state.pushInstanceToken(Integer.toString(index));");
+        line("validate" + addNode(schema.getElements()) + "(state, instance.get(index));");
+        line("state.popInstanceToken();");
+        close("}");
+        close("}");
+        line("state.popSchemaToken();");
+        break;
+      case PROPERTIES:
+        generateProperties(schema, parentTag);
+        break;
+      case VALUES:
+        line("state.pushSchemaToken(\"values\");");
+        open("if (instance.isObject()) {");
+        open("for (Map.Entry<String, Json> entry : instance.entries()) {");
+        line("state.pushInstanceToken(entry.getKey());");
+        line("validate" + addNode(schema.getValues()) + "(state, entry.getValue());");
+        line("state.popInstanceToken();");
+        close("}");
+        closeOpen("} else {");
+        line("state.pushError();");
+        close("}");
+        line("state.popSchemaToken();");
+        break;
+      case DISCRIMINATOR:
+        generateDiscriminator(schema);
+        break;
+    }
+
+    close("}");
+  }
+
+  private void generateType(Schema schema) {
+    line("state.pushSchemaToken(\"type\");");
+    switch (schema.getType()) {
+      case BOOLEAN:
+        open("if (!instance.isBoolean()) {");
+        line("state.pushError();");
+        close("}");
+        break;
+      case FLOAT32:
+      case FLOAT64:
+        open("if (!instance.isNumber()) {");
+        line("state.pushError();");
+        close("}");
+        break;
+      case INT8:
+        generateInt("-128", "127");
+        break;
+      case UINT8:
+        generateInt("0", "255");
+        break;
+      case INT16:
+        generateInt("-32768", "32767");
+        break;
+      case UINT16:
+        generateInt("0", "65535");
+        break;
+      case INT32:
+        generateInt("-2147483648", "2147483647");
+        break;
+      case UINT32:
+        generateInt("0", "4294967295L");
+        break;
+      case STRING:
+        open("if (!instance.isString()) {");
+        line("state.pushError();");
+        close("}");
+        break;
+      case TIMESTAMP:
+        open("if (!instance.isString()) {");
+        line("state.pushError();");
+        closeOpen("} else {");
+        open("if (!isTimestamp(instance.asString())) {");
+        line("state.pushError();");
+        close("}");
+        close("}");
+        usesTimestamps = true;
+        break;
+    }
+    line("state.popSchemaToken();");
+  }
+
+  private void generateInt(String min, String max) {
+    open("if (!instance.isNumber()) {");
+    line("state.pushError();");
+    closeOpen("} else if (instance.isLong()) {");
+    line("long val = instance.asLong();");
+    open("if (val < " + min + " || val > " + max + ") {");
+    line("state.pushError();");
+    close("}");
+    closeOpen("} else {");
+    line("double val = instance.asNumber();");
+    open("if (val < " + min + " || val > " + max + " || val != Math.round(val)) {");
+    line("state.pushError();");
+    close("}");
+    close("}");
+  }
+
+  private void generateProperties(Schema schema, String parentTag) {
+    Map<String, Schema> properties = schema.getProperties() == null ? new HashMap<>() : schema.getProperties();
+    Map<String, Schema> optionalProperties = schema.getOptionalProperties() == null ? new HashMap<>()
+        : schema.getOptionalProperties();
+
+    open("if (instance.isObject()) {");
+    line("instance = collection(instance);");
+    usesCollections = true;
+
+    // As in Validator, check the properties in schema order, and then walk
+    // the instance for additional properties only if some of its members
+    // weren't found as properties.
+    boolean countFound = !schema.getAdditionalProperties();
+    if (!properties.isEmpty() || !optionalProperties.isEmpty()) {
+      line("Json value;");
+    }
+    if (countFound) {
+      line("int found = 0;");
+    }
+
+    generatePropertyChecks(properties, "properties", countFound);
+    generatePropertyChecks(optionalProperties, "optionalProperties", countFound);
+
+    if (!schema.getAdditionalProperties()) {
+      int expected = 0;
+      if (parentTag != null && !properties.containsKey(parentTag) && !optionalProperties.containsKey(parentTag)) {
+        expected = 1;
+      }
+
+      open("if (instance.size() != found" + (expected == 0 ? "" : " + " + expected) + ") {");
+      open("for (String key : instance.keys()) {");
+      open("switch (key) {");
+      for (String name : properties.keySet()) {
+        line("case " + literal(name) + ":");
+      }
+      for (String name : optionalProperties.keySet()) {
+        line("case " + literal(name) + ":");
+      }
+      if (expected != 0) {
+        line("case " + literal(parentTag) + ":");
+      }
+      if (!properties.isEmpty() || !optionalProperties.isEmpty() || expected != 0) {
+        indent++;
+        line("break;");
+        indent--;
+      }
+      line("default:");
+      indent++;
+      line("state.pushInstanceToken(key);");
+      line("state.pushError();");
+      line("state.popInstanceToken();");
+      line("break;");
+      indent--;
+      close("}");
+      close("}");
+      close("}");
+    }
+
+    closeOpen("} else {");
+    line("state.pushSchemaToken(" + (schema.getProperties() == null ? "\"optionalProperties\"" : "\"properties\"")
+        + ");");
+    line("state.pushError();");
+    line("state.popSchemaToken();");
+    close("}");
+  }
+
+  private void generatePropertyChecks(Map<String, Schema> schemas, String keyword, boolean countFound) {
+    if (schemas.isEmpty()) {
+      return;
+    }
+
+    line("state.pushSchemaToken(\"" + keyword + "\");");
+    for (Map.Entry<String, Schema> entry : schemas.entrySet()) {
+      String key = literal(entry.getKey());
+      line("value = instance.get(" + key + ");");
+      line("state.pushSchemaToken(" + key + ");");
+      if (keyword.equals("properties")) {
+        open("if (value == null) {");
+        line("state.pushError();");
+        closeOpen("} else {");
+      } else {
+        open("if (value != null) {");
+      }
+      if (countFound) {
+        line("found++;");
+      }
+      line("state.pushInstanceToken(" + key + ");");
+      line("validate" + addNode(entry.getValue()) + "(state, value);");
+      line("state.popInstanceToken();");
+      close("}");
+      line("state.popSchemaToken();");
+    }
+    line("state.popSchemaToken();");
+  }
+
+  private void generateDiscriminator(Schema schema) {
+    String tag = literal(schema.getDiscriminator());
+
+    open("if (instance.isObject()) {");
+    // The mapping's method reads the same object again.
+    line("instance = collection(instance);");
+    usesCollections = true;
+    line("Json tag = instance.get(" + tag + ");");
+    open("if (tag == null) {");
+    line("state.pushSchemaToken(\"discriminator\");");
+    line("state.pushError();");
+    line("state.popSchemaToken();");
+    closeOpen("} else if (!tag.isString()) {");
+    line("state.pushSchemaToken(\"discriminator\");");
+    line("state.pushInstanceToken(" + tag + ");");
+    line("state.pushError();");
+    line("state.popInstanceToken();");
+    line("state.popSchemaToken();");
+    closeOpen("} else {");
+    line("String tagValue = tag.asString();");
+    open("switch (tagValue) {");
+    for (Map.Entry<String, Schema> entry : schema.getMapping().entrySet()) {
+      // The tag is known when the mapping's method is generated, so the
+      // exception for it among additional properties is baked in there.
+      line("case " + literal(entry.getKey()) + ":");
+      indent++;
+      line("state.pushSchemaToken(\"mapping\");");
+      line("state.pushSchemaToken(tagValue);");
+      line("validate" + addNode(entry.getValue(), schema.getDiscriminator()) + "(state, instance);");
+      line("state.popSchemaToken();");
+      line("state.popSchemaToken();");
+      line("break;");
+      indent--;
+    }
+    line("default:");
+    indent++;
+    line("state.pushSchemaToken(\"mapping\");");
+    line("state.pushInstanceToken(" + tag + ");");
+    line("state.pushError();");
+    line("state.popInstanceToken();");
+    line("state.popSchemaToken();");
+    indent--;
+    close("}");
+    close("}");
+    closeOpen("} else {");
+    line("state.pushSchemaToken(\"discriminator\");");
+    line("state.pushError();");
+    line("state.popSchemaToken();");
+    close("}");
+  }
+
+  // Generated validators can't depend on jtd's internal RFC 3339 checker, so
+  // they carry their own copy of it.
+  private void generateTimestamp() {
+    open("private static boolean isTimestamp(String s) {");
+    line("int length = s.length();");
+    open("if (length < 20) {");
+    line("return false;");
+    close("}");
+    line("");
+    line("int year = digits(s, 0, 4);");
+    line("int month = digits(s, 5, 2);");
+    line("int day = digits(s, 8, 2);");
+    open("if (year < 0 || s.charAt(4) != '-' || month < 1 || month > 12 || s.charAt(7) != '-' || day < 1");
+    line("    || day > daysInMonth(year, month)) {");
+    line("return false;");
+    close("}");
+    line("");
+    open("if (s.charAt(10) != 'T' && s.charAt(10) != 't') {");
+    line("return false;");
+    close("}");
+    line("");
+    line("int hour = digits(s, 11, 2);");
+    line("int minute = digits(s, 14, 2);");
+    line("int second = digits(s, 17, 2);");
+    open("if (hour < 0 || hour > 23 || s.charAt(13) != ':' || minute < 0 || minute > 59 || s.charAt(16) != ':'");
+    line("    || second < 0 || second > 60) {");
+    line("return false;");
+    close("}");
+    line("");
+    line("int i = 19;");
+    open("if (s.charAt(i) == '.') {");
+    line("int start = ++i;");
+    open("while (i < length && s.charAt(i) >= '0' && s.charAt(i) <= '9') {");
+    line("i++;");
+    close("}");
+    open("if (i == start) {");
+    line("return false;");
+    close("}");
+    close("}");
+    line("");
+    open("if (i == length) {");
+    line("return false;");
+    close("}");
+    open("if (s.charAt(i) == 'Z' || s.charAt(i) == 'z') {");
+    line("return i + 1 == length;");
+    close("}");
+    open("if ((s.charAt(i) != '+' && s.charAt(i) != '-') || i + 6 != length) {");
+    line("return false;");
+    close("}");
+    line("");
+    line("int offsetHour = digits(s, i + 1, 2);");
+    line("int offsetMinute = digits(s, i + 4, 2);");
+    line("return offsetHour >= 0 && offsetHour <= 23 && s.charAt(i + 3) == ':' && offsetMinute >= 0");
+    line("    && offsetMinute <= 59;");
+    close("}");
+    line("");
+    open("private static int digits(String s, int start, int count) {");
+    line("int value = 0;");
+    open("for (int i = start; i < start + count; i++) {");
+    line("char c = s.charAt(i);");
+    open("if (c < '0' || c > '9') {");
+    line("return -1;");
+    close("}");
+    line("value = value * 10 + (c - '0');");
+    close("}");
+    line("return value;");
+    close("}");
+    line("");
+    open("private static int daysInMonth(int year, int month) {");
+    open("switch (month) {");
+    line("case 2:");
+    line("  return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;");
+    line("case 4:");
+    line("case 6:");
+    line("case 9:");
+    line("case 11:");
+    line("  return 30;");
+    line("default:");
+    line("  return 31;");
+    close("}");
+    close("}");
+  }
+
+  // As in Validator, arrays and objects are read once before their members
+  // are, because the default accessors of Json read the whole collection
+  // again on every call. Generated validators can't use jtd's internal
+  // wrapper for this, so they carry their own copy of it.
+  private void generateCollectionJson() {
+    open("private static final ClassValue<Boolean> READS_IN_PLACE = new ClassValue<Boolean>() {");
+    line("@Override");
+    open("protected Boolean computeValue(Class<?> type) {");
+    open("try {");
+    line("return type.getMethod(\"get\", int.class).getDeclaringClass() != Json.class");
+    line("    && type.getMethod(\"get\", String.class).getDeclaringClass() != Json.class;");
+    closeOpen("} catch (NoSuchMethodException e) {");
+    line("return false;");
+    close("}");
+    close("}");
+    close("};");
+    line("");
+    open("private static Json collection(Json json) {");
+    line("return READS_IN_PLACE.get(json.getClass()) ? json : new CollectionJson(json);");
+    close("}");
+    line("");
+    open("private static final class CollectionJson implements Json {");
+    line("private final Json json;");
+    line("private final List<Json> array;");
+    line("private final Map<String, Json> object;");
+    line("");
+    open("CollectionJson(Json json) {");
+    line("this.json = json;");
+    line("this.array = json.isArray() ? json.asArray() : null;");
+    line("this.object = json.isObject() ? json.asObject() : null;");
+    close("}");
+    for (String name : new String[] { "isNull", "isBoolean", "isNumber", "isString" }) {
+      line("");
+      line("@Override");
+      open("public boolean " + name + "() {");
+      line("return false;");
+      close("}");
+    }
+    generateOverride("boolean isArray()", "array != null");
+    generateOverride("boolean isObject()", "object != null");
+    generateOverride("boolean asBoolean()", "json.asBoolean()");
+    generateOverride("double asNumber()", "json.asNumber()");
+    generateOverride("String asString()", "json.asString()");
+    generateOverride("List<Json> asArray()", "array");
+    generateOverride("Map<String, Json> asObject()", "object");
+    generateOverride("int size()", "array != null ? array.size() : object.size()");
+    generateOverride("Json get(int index)", "array.get(index)");
+    generateOverride("Json get(String key)", "object.get(key)");
+    generateOverride("Iterable<String> keys()", "object.keySet()");
+    generateOverride("Iterable<Map.Entry<String, Json>> entries()", "object.entrySet()");
+    close("}");
+  }
+
+  private void generateOverride(String signature, String value) {
+    line("");
+    line("@Override");
+    open("public " + signature + " {");
+    line("return " + value + ";");
+    close("}");
+  }
+
+  private void generateState() {
+    open("private static final class ValidationState {");
+    line("final List<ValidationError> errors = new ArrayList<>();");
+    line("final List<String> instanceTokens = new ArrayList<>();");
+    line("final List<List<String>> schemaTokens = new ArrayList<>();");
+    line("final int maxDepth;");
+    line("final int maxErrors;");
+    line("");
+    open("ValidationState(int maxDepth, int maxErrors) {");
+    line("this.maxDepth = maxDepth;");
+    line("this.maxErrors = maxErrors;");
+    line("schemaTokens.add(new ArrayList<>());");
+    close("}");
+    line("");
+    open("void pushRef(String definition) throws MaxDepthExceededException {");
+    open("if (schemaTokens.size() == maxDepth) {");
+    line("throw new MaxDepthExceededException();");
+    close("}");
+    line("");
+    line("schemaTokens.add(new ArrayList<>());");
+    line("pushSchemaToken(\"definitions\");");
+    line("pushSchemaToken(definition);");
+    close("}");
+    line("");
+    open("void popRef() {");
+    line("schemaTokens.remove(schemaTokens.size() - 1);");
+    close("}");
+    line("");
+    open("void pushSchemaToken(String token) {");
+    line("schemaTokens.get(schemaTokens.size() - 1).add(token);");
+    close("}");
+    line("");
+    open("void popSchemaToken() {");
+    line("List<String> last = schemaTokens.get(schemaTokens.size() - 1);");
+    line("last.remove(last.size() - 1);");
+    close("}");
+    line("");
+    open("void pushInstanceToken(String token) {");
+    line("instanceTokens.add(token);");
+    close("}");
+    line("");
+    open("void popInstanceToken() {");
+    line("instanceTokens.remove(instanceTokens.size() - 1);");
+    close("}");
+    line("");
+    open("void pushError() throws MaxErrorsReachedException {");
+    line("errors.add(new ValidationError(new ArrayList<>(instanceTokens),");
+    line("    new ArrayList<>(schemaTokens.get(schemaTokens.size() - 1))));");
+    line("");
+    open("if (errors.size() == maxErrors) {");
+    line("throw new MaxErrorsReachedException();");
+    close("}");
+    close("}");
+    close("}");
+    line("");
+    open("private static final class MaxErrorsReachedException extends Exception {");
+    line("private static final long serialVersionUID = 1L;");
+    close("}");
+  }
+
+  private void line(String code) {
+    if (!code.isEmpty()) {
+      for (int i = 0; i < indent; i++) {
+        out.append("  ");
+      }
+      out.append(code);
+    }
+    out.append('\n');
+  }
+
+  private void open(String code) {
+    line(code);
+    indent++;
+  }
+
+  private void close(String code) {
+    indent--;
+    line(code);
+  }
+
+  private void closeOpen(String code) {
+    indent--;
+    line(code);
+    indent++;
+  }
+
+  private static String literal(String value) {
+    StringBuilder sb = new StringBuilder("\"");
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      } else if (c < 0x20 || c == 0x7f) {
+        // Unicode escapes are translated before the source is tokenized, so a
+        // Unicode escape of a line terminator would end the literal. Octal
+        // escapes are not translated early.
+        sb.append(String.format("\\%03o", (int) c));
+      } else if (c > 0x7f) {
+        sb.append(String.format("\\u%04x", (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.append('"').toString();
+  }
+}
@@ -0,0 +1,210 @@
+package com.jsontypedef.jtd.generator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.reflect.TypeToken;
+import com.jsontypedef.jtd.GsonAdapter;
+import com.jsontypedef.jtd.Json;
+import com.jsontypedef.jtd.MaxDepthExceededException;
+import com.jsontypedef.jtd.Schema;
+import com.jsontypedef.jtd.Validator;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+public class ValidatorGeneratorTest {
+  @Test
+  public void testMaxDepth() throws Exception {
+    Gson gson = new Gson();
+    Schema schema = gson.fromJson("{\"definitions\": {\"x\": {\"ref\": \"x\"}}, \"ref\": \"x\"}", Schema.class);
+
+    Object validator = compile(Map.of("Loop", schema)).loadClass("generated.Loop").getConstructor().newInstance();
+    validator.getClass().getMethod("setMaxDepth", int.class).invoke(validator, 3);
+
+    InvocationTargetException e = assertThrows(InvocationTargetException.class,
+        () -> validator.getClass().getMethod("validate", Json.class).invoke(validator, (Object) null));
+    assertTrue(e.getCause() instanceof MaxDepthExceededException);
+  }
+
+  @Test
+  public void testJsonWithoutInPlaceAccessors() throws Exception {
+    Gson gson = new Gson();
+    Schema schema = gson.fromJson(
+        "{\"elements\": {\"properties\": {\"a\": {\"type\": \"uint8\"}}}}", Schema.class);
+    JsonArray array = new JsonArray();
+    for (int i = 0; i < 100; i++) {
+      array.add(gson.fromJson("{\"a\": " + i * 3 + "}", JsonElement.class));
+    }
+
+    // As with Validator, reading the array or an object must not copy it
+    // again for every element or member.
+    int[] copies = new int[1];
+    Object validator = compile(Map.of("Rows", schema)).loadClass("generated.Rows").getConstructor().newInstance();
+    Object errors = validator.getClass().getMethod("validate", Json.class).invoke(validator,
+        new CopyingJson(new GsonAdapter(array), copies));
+    assertEquals(14, ((List<?>) errors).size());
+    assertEquals(101, copies[0]);
+  }
+
+  @TestFactory
+  public List<DynamicTest> testGenerate() throws Exception {
+    Gson gson = new Gson();
+
+    Map<String, TestCase> testCases;
+    try (Reader reader = Files.newBufferedReader(Paths.get(System.getProperty("jtd.validationSpec")),
+        StandardCharsets.UTF_8)) {
+      testCases = gson.fromJson(reader, new TypeToken<Map<String, TestCase>>() {
+      }.getType());
+    }
+
+    // Compile every test case's validator in a single javac run; compiling
+    // them one at a time is very slow.
+    Map<String, Schema> schemas = new HashMap<>();
+    List<String> names = new ArrayList<>(testCases.keySet());
+    for (int i = 0; i < names.size(); i++) {
+      schemas.put("Case" + i, testCases.get(names.get(i)).schema);
+    }
+
+    ClassLoader classLoader = compile(schemas);
+
+    List<DynamicTest> tests = new ArrayList<>();
+    for (int i = 0; i < names.size(); i++) {
+      TestCase testCase = testCases.get(names.get(i));
+      String className = "generated.Case" + i;
+
+      tests.add(DynamicTest.dynamicTest(names.get(i), () -> {
+        Object validator = classLoader.loadClass(className).getConstructor().newInstance();
+        Object actual = validator.getClass().getMethod("validate", Json.class).invoke(validator,
+            new GsonAdapter(testCase.instance));
+
+        // Generated validators must return exactly what Validator returns, in
+        // the same order.
+        assertEquals(new Validator().validate(testCase.schema, new GsonAdapter(testCase.instance)), actual);
+      }));
+    }
+
+    return tests;
+  }
+
+  private static ClassLoader compile(Map<String, Schema> schemas) throws Exception {
+    Path dir = Files.createTempDirectory("jtd-generated");
+    Path packageDir = Files.createDirectories(dir.resolve("generated"));
+
+    List<String> args = new ArrayList<>();
+    args.add("-classpath");
+    args.add(System.getProperty("java.class.path"));
+    args.add("-d");
+    args.add(dir.toString());
+
+    for (Map.Entry<String, Schema> entry : schemas.entrySet()) {
+      Path file = packageDir.resolve(entry.getKey() + ".java");
+      Files.write(file,
+          ValidatorGenerator.generate(entry.getValue(), "generated", entry.getKey()).getBytes(StandardCharsets.UTF_8));
+      args.add(file.toString());
+    }
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    if (compiler.run(null, null, null, args.toArray(new String[0])) != 0) {
+      throw new IOException("generated validators failed to compile");
+    }
+
+    return new URLClassLoader(new URL[] { dir.toUri().toURL() }, ValidatorGeneratorTest.class.getClassLoader());
+  }
+
+  // A Json that only implements the methods it has to, and builds a new
+  // collection every time it is asked for one.
+  private static class CopyingJson implements Json {
+    private final Json json;
+    private final int[] copies;
+
+    CopyingJson(Json json, int[] copies) {
+      this.json = json;
+      this.copies = copies;
+    }
+
+    public boolean isNull() {
+      return json.isNull();
+    }
+
+    public boolean isBoolean() {
+      return json.isBoolean();
+    }
+
+    public boolean isNumber() {
+      return json.isNumber();
+    }
+
+    public boolean isString() {
+      return json.isString();
+    }
+
+    public boolean isArray() {
+      return json.isArray();
+    }
+
+    public boolean isObject() {
+      return json.isObject();
+    }
+
+    public boolean asBoolean() {
+      return json.asBoolean();
+    }
+
+    public double asNumber() {
+      return json.asNumber();
+    }
+
+    public String asString() {
+      return json.asString();
+    }
+
+    public List<Json> asArray() {
+      copies[0]++;
+      List<Json> array = new ArrayList<>();
+      for (Json element : json.asArray()) {
+        array.add(new CopyingJson(element, copies));
+      }
+
+      return array;
+    }
+
+    public Map<String, Json> asObject() {
+      copies[0]++;
+      Map<String, Json> object = new LinkedHashMap<>();
+      for (Map.Entry<String, Json> entry : json.asObject().entrySet()) {
+        object.put(entry.getKey(), new CopyingJson(entry.getValue(), copies));
+      }
+
+      return object;
+    }
+  }
+
+  private static class TestCase {
+    private Schema schema;
+    private JsonElement instance;
+  }
+}